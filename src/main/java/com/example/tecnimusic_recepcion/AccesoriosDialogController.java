@@ -1,7 +1,5 @@
 package com.example.tecnimusic_recepcion;
 
-import javafx.animation.PauseTransition;
-import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -17,19 +15,16 @@ import javafx.scene.control.SeparatorMenuItem;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.MouseButton;
 import javafx.stage.Stage;
-import javafx.util.Duration;
 import org.fxmisc.richtext.StyleClassedTextArea;
 import org.fxmisc.richtext.model.StyleSpans;
 import org.fxmisc.richtext.model.StyleSpansBuilder;
 import org.languagetool.rules.RuleMatch;
 
-import java.io.IOException;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 public class AccesoriosDialogController {
 
@@ -39,9 +34,13 @@ public class AccesoriosDialogController {
     private ListView<String> accesoriosListView;
 
     private Stage dialogStage;
+    private final AsyncDatabaseService.Scope dbScope = new AsyncDatabaseService.Scope();
     private ObservableList<String> accesorios;
     private boolean aceptado = false;
-    private final ObservableList<String> accesorioSuggestions = FXCollections.observableArrayList();
+    // Sugerencias ordenadas por nombre normalizado y clasificadas por uso (solo se usa desde el hilo de JavaFX)
+    private RankedPrefixIndex accesorioSuggestions = RankedPrefixIndex.empty();
+
+    private static final int MAX_SUGERENCIAS = 10;
 
     // Custom Autocomplete components
     private PopupControl suggestionPopup;
@@ -51,6 +50,7 @@ public class AccesoriosDialogController {
     private void initialize() {
         accesorios = FXCollections.observableArrayList();
         accesoriosListView.setItems(accesorios);
+        dbScope.bindTo(accesorioField);
         setupSpellChecking();
         loadAccessorySuggestions();
         setupAutocomplete(); // Call the new autocomplete setup method
@@ -137,9 +137,7 @@ public class AccesoriosDialogController {
                 return;
             }
 
-            List<String> filtered = accesorioSuggestions.stream()
-                    .filter(s -> s.toLowerCase().startsWith(currentWord.toLowerCase()))
-                    .collect(Collectors.toList());
+            List<String> filtered = accesorioSuggestions.search(currentWord, MAX_SUGERENCIAS);
 
             if (filtered.isEmpty()) {
                 suggestionPopup.hide();
@@ -196,21 +194,15 @@ public class AccesoriosDialogController {
 
 
     private void deleteSuggestion(String suggestion) {
-        try {
-            DatabaseService.getInstance().deleteAccesorio(suggestion);
-            accesorioSuggestions.remove(suggestion); // Remove from the master list
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().deleteAccesorio(suggestion), ignored -> {
+            accesorioSuggestions = accesorioSuggestions.without(suggestion); // Remove from the master list
 
             // Manually re-filter and update the suggestionListView
             String currentText = accesorioField.getText();
             String currentWord = getCurrentWord(currentText, accesorioField.getCaretPosition());
 
             if (!currentWord.isEmpty()) {
-                ObservableList<String> filteredSuggestions = FXCollections.observableArrayList();
-                for (String s : accesorioSuggestions) {
-                    if (s.toLowerCase().startsWith(currentWord.toLowerCase())) {
-                        filteredSuggestions.add(s);
-                    }
-                }
+                ObservableList<String> filteredSuggestions = FXCollections.observableArrayList(accesorioSuggestions.search(currentWord, MAX_SUGERENCIAS));
                 suggestionListView.setItems(filteredSuggestions);
                 if (filteredSuggestions.isEmpty()) {
                     suggestionPopup.hide();
@@ -219,9 +211,7 @@ public class AccesoriosDialogController {
                 suggestionPopup.hide();
             }
 
-        } catch (SQLException e) {
-            System.err.println("Error deleting accessory suggestion: " + e.getMessage());
-        }
+        }, error -> System.err.println("Error deleting accessory suggestion: " + error.getMessage()));
     }
 
 
@@ -271,27 +261,13 @@ public class AccesoriosDialogController {
     }
 
     private void loadAccessorySuggestions() {
-        try {
-            List<String> suggestions = DatabaseService.getInstance().getAllAccesorios();
-            accesorioSuggestions.setAll(suggestions);
-        } catch (SQLException e) {
-            System.err.println("Error loading accessory suggestions: " + e.getMessage());
-        }
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().getAccesoriosConUso(),
+                usos -> accesorioSuggestions = new RankedPrefixIndex(usos),
+                error -> System.err.println("Error loading accessory suggestions: " + error.getMessage()));
     }
 
     private void setupSpellChecking() {
-        PauseTransition pause = new PauseTransition(Duration.seconds(0.5));
-        accesorioField.textProperty().addListener((observable, oldValue, newValue) -> {
-            pause.setOnFinished(event -> Platform.runLater(() -> {
-                try {
-                    List<RuleMatch> matches = CorrectorOrtografico.verificar(newValue);
-                    applyHighlighting(matches);
-                } catch (IOException e) {
-                    // ignore
-                }
-            }));
-            pause.playFromStart();
-        });
+        VerificadorIncremental verificador = new VerificadorIncremental(accesorioField, this::applyHighlighting);
 
 
         final ContextMenu contextMenu = new ContextMenu();
@@ -315,30 +291,25 @@ public class AccesoriosDialogController {
 
             int caretPosition = accesorioField.getCaretPosition();
 
-            try {
-                List<RuleMatch> allMatches = CorrectorOrtografico.verificar(text);
-                Optional<RuleMatch> matchAtCaret = allMatches.stream()
-                        .filter(m -> caretPosition >= m.getFromPos() && caretPosition <= m.getToPos())
-                        .findFirst();
-
-                if (matchAtCaret.isPresent()) {
-                    RuleMatch currentMatch = matchAtCaret.get();
-                    List<String> suggestions = currentMatch.getSuggestedReplacements();
-
-                    if (!suggestions.isEmpty()) {
-                        for (String suggestion : suggestions) {
-                            MenuItem item = new MenuItem(suggestion);
-                            item.setOnAction(evt ->
-                                    accesorioField.replaceText(currentMatch.getFromPos(), currentMatch.getToPos(), suggestion)
-                            );
-                            contextMenu.getItems().add(item);
-                        }
-                        contextMenu.getItems().add(new SeparatorMenuItem());
+            List<RuleMatch> allMatches = verificador.getErrores(text);
+            Optional<RuleMatch> matchAtCaret = allMatches.stream()
+                    .filter(m -> caretPosition >= m.getFromPos() && caretPosition <= m.getToPos())
+                    .findFirst();
+
+            if (matchAtCaret.isPresent()) {
+                RuleMatch currentMatch = matchAtCaret.get();
+                List<String> suggestions = currentMatch.getSuggestedReplacements();
+
+                if (!suggestions.isEmpty()) {
+                    for (String suggestion : suggestions) {
+                        MenuItem item = new MenuItem(suggestion);
+                        item.setOnAction(evt ->
+                                accesorioField.replaceText(currentMatch.getFromPos(), currentMatch.getToPos(), suggestion)
+                        );
+                        contextMenu.getItems().add(item);
                     }
+                    contextMenu.getItems().add(new SeparatorMenuItem());
                 }
-
-            } catch (IOException ex) {
-                // Ignorar error de corrector
             }
 
             if (!contextMenu.getItems().isEmpty()) {
@@ -390,20 +361,21 @@ public class AccesoriosDialogController {
         if (accesorio != null && !accesorio.trim().isEmpty()) {
             String trimmedAccesorio = accesorio.trim();
             accesorios.add(trimmedAccesorio);
-            saveAccesorioIfNotExists(trimmedAccesorio);
+            registrarUsoAccesorio(trimmedAccesorio);
             accesorioField.clear();
         }
     }
 
-    private void saveAccesorioIfNotExists(String accesorio) {
-        try {
-            if (!DatabaseService.getInstance().accesorioExists(accesorio)) {
-                DatabaseService.getInstance().addAccesorio(accesorio);
-                accesorioSuggestions.add(accesorio);
-            }
-        } catch (SQLException e) {
-            System.err.println("Error saving accessory: " + e.getMessage());
-        }
+    /**
+     * Crea la sugerencia si no existía o suma un uso, para que las más comunes salgan primero.
+     * Si ya existía, el uso se suma a la sugerencia guardada aunque se haya escrito distinto ("cable" y "Cable").
+     */
+    private void registrarUsoAccesorio(String accesorio) {
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().addAccesorio(accesorio),
+                creada -> accesorioSuggestions = creada
+                        ? accesorioSuggestions.withUse(accesorio)
+                        : accesorioSuggestions.withUseOfExisting(accesorio),
+                error -> System.err.println("Error saving accessory: " + error.getMessage()));
     }
 
     @FXML
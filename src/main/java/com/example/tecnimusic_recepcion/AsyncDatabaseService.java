@@ -0,0 +1,293 @@
+package com.example.tecnimusic_recepcion;
+
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.stage.Window;
+import javafx.stage.WindowEvent;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Fachada asíncrona de DatabaseService para que los controladores no bloqueen el hilo de JavaFX.
+ * Cada llamada se ejecuta en un ejecutor acotado (tantos hilos como conexiones tiene el pool)
+ * y devuelve un CompletableFuture. Para volver al hilo de JavaFX se usa un Scope, que además
+ * descarta los resultados pendientes cuando se cierra la ventana que los pidió.
+ */
+public class AsyncDatabaseService {
+
+    private static AsyncDatabaseService instance;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Operación contra la base de datos que se ejecuta fuera del hilo de JavaFX.
+     */
+    @FunctionalInterface
+    public interface DatabaseCall<T> {
+        T call(DatabaseService db) throws Exception;
+    }
+
+    private AsyncDatabaseService() {
+        // Java 17 no tiene hilos virtuales: se usan hilos de plataforma daemon, limitados al tamaño del pool
+        // para que ningún hilo quede esperando una conexión que otro tiene prestada.
+        int threads = Math.max(1, new DatabaseConfig().getPoolMaxSize());
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "db-async-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static synchronized AsyncDatabaseService getInstance() {
+        if (instance == null) instance = new AsyncDatabaseService();
+        return instance;
+    }
+
+    /**
+     * Ejecuta cualquier operación (o secuencia de operaciones) de DatabaseService en segundo plano.
+     * Si el futuro se cancela antes de que empiece, la operación no llega a ejecutarse.
+     */
+    public <T> CompletableFuture<T> submit(DatabaseCall<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            if (future.isDone()) return;
+            try {
+                future.complete(call.call(DatabaseService.getInstance()));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Igual que submit, pero para escrituras: cancelar el futuro devuelto (por ejemplo al cerrar la ventana)
+     * solo descarta el resultado; la operación se ejecuta igualmente para no perder datos ya confirmados por el usuario.
+     */
+    public <T> CompletableFuture<T> submitWrite(DatabaseCall<T> call) {
+        return submit(call).copy();
+    }
+
+    public CompletableFuture<Void> checkAndUpgradeSchema() {
+        return submit(db -> {
+            db.checkAndUpgradeSchema();
+            return null;
+        });
+    }
+
+    public CompletableFuture<String> getSetting(String key, String defaultValue) {
+        return submit(db -> db.getSetting(key, defaultValue));
+    }
+
+    public CompletableFuture<Void> saveSetting(String key, String value) {
+        return submitWrite(db -> {
+            db.saveSetting(key, value);
+            return null;
+        });
+    }
+
+    public CompletableFuture<List<String>> getAllAccesorios() {
+        return submit(DatabaseService::getAllAccesorios);
+    }
+
+    public CompletableFuture<Map<String, Integer>> getAccesoriosConUso() {
+        return submit(DatabaseService::getAccesoriosConUso);
+    }
+
+    public CompletableFuture<Boolean> addAccesorio(String accesorio) {
+        return submitWrite(db -> db.addAccesorio(accesorio));
+    }
+
+    public CompletableFuture<Void> deleteAccesorio(String accesorio) {
+        return submitWrite(db -> {
+            db.deleteAccesorio(accesorio);
+            return null;
+        });
+    }
+
+    public CompletableFuture<String> guardarHojaServicioCompleta(
+            String numeroOrden, Long idClienteSeleccionado, String nombreCliente, String telefonoCliente, String direccionCliente,
+            List<Equipo> equipos,
+            LocalDate fechaOrden, String informeDiagnostico, BigDecimal subtotal, BigDecimal anticipo,
+            LocalDate fechaEntrega, String firmaAclaracion, String aclaraciones) {
+        List<Equipo> copia = new ArrayList<>(equipos);
+        return submitWrite(db -> db.guardarHojaServicioCompleta(numeroOrden, idClienteSeleccionado, nombreCliente, telefonoCliente, direccionCliente,
+                copia, fechaOrden, informeDiagnostico, subtotal, anticipo, fechaEntrega, firmaAclaracion, aclaraciones));
+    }
+
+    public CompletableFuture<String> versionarHojaServicio(
+            long idHojaAnterior, Long idCliente, String nombreCliente, String telefonoCliente, String direccionCliente,
+            List<Equipo> equipos, LocalDate fechaOrden, BigDecimal anticipo, LocalDate fechaEntrega, String aclaraciones) {
+        List<Equipo> copia = new ArrayList<>(equipos);
+        return submitWrite(db -> db.versionarHojaServicio(idHojaAnterior, idCliente, nombreCliente, telefonoCliente, direccionCliente,
+                copia, fechaOrden, anticipo, fechaEntrega, aclaraciones));
+    }
+
+    public CompletableFuture<Void> actualizarHojaServicioAbierta(
+            long hojaId, LocalDate fechaOrden, BigDecimal anticipo, LocalDate fechaEntrega,
+            String aclaraciones, List<Equipo> equipos, String nombreCliente) {
+        List<Equipo> copia = new ArrayList<>(equipos);
+        return submitWrite(db -> {
+            db.actualizarHojaServicioAbierta(hojaId, fechaOrden, anticipo, fechaEntrega, aclaraciones, copia, nombreCliente);
+            return null;
+        });
+    }
+
+    public CompletableFuture<String> revisarHojaServicioCerrada(
+            long idHojaAnterior, Long idCliente, String nombreCliente, String telefonoCliente, String direccionCliente,
+            List<Equipo> equipos, LocalDate fechaOrden, BigDecimal anticipo, LocalDate fechaEntrega, String aclaraciones) {
+        List<Equipo> copia = new ArrayList<>(equipos);
+        return submitWrite(db -> db.revisarHojaServicioCerrada(idHojaAnterior, idCliente, nombreCliente, telefonoCliente, direccionCliente,
+                copia, fechaOrden, anticipo, fechaEntrega, aclaraciones));
+    }
+
+    public CompletableFuture<Void> cerrarHojaServicio(long hojaId, String informeTecnicoGeneral, List<Equipo> equipos,
+                                                      BigDecimal totalCostos, LocalDate fechaEntrega) {
+        List<Equipo> copia = new ArrayList<>(equipos);
+        return submitWrite(db -> {
+            db.cerrarHojaServicio(hojaId, informeTecnicoGeneral, copia, totalCostos, fechaEntrega);
+            return null;
+        });
+    }
+
+    public CompletableFuture<List<Client>> buscarClientes(String prefijo, Client despuesDe, int limite) {
+        return submit(db -> db.buscarClientes(prefijo, despuesDe, limite));
+    }
+
+    public CompletableFuture<Void> actualizarCliente(int clienteId, String nombre, String telefono, String direccion) {
+        return submitWrite(db -> {
+            db.actualizarCliente(clienteId, nombre, telefono, direccion);
+            return null;
+        });
+    }
+
+    public CompletableFuture<ClientMergePreview> previsualizarFusionClientes(Collection<Integer> clienteIds) {
+        return submit(db -> db.previsualizarFusionClientes(clienteIds));
+    }
+
+    public CompletableFuture<Integer> fusionarClientes(int sobrevivienteId, Collection<Integer> absorbidoIds) {
+        return submitWrite(db -> db.fusionarClientes(sobrevivienteId, absorbidoIds));
+    }
+
+    public CompletableFuture<String> siguienteNumeroOrden() {
+        return submit(db -> NumeradorOrdenes.getInstance().siguienteNumero());
+    }
+
+    public CompletableFuture<Long> getLastHojaServicioId() {
+        return submit(DatabaseService::getLastHojaServicioId);
+    }
+
+    public CompletableFuture<HojaServicioData> getHojaServicioCompleta(long hojaId) {
+        return submit(db -> db.getHojaServicioCompleta(hojaId));
+    }
+
+    public CompletableFuture<List<HojaServicioData>> getHojasServicioCompletas(Collection<Long> hojaIds) {
+        return submit(db -> db.getHojasServicioCompletas(hojaIds));
+    }
+
+    public CompletableFuture<List<RevisionHojaServicio>> getRevisionHistory(long hojaId) {
+        return submit(db -> db.getRevisionHistory(hojaId));
+    }
+
+    /**
+     * Devuelve la causa real de un fallo asíncrono (sin los envoltorios de CompletableFuture).
+     */
+    public static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * Ámbito de una ventana: entrega los resultados en el hilo de JavaFX y, cuando la ventana
+     * se oculta, cancela lo pendiente para que ningún callback toque controles ya cerrados.
+     */
+    public static final class Scope {
+        private final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+        private volatile boolean closed = false;
+
+        /**
+         * Asocia el ámbito a la ventana que contenga el nodo (ahora o cuando se agregue a una escena).
+         */
+        public void bindTo(Node node) {
+            if (node.getScene() != null) {
+                bindTo(node.getScene());
+            } else {
+                node.sceneProperty().addListener((obs, oldScene, newScene) -> {
+                    if (newScene != null) bindTo(newScene);
+                });
+            }
+        }
+
+        private void bindTo(Scene scene) {
+            if (scene.getWindow() != null) {
+                bindTo(scene.getWindow());
+            } else {
+                scene.windowProperty().addListener((obs, oldWindow, newWindow) -> {
+                    if (newWindow != null) bindTo(newWindow);
+                });
+            }
+        }
+
+        private void bindTo(Window window) {
+            window.addEventHandler(WindowEvent.WINDOW_HIDDEN, event -> cancelAll());
+        }
+
+        /**
+         * Registra el futuro y ejecuta onSuccess u onError en el hilo de JavaFX cuando termine,
+         * salvo que el ámbito se haya cerrado o el futuro se haya cancelado.
+         */
+        public <T> CompletableFuture<T> onFxThread(CompletableFuture<T> future, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+            if (closed) {
+                future.cancel(false);
+                return future;
+            }
+            pending.add(future);
+            future.whenComplete((result, error) -> {
+                pending.remove(future);
+                if (closed || future.isCancelled()) return;
+                Platform.runLater(() -> {
+                    if (closed) return;
+                    if (error != null) {
+                        onError.accept(unwrap(error));
+                    } else {
+                        onSuccess.accept(result);
+                    }
+                });
+            });
+            return future;
+        }
+
+        /**
+         * Cancela todo lo pendiente. Las operaciones que ya empezaron terminan en la base de datos
+         * (una escritura no se deja a medias), pero sus resultados se descartan.
+         */
+        public void cancelAll() {
+            closed = true;
+            for (CompletableFuture<?> future : pending) {
+                future.cancel(false);
+            }
+            pending.clear();
+        }
+    }
+}
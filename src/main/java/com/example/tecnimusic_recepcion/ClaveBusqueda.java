@@ -0,0 +1,72 @@
+package com.example.tecnimusic_recepcion;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalización de textos para buscar: sin acentos, en minúsculas y con los espacios colapsados
+ * ("Gómez  Pátzcuaro" -> "gomez patzcuaro"). Las columnas *_clave de x_clientes y
+ * x_hojas_servicio_equipos guardan este valor calculado al escribir, así las búsquedas comparan
+ * claves ya normalizadas con rangos de índice en lugar de transformar cada fila.
+ * La ñ queda como n, igual que en las collations _ci de MySQL.
+ */
+public final class ClaveBusqueda {
+
+    // Largo de las columnas *_clave (VARCHAR(191): cabe entera en un índice de InnoDB antiguo)
+    static final int LONGITUD_TEXTO = 191;
+    static final int LONGITUD_DIGITOS = 64;
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+    private static final Pattern NO_DIGITOS = Pattern.compile("\\D+");
+    // Lo que se escribe en un teléfono: dígitos, espacios, guiones, puntos, paréntesis y +
+    private static final Pattern TELEFONO = Pattern.compile("[\\d\\s().+-]*\\d[\\d\\s().+-]*");
+
+    private ClaveBusqueda() {}
+
+    /**
+     * Texto plegado (sin acentos, minúsculas, espacios colapsados). Nunca devuelve null.
+     */
+    public static String plegar(String text) {
+        if (text == null) return "";
+        String folded = text.strip();
+        if (!esAscii(folded)) {
+            folded = MARCAS.matcher(Normalizer.normalize(folded, Normalizer.Form.NFD)).replaceAll("");
+        }
+        return ESPACIOS.matcher(folded.toLowerCase(Locale.ROOT)).replaceAll(" ");
+    }
+
+    /**
+     * Valor para una columna *_clave de texto: plegado y recortado al largo de la columna; null si queda vacío.
+     */
+    public static String texto(String text) {
+        String folded = plegar(text);
+        if (folded.isEmpty()) return null;
+        return folded.length() > LONGITUD_TEXTO ? folded.substring(0, LONGITUD_TEXTO) : folded;
+    }
+
+    /**
+     * Solo los dígitos de un teléfono ("(33) 1234-5678" -> "3312345678"); null si no tiene ninguno.
+     */
+    public static String digitos(String text) {
+        if (text == null) return null;
+        String digits = NO_DIGITOS.matcher(text).replaceAll("");
+        if (digits.isEmpty()) return null;
+        return digits.length() > LONGITUD_DIGITOS ? digits.substring(0, LONGITUD_DIGITOS) : digits;
+    }
+
+    /**
+     * True si el texto se puede buscar como teléfono (tiene dígitos y nada más que lo que se escribe en uno).
+     */
+    public static boolean pareceTelefono(String text) {
+        return text != null && TELEFONO.matcher(text.strip()).matches();
+    }
+
+    private static boolean esAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7F) return false;
+        }
+        return true;
+    }
+}
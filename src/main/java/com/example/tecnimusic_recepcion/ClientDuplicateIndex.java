@@ -0,0 +1,384 @@
+package com.example.tecnimusic_recepcion;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Índice en memoria para detectar clientes que probablemente ya existen mientras se captura uno nuevo.
+ * Los clientes se agrupan por bloques: la clave fonética (en español) de cada palabra del nombre y los
+ * últimos dígitos del teléfono. Una consulta toma los dos bloques no vacíos más chicos de lo escrito y solo compara
+ * esos candidatos, así responde en pocos milisegundos aunque haya decenas de miles de clientes.
+ * Las altas y cambios hechos por la aplicación se aplican al índice sin recargarlo.
+ */
+public class ClientDuplicateIndex {
+
+    /**
+     * Máximo de posibles duplicados por consulta.
+     */
+    public static final int DEFAULT_LIMIT = 5;
+
+    // Dígitos finales del teléfono que se comparan (sin lada ni prefijo de país)
+    private static final int PHONE_SUFFIX = 7;
+    // Similitud mínima del nombre (0 a 1) para proponer un cliente
+    private static final double MIN_NAME_SCORE = 0.8;
+    // Palabras más cortas no se usan para buscar (de, la, y...)
+    private static final int MIN_WORD = 3;
+
+    private static ClientDuplicateIndex instance;
+
+    private static final class Entry {
+        final int id;
+        final String nombre;
+        final String telefono;
+        final String[] words;
+        final String[] codes;
+        // Claves sin repetir, para indexar una sola vez por bloque
+        final Set<String> blockCodes = new LinkedHashSet<>();
+        final String phoneSuffix;
+
+        Entry(int id, String nombre, String telefono) {
+            this.id = id;
+            this.nombre = nombre;
+            this.telefono = telefono;
+            this.words = words(nombre);
+            this.codes = new String[words.length];
+            for (int i = 0; i < words.length; i++) {
+                codes[i] = phoneticKey(words[i]);
+                blockCodes.add(codes[i]);
+            }
+            this.phoneSuffix = phoneSuffix(telefono);
+        }
+    }
+
+    private final Map<Integer, Entry> byId = new HashMap<>();
+    // Clave fonética de palabra -> clientes; ordenado para buscar también por prefijo (la palabra que se está escribiendo)
+    private final NavigableMap<String, List<Entry>> byCode = new TreeMap<>();
+    private final Map<String, List<Entry>> byPhone = new HashMap<>();
+    private volatile boolean loaded = false;
+
+    private ClientDuplicateIndex() {}
+
+    public static synchronized ClientDuplicateIndex getInstance() {
+        if (instance == null) instance = new ClientDuplicateIndex();
+        return instance;
+    }
+
+    /**
+     * Lee todos los clientes con una consulta y reconstruye el índice.
+     */
+    public void load() throws SQLException {
+        List<Entry> entries = new ArrayList<>();
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, nombre, telefono FROM x_clientes")) {
+            while (rs.next()) {
+                entries.add(new Entry(rs.getInt("id"), rs.getString("nombre"), rs.getString("telefono")));
+            }
+        }
+        synchronized (this) {
+            byId.clear();
+            byCode.clear();
+            byPhone.clear();
+            for (Entry entry : entries) {
+                index(entry);
+            }
+            loaded = true;
+        }
+    }
+
+    /**
+     * Carga el índice si aún no se cargó (si el formulario se abre antes de que termine la precarga del arranque).
+     */
+    public void ensureLoaded() throws SQLException {
+        if (loaded) return;
+        synchronized (this) {
+            if (!loaded) load();
+        }
+    }
+
+    /**
+     * Agrega un cliente o reemplaza sus datos (después de un alta o una edición).
+     */
+    public synchronized void put(int id, String nombre, String telefono) {
+        if (!loaded) return; // Se leerá completo en la carga
+        remove(id);
+        index(new Entry(id, nombre, telefono));
+    }
+
+    public synchronized void remove(int id) {
+        Entry old = byId.remove(id);
+        if (old == null) return;
+        for (String code : old.blockCodes) {
+            unindex(byCode, code, old);
+        }
+        if (old.phoneSuffix != null) unindex(byPhone, old.phoneSuffix, old);
+    }
+
+    private void index(Entry entry) {
+        byId.put(entry.id, entry);
+        for (String code : entry.blockCodes) {
+            byCode.computeIfAbsent(code, c -> new ArrayList<>()).add(entry);
+        }
+        if (entry.phoneSuffix != null) byPhone.computeIfAbsent(entry.phoneSuffix, p -> new ArrayList<>()).add(entry);
+    }
+
+    private static void unindex(Map<String, List<Entry>> map, String key, Entry entry) {
+        List<Entry> bucket = map.get(key);
+        if (bucket == null) return;
+        bucket.remove(entry);
+        if (bucket.isEmpty()) map.remove(key);
+    }
+
+    /**
+     * Clientes parecidos a lo escrito, con el formato de las sugerencias ("nombre | teléfono"),
+     * del más parecido al menos. La última palabra del nombre puede estar a medias.
+     * Si el teléfono coincide en sus últimos dígitos el cliente se propone aunque el nombre difiera.
+     */
+    public List<String> findSimilar(String nombre, String telefono, int limit) {
+        if (!loaded) return List.of();
+        Query query = new Query(nombre);
+        String suffix = phoneSuffix(telefono);
+
+        Map<Entry, Double> scores = new HashMap<>();
+        synchronized (this) {
+            if (suffix != null) {
+                for (Entry entry : byPhone.getOrDefault(suffix, List.of())) {
+                    scores.put(entry, 1.0 + query.nameScore(entry));
+                }
+            }
+            for (Entry entry : smallestBlock(query)) {
+                if (scores.containsKey(entry)) continue;
+                double score = query.nameScore(entry);
+                if (score >= MIN_NAME_SCORE) scores.put(entry, score);
+            }
+        }
+
+        List<Map.Entry<Entry, Double>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < ranked.size() && i < limit; i++) {
+            Entry entry = ranked.get(i).getKey();
+            result.add(SuggestionService.formatCliente(entry.nombre, entry.telefono));
+        }
+        return result;
+    }
+
+    public List<String> findSimilar(String nombre, String telefono) {
+        return findSimilar(nombre, telefono, DEFAULT_LIMIT);
+    }
+
+    /**
+     * Candidatos de los dos bloques no vacíos más chicos entre las palabras escritas. Un error de captura
+     * puede cambiar la clave fonética de una palabra (su bloque queda vacío o con otros clientes), así que
+     * se revisa también el bloque de otra palabra; los bloques vacíos no cuentan como "más chicos".
+     */
+    private Collection<Entry> smallestBlock(Query query) {
+        Collection<Entry> best = null;
+        Collection<Entry> second = null;
+        for (int i = 0; i < query.typed.length; i++) {
+            if (query.typed[i].length() < MIN_WORD) continue;
+            String code = query.typedCodes[i];
+            Collection<Entry> block;
+            if (query.isPartial(i)) {
+                block = new ArrayList<>();
+                for (List<Entry> bucket : byCode.subMap(code, true, code + Character.MAX_VALUE, false).values()) {
+                    block.addAll(bucket);
+                }
+            } else {
+                block = byCode.getOrDefault(code, List.of());
+            }
+            if (block.isEmpty()) continue;
+            if (best == null || block.size() < best.size()) {
+                second = best;
+                best = block;
+            } else if (second == null || block.size() < second.size()) {
+                second = block;
+            }
+        }
+        if (best == null) return List.of();
+        if (second == null) return best;
+        Set<Entry> union = new LinkedHashSet<>(best);
+        union.addAll(second);
+        return union;
+    }
+
+    /**
+     * Lo escrito en el nombre, ya separado en palabras, con sus claves fonéticas.
+     * Guarda la puntuación de cada palabra de cliente ya comparada: los apellidos se repiten mucho,
+     * así que la mayoría de los candidatos se puntúan sin volver a calcular distancias.
+     */
+    private static final class Query {
+        final String[] typed;
+        final String[] typedCodes;
+        final boolean lastIsPartial;
+        final List<Map<String, Double>> memo = new ArrayList<>();
+
+        Query(String nombre) {
+            typed = words(nombre);
+            typedCodes = new String[typed.length];
+            for (int i = 0; i < typed.length; i++) {
+                typedCodes[i] = phoneticKey(typed[i]);
+                memo.add(new HashMap<>());
+            }
+            lastIsPartial = nombre != null && !nombre.isEmpty() && !Character.isWhitespace(nombre.charAt(nombre.length() - 1));
+        }
+
+        boolean isPartial(int i) {
+            return lastIsPartial && i == typed.length - 1;
+        }
+
+        /**
+         * Promedio, sobre las palabras escritas, de la mejor coincidencia con alguna palabra del cliente.
+         */
+        double nameScore(Entry entry) {
+            if (typed.length == 0 || entry.words.length == 0) return 0;
+            double total = 0;
+            for (int i = 0; i < typed.length; i++) {
+                double best = 0;
+                for (int j = 0; j < entry.words.length && best < 1; j++) {
+                    best = Math.max(best, wordScore(i, entry.words[j], entry.codes[j]));
+                }
+                total += best;
+            }
+            return total / typed.length;
+        }
+
+        // 1 si es igual (o su inicio, para la palabra a medias), 0.9 si suena igual, y si no la similitud de edición
+        private double wordScore(int i, String word, String code) {
+            Double cached = memo.get(i).get(word);
+            if (cached != null) return cached;
+            boolean partial = isPartial(i);
+            double score;
+            if (partial ? word.startsWith(typed[i]) : word.equals(typed[i])) {
+                score = 1;
+            } else if (partial ? code.startsWith(typedCodes[i]) : code.equals(typedCodes[i])) {
+                score = 0.9;
+            } else {
+                String compared = partial && word.length() > typed[i].length() ? word.substring(0, typed[i].length()) : word;
+                score = similarity(typed[i], compared);
+            }
+            memo.get(i).put(word, score);
+            return score;
+        }
+    }
+
+    private static double similarity(String a, String b) {
+        int max = Math.max(a.length(), b.length());
+        return max == 0 ? 1 : 1 - (double) levenshtein(a, b) / max;
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) previous[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private static String[] words(String nombre) {
+        String folded = ClaveBusqueda.plegar(nombre == null ? "" : nombre.split("\\s*\\|\\s*")[0]);
+        List<String> words = new ArrayList<>();
+        for (String word : folded.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) words.add(word);
+        }
+        return words.toArray(new String[0]);
+    }
+
+    private static String phoneSuffix(String telefono) {
+        String digits = ClaveBusqueda.digitos(telefono);
+        if (digits == null || digits.length() < PHONE_SUFFIX) return null;
+        return digits.substring(digits.length() - PHONE_SUFFIX);
+    }
+
+    /**
+     * Clave fonética de una palabra ya plegada (sin acentos, minúsculas), según la pronunciación del
+     * español de México: b/v, c/s/z (seseo), c/k/qu, g/j ante e/i, ll/y, h muda y letras dobles valen lo mismo.
+     * Se conserva la primera letra y se descartan las demás vocales, que es donde más se equivoca la captura.
+     */
+    static String phoneticKey(String word) {
+        StringBuilder key = new StringBuilder(word.length());
+        int n = word.length();
+        for (int i = 0; i < n; i++) {
+            char c = word.charAt(i);
+            char next = i + 1 < n ? word.charAt(i + 1) : 0;
+            String sound;
+            switch (c) {
+                case 'a': case 'e': case 'i': case 'o': case 'u':
+                    sound = key.length() == 0 ? "A" : "";
+                    break;
+                case 'b': case 'v': case 'w':
+                    sound = "B";
+                    break;
+                case 'c':
+                    if (next == 'h') { sound = "X"; i++; }
+                    else if (next == 'e' || next == 'i') sound = "S";
+                    else sound = "K";
+                    break;
+                case 'q':
+                    sound = "K";
+                    if (next == 'u') i++;
+                    break;
+                case 'k':
+                    sound = "K";
+                    break;
+                case 'g':
+                    if (next == 'e' || next == 'i') sound = "J";
+                    else {
+                        sound = "G";
+                        // gue, gui: la u no suena
+                        if (next == 'u' && i + 2 < n && (word.charAt(i + 2) == 'e' || word.charAt(i + 2) == 'i')) i++;
+                    }
+                    break;
+                case 'j':
+                    sound = "J";
+                    break;
+                case 'z': case 's':
+                    sound = "S";
+                    break;
+                case 'x':
+                    sound = "KS";
+                    break;
+                case 'h':
+                    sound = "";
+                    break;
+                case 'l':
+                    if (next == 'l') { sound = "Y"; i++; }
+                    else sound = "L";
+                    break;
+                case 'y':
+                    // Como vocal (final o entre consonantes) no cuenta; como consonante suena igual que ll
+                    boolean vowelNext = next == 'a' || next == 'e' || next == 'i' || next == 'o' || next == 'u';
+                    sound = vowelNext ? "Y" : (key.length() == 0 ? "A" : "");
+                    break;
+                default:
+                    sound = Character.isLetter(c) ? String.valueOf(Character.toUpperCase(c)) : String.valueOf(c);
+            }
+            // Letras dobles (rr, nn, cc...) cuentan una vez
+            if (!sound.isEmpty() && key.length() > 0 && key.charAt(key.length() - 1) == sound.charAt(sound.length() - 1) && sound.length() == 1) {
+                continue;
+            }
+            key.append(sound);
+        }
+        return key.toString();
+    }
+}
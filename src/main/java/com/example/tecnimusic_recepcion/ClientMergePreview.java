@@ -0,0 +1,52 @@
+package com.example.tecnimusic_recepcion;
+
+import java.util.List;
+
+/**
+ * Impacto de fusionar un grupo de clientes duplicados, calculado antes de confirmar.
+ * El sobreviviente es el cliente con más hojas de servicio (a igualdad, el más antiguo);
+ * los demás se borran y sus hojas pasan a él.
+ */
+public class ClientMergePreview {
+
+    private final int survivorId;
+    private final String survivorName;
+    private final String survivorPhone;
+    private final List<Integer> absorbedIds;
+    private final int sheetsToReassign;
+    private final int assetsToRename;
+
+    public ClientMergePreview(int survivorId, String survivorName, String survivorPhone, List<Integer> absorbedIds,
+                              int sheetsToReassign, int assetsToRename) {
+        this.survivorId = survivorId;
+        this.survivorName = survivorName;
+        this.survivorPhone = survivorPhone;
+        this.absorbedIds = absorbedIds;
+        this.sheetsToReassign = sheetsToReassign;
+        this.assetsToRename = assetsToRename;
+    }
+
+    public int getSurvivorId() {
+        return survivorId;
+    }
+
+    public String getSurvivorName() {
+        return survivorName;
+    }
+
+    public String getSurvivorPhone() {
+        return survivorPhone;
+    }
+
+    public List<Integer> getAbsorbedIds() {
+        return absorbedIds;
+    }
+
+    public int getSheetsToReassign() {
+        return sheetsToReassign;
+    }
+
+    public int getAssetsToRename() {
+        return assetsToRename;
+    }
+}
@@ -23,7 +23,6 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
@@ -50,6 +49,8 @@ public class ClientServiceSheetsController {
 
     private final ObservableList<ServiceSheetSummary> serviceSheetList = FXCollections.observableArrayList();
     private int currentClientId; // Guardar el ID del cliente actual
+    private long loadGeneration = 0;
+    private final AsyncDatabaseService.Scope dbScope = new AsyncDatabaseService.Scope();
 
     @FXML
     public void initialize() {
@@ -58,6 +59,7 @@ public class ClientServiceSheetsController {
         equipmentColumn.setCellValueFactory(new PropertyValueFactory<>("equipment"));
         statusColumn.setCellValueFactory(new PropertyValueFactory<>("status"));
         serviceSheetsTable.setItems(serviceSheetList);
+        dbScope.bindTo(serviceSheetsTable);
 
         serviceSheetsTable.setRowFactory(tv -> {
             TableRow<ServiceSheetSummary> row = new TableRow<>();
@@ -83,11 +85,11 @@ public class ClientServiceSheetsController {
 
     private void loadServiceSheets(int clientId) {
         serviceSheetList.clear();
-        String sql = "SELECT hs.id, hs.numero_orden, hs.fecha_orden, hs.estado, " +
-                     "GROUP_CONCAT(DISTINCT CONCAT_WS(' ', hse.equipo_tipo, hse.equipo_marca, hse.equipo_modelo) SEPARATOR '; ') as equipment_summary " +
-                     "FROM x_hojas_servicio hs " +
-                     "LEFT JOIN x_hojas_servicio_equipos hse ON hs.id = hse.hoja_id " +
-                     "WHERE hs.cliente_id = ? ";
+        final long generation = ++loadGeneration;
+        // El resumen de equipos se guarda en la hoja al escribirla: no hace falta unir ni agrupar
+        String sql = "SELECT id, numero_orden, fecha_orden, estado, equipment_summary " +
+                     "FROM x_hojas_servicio " +
+                     "WHERE cliente_id = ? ";
 
         StringBuilder whereClause = new StringBuilder();
         List<Object> params = new ArrayList<>();
@@ -95,42 +97,51 @@ public class ClientServiceSheetsController {
 
         // Filtrar por estado "ANULADA" si el checkbox no está marcado
         if (!showAnuladasCheckBox.isSelected()) {
-            whereClause.append(" AND hs.estado != ? ");
+            whereClause.append(" AND estado != ? ");
             params.add("ANULADA");
         }
 
-        sql += whereClause.toString() +
-               "GROUP BY hs.id, hs.numero_orden, hs.fecha_orden, hs.estado " +
-               "ORDER BY hs.id DESC";
-
-        try (Connection conn = DatabaseManager.getInstance().getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            for (int i = 0; i < params.size(); i++) {
-                pstmt.setObject(i + 1, params.get(i));
-            }
-
-            ResultSet rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                String equipmentSummary = rs.getString("equipment_summary");
-                if (equipmentSummary == null || equipmentSummary.trim().isEmpty()) {
-                    equipmentSummary = "(No hay equipos detallados)";
-                }
-
-                serviceSheetList.add(new ServiceSheetSummary(
-                        rs.getLong("id"),
-                        clientId, // Pasar el ID del cliente
-                        rs.getString("numero_orden"),
-                        rs.getDate("fecha_orden").toLocalDate(),
-                        equipmentSummary.trim(),
-                        rs.getString("estado")
-                ));
-            }
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudieron cargar las hojas de servicio del cliente.");
-            e.printStackTrace();
-        }
+        String query = sql + whereClause.toString() +
+                       "ORDER BY id DESC";
+
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().submit(db -> {
+                    List<ServiceSheetSummary> sheets = new ArrayList<>();
+                    try (Connection conn = DatabaseManager.getInstance().getConnection();
+                         PreparedStatement pstmt = conn.prepareStatement(query)) {
+
+                        for (int i = 0; i < params.size(); i++) {
+                            pstmt.setObject(i + 1, params.get(i));
+                        }
+
+                        ResultSet rs = pstmt.executeQuery();
+
+                        while (rs.next()) {
+                            String equipmentSummary = rs.getString("equipment_summary");
+                            if (equipmentSummary == null || equipmentSummary.trim().isEmpty()) {
+                                equipmentSummary = "(No hay equipos detallados)";
+                            }
+
+                            sheets.add(new ServiceSheetSummary(
+                                    rs.getLong("id"),
+                                    clientId, // Pasar el ID del cliente
+                                    rs.getString("numero_orden"),
+                                    rs.getDate("fecha_orden").toLocalDate(),
+                                    equipmentSummary.trim(),
+                                    rs.getString("estado")
+                            ));
+                        }
+                    }
+                    return sheets;
+                }),
+                sheets -> {
+                    if (generation != loadGeneration) return; // Se cambió el filtro mientras tanto
+                    serviceSheetList.setAll(sheets);
+                },
+                error -> {
+                    if (generation != loadGeneration) return;
+                    showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudieron cargar las hojas de servicio del cliente.");
+                    error.printStackTrace();
+                });
     }
 
     @FXML
@@ -189,14 +200,13 @@ public class ClientServiceSheetsController {
     }
 
     private void fetchAndProcessServiceSheet(long hojaId, Consumer<HojaServicioData> dataConsumer) {
-        try {
-            HojaServicioData data = DatabaseService.getInstance().getHojaServicioCompleta(hojaId);
-            dataConsumer.accept(data);
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "Ocurrió un error al consultar los datos: " + e.getMessage());
-            e.printStackTrace();
-            dataConsumer.accept(null);
-        }
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().getHojaServicioCompleta(hojaId),
+                dataConsumer,
+                error -> {
+                    showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "Ocurrió un error al consultar los datos: " + error.getMessage());
+                    error.printStackTrace();
+                    dataConsumer.accept(null);
+                });
     }
 
     private void showAlert(Alert.AlertType type, String title, String message) {
@@ -0,0 +1,375 @@
+package com.example.tecnimusic_recepcion;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool de conexiones JDBC acotado que usa DatabaseManager.
+ * Las conexiones entregadas son proxies: al llamar close() la conexión física
+ * vuelve al pool en lugar de cerrarse, así el resto del código puede seguir
+ * usando try-with-resources como siempre.
+ */
+public class ConnectionPool {
+
+    // Cada cuánto revisa el hilo de mantenimiento las conexiones inactivas
+    private static final long HOUSEKEEPING_INTERVAL_MS = 30_000;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMs;
+    private final long maxLifetimeMs;
+    private final long borrowTimeoutMs;
+    private final int validationTimeoutSeconds;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition connectionReturned = lock.newCondition();
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService housekeeper;
+
+    private int totalConnections = 0; // Conexiones físicas abiertas (inactivas + prestadas)
+    private boolean everConnected = false;
+    private volatile boolean closed = false;
+
+    public ConnectionPool(String url, String user, String password, DatabaseConfig config) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = Math.max(1, config.getPoolMaxSize());
+        this.minSize = Math.max(0, Math.min(config.getPoolMinSize(), this.maxSize));
+        this.idleTimeoutMs = config.getPoolIdleTimeoutMs();
+        this.maxLifetimeMs = config.getPoolMaxLifetimeMs();
+        this.borrowTimeoutMs = config.getPoolBorrowTimeoutMs();
+        this.validationTimeoutSeconds = Math.max(1, config.getPoolValidationTimeoutSeconds());
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, HOUSEKEEPING_INTERVAL_MS, HOUSEKEEPING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Obtiene una conexión del pool. Reutiliza una inactiva si sigue siendo válida,
+     * abre una nueva si no se ha alcanzado el máximo, o espera a que se devuelva una.
+     */
+    public Connection borrow() throws SQLException {
+        long deadline = System.currentTimeMillis() + borrowTimeoutMs;
+        while (true) {
+            PooledConnection candidate = null;
+            boolean mayCreate = false;
+
+            lock.lock();
+            try {
+                if (closed) throw new SQLException("El pool de conexiones está cerrado.");
+                while (idle.isEmpty() && totalConnections >= maxSize) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new SQLException("Tiempo de espera agotado: no hay conexiones disponibles en el pool (máximo " + maxSize + ").");
+                    }
+                    try {
+                        connectionReturned.await(remaining, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrumpido mientras se esperaba una conexión del pool.", e);
+                    }
+                    if (closed) throw new SQLException("El pool de conexiones está cerrado.");
+                }
+                if (!idle.isEmpty()) {
+                    candidate = idle.pollFirst();
+                } else {
+                    totalConnections++; // Reservar el hueco antes de abrir fuera del lock
+                    mayCreate = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (mayCreate) {
+                try {
+                    PooledConnection created = new PooledConnection(DriverManager.getConnection(url, user, password));
+                    markConnected();
+                    return created.lease();
+                } catch (SQLException e) {
+                    discardSlot();
+                    throw e;
+                }
+            }
+
+            // Validación al prestar: descartar conexiones caducadas o rotas
+            if (candidate.isExpired(System.currentTimeMillis()) || !candidate.isValid()) {
+                destroy(candidate);
+                continue;
+            }
+            return candidate.lease();
+        }
+    }
+
+    /**
+     * Cierra todas las conexiones inactivas y marca el pool como cerrado.
+     * Las conexiones que estén prestadas se cerrarán físicamente al devolverse.
+     */
+    public void shutdown() {
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            totalConnections -= toClose.size();
+            connectionReturned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        housekeeper.shutdownNow();
+        for (PooledConnection pc : toClose) {
+            pc.closePhysical();
+        }
+    }
+
+    public int getTotalConnections() {
+        lock.lock();
+        try {
+            return totalConnections;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getIdleConnections() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(PooledConnection pc) {
+        boolean reusable = !closed && !pc.isExpired(System.currentTimeMillis()) && pc.resetState();
+        if (!reusable) {
+            destroy(pc);
+            return;
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                totalConnections--;
+            } else {
+                pc.lastUsed = System.currentTimeMillis();
+                idle.addFirst(pc); // LIFO: las más recientes se reutilizan primero y las viejas caducan solas
+                connectionReturned.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        pc.closePhysical();
+    }
+
+    private void destroy(PooledConnection pc) {
+        pc.closePhysical();
+        discardSlot();
+    }
+
+    private void discardSlot() {
+        lock.lock();
+        try {
+            totalConnections--;
+            connectionReturned.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void markConnected() {
+        lock.lock();
+        try {
+            everConnected = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Expulsa las conexiones inactivas que superan el tiempo de inactividad o la vida máxima
+     * (respetando el mínimo) y repone conexiones hasta el mínimo configurado.
+     */
+    private void housekeep() {
+        if (closed) return;
+        long now = System.currentTimeMillis();
+        List<PooledConnection> evicted = new ArrayList<>();
+        int missing;
+        lock.lock();
+        try {
+            Iterator<PooledConnection> it = idle.descendingIterator(); // De la más antigua a la más reciente
+            while (it.hasNext()) {
+                PooledConnection pc = it.next();
+                boolean idleTooLong = now - pc.lastUsed > idleTimeoutMs && totalConnections - evicted.size() > minSize;
+                if (pc.isExpired(now) || idleTooLong) {
+                    it.remove();
+                    evicted.add(pc);
+                }
+            }
+            totalConnections -= evicted.size();
+            // Solo se rellena hasta el mínimo si alguna vez hubo conexión, para no insistir contra un servidor caído
+            missing = everConnected ? Math.max(0, minSize - totalConnections) : 0;
+            totalConnections += missing;
+        } finally {
+            lock.unlock();
+        }
+
+        for (PooledConnection pc : evicted) {
+            pc.closePhysical();
+        }
+        for (int i = 0; i < missing; i++) {
+            try {
+                release(new PooledConnection(DriverManager.getConnection(url, user, password)));
+            } catch (SQLException e) {
+                discardSlot();
+                System.err.println("No se pudo reponer una conexión del pool: " + e.getMessage());
+            }
+        }
+    }
+
+    private class PooledConnection {
+        private final Connection physical;
+        private final long createdAt;
+        private final boolean defaultAutoCommit;
+        private final int defaultIsolation;
+        private final boolean defaultReadOnly;
+        private volatile long lastUsed;
+
+        PooledConnection(Connection physical) throws SQLException {
+            this.physical = physical;
+            this.createdAt = System.currentTimeMillis();
+            this.lastUsed = createdAt;
+            this.defaultAutoCommit = physical.getAutoCommit();
+            this.defaultIsolation = physical.getTransactionIsolation();
+            this.defaultReadOnly = physical.isReadOnly();
+        }
+
+        boolean isExpired(long now) {
+            return maxLifetimeMs > 0 && now - createdAt > maxLifetimeMs;
+        }
+
+        boolean isValid() {
+            try {
+                return physical.isValid(validationTimeoutSeconds);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Deja la conexión como recién abierta: deshace transacciones a medias y
+         * restaura autocommit, aislamiento y modo de solo lectura.
+         */
+        boolean resetState() {
+            try {
+                if (physical.isClosed()) return false;
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(defaultAutoCommit);
+                }
+                if (physical.getTransactionIsolation() != defaultIsolation) {
+                    physical.setTransactionIsolation(defaultIsolation);
+                }
+                if (physical.isReadOnly() != defaultReadOnly) {
+                    physical.setReadOnly(defaultReadOnly);
+                }
+                physical.clearWarnings();
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        void closePhysical() {
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                System.err.println("Error al cerrar una conexión del pool: " + e.getMessage());
+            }
+        }
+
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new LeaseHandler(this));
+        }
+    }
+
+    /**
+     * Intercepta close() e isClosed() del proxy; el resto de llamadas se delegan
+     * a la conexión física mientras el préstamo siga abierto.
+     */
+    private class LeaseHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean returned = false;
+
+        LeaseHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    synchronized (this) {
+                        if (returned) return null;
+                        returned = true;
+                    }
+                    release(pooled);
+                    return null;
+                case "isClosed":
+                    synchronized (this) {
+                        return returned || pooled.physical.isClosed();
+                    }
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + "]";
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) return proxy;
+                    break;
+                case "isWrapperFor":
+                    if (((Class<?>) args[0]).isInstance(proxy)) return true;
+                    break;
+                default:
+                    break;
+            }
+            synchronized (this) {
+                if (returned) throw new SQLException("La conexión ya fue devuelta al pool.");
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -1,30 +1,284 @@
 package com.example.tecnimusic_recepcion;
 
+import org.languagetool.AnalyzedSentence;
+import org.languagetool.AnalyzedToken;
+import org.languagetool.AnalyzedTokenReadings;
 import org.languagetool.JLanguageTool;
 import org.languagetool.language.Spanish;
+import org.languagetool.rules.Rule;
 import org.languagetool.rules.RuleMatch;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Corrector ortográfico en dos niveles:
+ * - Rápido: solo la regla de ortografía (diccionario) de español, sin cargar las reglas de gramática.
+ *   Está listo en una fracción del tiempo y es el que usa el resaltado en vivo.
+ * - Completo: JLanguageTool con todas las reglas de gramática. Se carga en segundo plano después
+ *   del rápido y se usa para "Verificar Ortografía (Informe completo)".
+ */
 public class CorrectorOrtografico {
 
-    private static JLanguageTool languageTool = null;
+    /**
+     * Una instancia de corrector de cualquiera de los dos niveles. No es segura entre hilos:
+     * se usa siempre prestada desde un PoolCorrectores.
+     */
+    public interface Instancia {
+        List<String> dividirEnOraciones(String texto);
+
+        List<RuleMatch> verificarOracion(String oracion) throws IOException;
+    }
+
+    // Oraciones distintas que se recuerdan por nivel; cada entrada ocupa poco (texto + errores)
+    private static final int MAX_ORACIONES_EN_CACHE = 2000;
+
+    private static final Nivel rapido = new Nivel(new PoolCorrectores("corrector-rapido", CorrectorRapido::new, PoolCorrectores.tamanoPorDefecto()));
+    private static final Nivel completo = new Nivel(new PoolCorrectores("corrector-completo", CorrectorCompleto::new, PoolCorrectores.tamanoPorDefecto()));
 
     /**
-     * Inicializa el corrector ortográfico. Esta es una operación costosa y debe
-     * ser llamada en un hilo de fondo durante el arranque de la aplicación.
+     * Inicializa el nivel rápido en el hilo actual (debe ser un hilo de fondo) y lanza la carga
+     * del nivel completo en segundo plano para no alargar el arranque.
      */
     public static void inicializar() {
-        if (languageTool == null) {
-            languageTool = new JLanguageTool(new Spanish());
+        rapido.pool.iniciar();
+        if (!completo.pool.isIniciado()) {
+            Thread hilo = new Thread(completo.pool::iniciar, "corrector-completo-carga");
+            hilo.setDaemon(true);
+            hilo.setPriority(Thread.MIN_PRIORITY);
+            hilo.start();
         }
     }
 
+    /**
+     * Verificación rápida (solo ortografía), para el resaltado en vivo y el menú contextual.
+     * Cada verificación usa en exclusiva una instancia del pool, de modo que varias ventanas
+     * pueden verificar a la vez.
+     */
     public static List<RuleMatch> verificar(String texto) throws IOException {
-        if (languageTool == null) {
+        if (!rapido.pool.isIniciado()) {
             throw new IllegalStateException("El corrector ortográfico no ha sido inicializado. Por favor, llame a CorrectorOrtografico.inicializar() primero.");
         }
-        return languageTool.check(texto);
+        return rapido.verificar(texto);
+    }
+
+    /**
+     * Verificación completa (ortografía y gramática). Si el nivel completo todavía se está
+     * cargando, espera a que esté listo; por eso no debe llamarse desde el hilo de JavaFX.
+     */
+    public static List<RuleMatch> verificarCompleto(String texto) throws IOException {
+        completo.pool.iniciar(); // No hace nada si ya se inició; si la carga está en curso, espera a que termine
+        return completo.verificar(texto);
+    }
+
+    /**
+     * Igual que verificarCompleto, pero en un hilo propio para poder pedirlo desde la interfaz.
+     */
+    public static CompletableFuture<List<RuleMatch>> verificarCompletoEnSegundoPlano(String texto) {
+        CompletableFuture<List<RuleMatch>> futuro = new CompletableFuture<>();
+        Thread hilo = new Thread(() -> {
+            try {
+                futuro.complete(verificarCompleto(texto));
+            } catch (Throwable e) {
+                futuro.completeExceptionally(e);
+            }
+        }, "corrector-informe-completo");
+        hilo.setDaemon(true);
+        hilo.start();
+        return futuro;
+    }
+
+    /**
+     * Indica si el nivel rápido ya tiene una instancia lista, es decir, si verificar() responde sin esperar.
+     */
+    public static boolean isListo() {
+        return rapido.pool.getInstanciasCreadas() > 0;
+    }
+
+    public static boolean isCompletoListo() {
+        return completo.pool.getInstanciasCreadas() > 0;
+    }
+
+    public static long getAciertosCache() {
+        return rapido.getAciertos() + completo.getAciertos();
+    }
+
+    public static long getFallosCache() {
+        return rapido.getFallos() + completo.getFallos();
+    }
+
+    public static void limpiarCache() {
+        rapido.limpiarCache();
+        completo.limpiarCache();
+    }
+
+    /**
+     * Métricas del pool de instancias del nivel rápido (espera, utilización), para diagnóstico.
+     */
+    public static PoolCorrectores getPool() {
+        return rapido.pool;
+    }
+
+    public static PoolCorrectores getPoolCompleto() {
+        return completo.pool;
+    }
+
+    /**
+     * Un nivel de corrección: su pool de instancias y su caché LRU de resultados por oración.
+     */
+    private static final class Nivel {
+        private final PoolCorrectores pool;
+
+        // Oración normalizada -> errores con posiciones relativas al inicio de la oración normalizada (LRU)
+        private final Map<String, List<RuleMatch>> cacheOraciones = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<RuleMatch>> eldest) {
+                return size() > MAX_ORACIONES_EN_CACHE;
+            }
+        };
+        // Atajo para el caso más común (menú contextual o informe sobre el texto recién verificado)
+        private String ultimoTexto = null;
+        private List<RuleMatch> ultimoResultado = null;
+        private long aciertos = 0;
+        private long fallos = 0;
+
+        Nivel(PoolCorrectores pool) {
+            this.pool = pool;
+        }
+
+        /**
+         * El texto se divide en oraciones y solo se verifican las que no están en caché;
+         * así volver a verificar un texto sin cambios no cuesta una pasada completa.
+         */
+        List<RuleMatch> verificar(String texto) throws IOException {
+            synchronized (cacheOraciones) {
+                if (texto.equals(ultimoTexto)) {
+                    aciertos++;
+                    return copiar(ultimoResultado);
+                }
+            }
+            List<RuleMatch> resultado = pool.usar(instancia -> {
+                List<RuleMatch> matches = new ArrayList<>();
+                int inicioOracion = 0;
+                // Las oraciones conservan los espacios, así que concatenadas reproducen el texto
+                for (String oracion : instancia.dividirEnOraciones(texto)) {
+                    String clave = oracion.strip();
+                    if (!clave.isEmpty()) {
+                        int desplazamiento = inicioOracion + oracion.indexOf(clave);
+                        List<RuleMatch> relativos;
+                        synchronized (cacheOraciones) {
+                            relativos = cacheOraciones.get(clave);
+                            if (relativos != null) aciertos++;
+                            else fallos++;
+                        }
+                        if (relativos == null) {
+                            relativos = instancia.verificarOracion(clave);
+                            synchronized (cacheOraciones) {
+                                cacheOraciones.put(clave, relativos);
+                            }
+                        }
+                        for (RuleMatch relativo : relativos) {
+                            RuleMatch absoluto = new RuleMatch(relativo);
+                            absoluto.setOffsetPosition(relativo.getFromPos() + desplazamiento, relativo.getToPos() + desplazamiento);
+                            matches.add(absoluto);
+                        }
+                    }
+                    inicioOracion += oracion.length();
+                }
+                return matches;
+            });
+            synchronized (cacheOraciones) {
+                ultimoTexto = texto;
+                ultimoResultado = resultado;
+            }
+            return copiar(resultado);
+        }
+
+        long getAciertos() {
+            synchronized (cacheOraciones) {
+                return aciertos;
+            }
+        }
+
+        long getFallos() {
+            synchronized (cacheOraciones) {
+                return fallos;
+            }
+        }
+
+        void limpiarCache() {
+            synchronized (cacheOraciones) {
+                cacheOraciones.clear();
+                ultimoTexto = null;
+                ultimoResultado = null;
+            }
+        }
+    }
+
+    // Los llamadores pueden reordenar la lista o ajustar posiciones: nunca se entrega la guardada
+    private static List<RuleMatch> copiar(List<RuleMatch> matches) {
+        List<RuleMatch> copia = new ArrayList<>(matches.size());
+        for (RuleMatch match : matches) {
+            copia.add(new RuleMatch(match));
+        }
+        return copia;
+    }
+
+    /**
+     * Nivel rápido: solo la regla de ortografía por diccionario. Hace a mano el análisis mínimo
+     * que necesita la regla (tokenizar y etiquetar) en lugar de construir un JLanguageTool,
+     * que carga además todas las reglas de gramática.
+     */
+    private static final class CorrectorRapido implements Instancia {
+        private final Spanish idioma = new Spanish();
+        private final Rule reglaOrtografia = idioma.getDefaultSpellingRule();
+
+        CorrectorRapido() {
+            if (reglaOrtografia == null) {
+                throw new IllegalStateException("El idioma español no tiene una regla de ortografía disponible.");
+            }
+        }
+
+        @Override
+        public List<String> dividirEnOraciones(String texto) {
+            return idioma.getSentenceTokenizer().tokenize(texto);
+        }
+
+        @Override
+        public List<RuleMatch> verificarOracion(String oracion) throws IOException {
+            List<AnalyzedTokenReadings> etiquetadas = idioma.getTagger().tag(idioma.getWordTokenizer().tokenize(oracion));
+
+            List<AnalyzedTokenReadings> tokens = new ArrayList<>(etiquetadas.size() + 1);
+            tokens.add(new AnalyzedTokenReadings(new AnalyzedToken("", JLanguageTool.SENTENCE_START_TAGNAME, null), 0));
+            int posicion = 0;
+            for (AnalyzedTokenReadings token : etiquetadas) {
+                token.setStartPos(posicion);
+                posicion += token.getToken().length();
+                tokens.add(token);
+            }
+            return new ArrayList<>(Arrays.asList(reglaOrtografia.match(new AnalyzedSentence(tokens.toArray(new AnalyzedTokenReadings[0])))));
+        }
+    }
+
+    /**
+     * Nivel completo: JLanguageTool con todas las reglas de español.
+     */
+    private static final class CorrectorCompleto implements Instancia {
+        private final JLanguageTool languageTool = new JLanguageTool(new Spanish());
+
+        @Override
+        public List<String> dividirEnOraciones(String texto) {
+            return languageTool.sentenceTokenize(texto);
+        }
+
+        @Override
+        public List<RuleMatch> verificarOracion(String oracion) throws IOException {
+            return languageTool.check(oracion);
+        }
     }
 }
@@ -24,6 +24,13 @@ public class DatabaseConfig {
     private static final String KEY_DB_NAME = "db.name";
     private static final String KEY_USER = "db.user";
     private static final String KEY_PASSWORD = "db.password";
+    // Pool de conexiones
+    private static final String KEY_POOL_MIN = "db.pool.min";
+    private static final String KEY_POOL_MAX = "db.pool.max";
+    private static final String KEY_POOL_IDLE_TIMEOUT_MS = "db.pool.idleTimeoutMs";
+    private static final String KEY_POOL_MAX_LIFETIME_MS = "db.pool.maxLifetimeMs";
+    private static final String KEY_POOL_BORROW_TIMEOUT_MS = "db.pool.borrowTimeoutMs";
+    private static final String KEY_POOL_VALIDATION_TIMEOUT_S = "db.pool.validationTimeoutSeconds";
     // Eliminamos las claves de PDF y Local de aquí
 
     private Properties props;
@@ -33,6 +40,12 @@ public class DatabaseConfig {
     private String dbName;
     private String user;
     private String password;
+    private int poolMinSize;
+    private int poolMaxSize;
+    private long poolIdleTimeoutMs;
+    private long poolMaxLifetimeMs;
+    private long poolBorrowTimeoutMs;
+    private int poolValidationTimeoutSeconds;
     // Eliminamos los campos de PDF y Local de aquí
 
     public DatabaseConfig() {
@@ -65,9 +78,26 @@ public class DatabaseConfig {
         dbName = props.getProperty(KEY_DB_NAME, "snipeit");
         user = props.getProperty(KEY_USER, "root");
         password = props.getProperty(KEY_PASSWORD, "");
+        poolMinSize = (int) parseLong(KEY_POOL_MIN, 1);
+        poolMaxSize = (int) parseLong(KEY_POOL_MAX, 8);
+        poolIdleTimeoutMs = parseLong(KEY_POOL_IDLE_TIMEOUT_MS, 5 * 60 * 1000L);
+        poolMaxLifetimeMs = parseLong(KEY_POOL_MAX_LIFETIME_MS, 30 * 60 * 1000L);
+        poolBorrowTimeoutMs = parseLong(KEY_POOL_BORROW_TIMEOUT_MS, 10 * 1000L);
+        poolValidationTimeoutSeconds = (int) parseLong(KEY_POOL_VALIDATION_TIMEOUT_S, 2);
         // Eliminamos la asignación de pdfFooter, localNombre, etc.
     }
 
+    private long parseLong(String key, long defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Valor inválido para '" + key + "' en la configuración: " + value + ". Se usará " + defaultValue + ".");
+            return defaultValue;
+        }
+    }
+
     public void save() {
         try {
             // Asegurarse de que el directorio de configuración exista
@@ -132,5 +162,31 @@ public class DatabaseConfig {
         this.password = password;
     }
 
+    // Parámetros del pool de conexiones (solo lectura; se ajustan editando config.properties)
+
+    public int getPoolMinSize() {
+        return poolMinSize;
+    }
+
+    public int getPoolMaxSize() {
+        return poolMaxSize;
+    }
+
+    public long getPoolIdleTimeoutMs() {
+        return poolIdleTimeoutMs;
+    }
+
+    public long getPoolMaxLifetimeMs() {
+        return poolMaxLifetimeMs;
+    }
+
+    public long getPoolBorrowTimeoutMs() {
+        return poolBorrowTimeoutMs;
+    }
+
+    public int getPoolValidationTimeoutSeconds() {
+        return poolValidationTimeoutSeconds;
+    }
+
     // Eliminamos los getters y setters para pdfFooter, localNombre, etc.
 }
@@ -12,10 +12,13 @@ public class DatabaseManager {
         } catch (ClassNotFoundException e) {
             throw new RuntimeException("Error Crítico: No se encontró la clase del driver de MySQL. Verifique la dependencia 'mysql-connector-j' en pom.xml.", e);
         }
+        DriverManager.setLoginTimeout(10);
     }
 
     private static volatile DatabaseManager instance;
     private final DatabaseConfig dbConfig;
+    private ConnectionPool pool; // Se crea con la primera conexión solicitada
+    private boolean retired = false; // true tras resetInstance(): esta instancia ya no debe abrir conexiones
 
     private DatabaseManager() {
         this.dbConfig = new DatabaseConfig();
@@ -33,9 +36,15 @@ public class DatabaseManager {
     }
 
     public static void resetInstance() {
+        DatabaseManager old;
         synchronized (DatabaseManager.class) {
+            old = instance;
             instance = null;
         }
+        // Vaciar y cerrar el pool anterior: la configuración pudo haber cambiado
+        if (old != null) {
+            old.shutdownPool();
+        }
     }
 
     // Nuevo método para obtener la configuración actual
@@ -43,14 +52,39 @@ public class DatabaseManager {
         return dbConfig;
     }
 
+    /**
+     * Devuelve una conexión del pool. Debe cerrarse siempre (try-with-resources):
+     * al cerrarla vuelve al pool en lugar de cerrarse físicamente.
+     */
     public Connection getConnection() throws SQLException {
-        DriverManager.setLoginTimeout(10);
+        ConnectionPool current = getPool();
+        if (current == null) {
+            // Alguien conservó una referencia a la instancia anterior a un reset; usar la vigente
+            return getInstance().getConnection();
+        }
+        return current.borrow();
+    }
 
-        String url = "jdbc:mysql://" +
-                dbConfig.getHost() + ":" +
-                dbConfig.getPort() + "/" +
-                dbConfig.getDbName();
+    private synchronized ConnectionPool getPool() {
+        if (retired) return null;
+        if (pool == null) {
+            String url = "jdbc:mysql://" +
+                    dbConfig.getHost() + ":" +
+                    dbConfig.getPort() + "/" +
+                    dbConfig.getDbName() +
+                    // Los lotes de INSERT viajan como una sola sentencia de varias filas, y GROUP_CONCAT
+                    // no corta los documentos de búsqueda de hojas con muchos equipos (el límite por defecto es 1024)
+                    "?rewriteBatchedStatements=true&sessionVariables=group_concat_max_len=65535";
+            pool = new ConnectionPool(url, dbConfig.getUser(), dbConfig.getPassword(), dbConfig);
+        }
+        return pool;
+    }
 
-        return DriverManager.getConnection(url, dbConfig.getUser(), dbConfig.getPassword());
+    private synchronized void shutdownPool() {
+        retired = true;
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
     }
 }
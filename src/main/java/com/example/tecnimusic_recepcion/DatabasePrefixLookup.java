@@ -0,0 +1,133 @@
+package com.example.tecnimusic_recepcion;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Autocompletado que consulta la base de datos en cada búsqueda, para tablas demasiado grandes
+ * para tenerlas en memoria (los seriales de Snipe-IT). Cada consulta es un "LIKE 'prefijo%' LIMIT k"
+ * que resuelve el índice de la columna. Los resultados se guardan por prefijo en una caché LRU pequeña;
+ * si un prefijo más corto ya trajo menos de k filas, el resultado se filtra en memoria sin consultar.
+ */
+public class DatabasePrefixLookup {
+
+    private static final int MAX_PREFIJOS_EN_CACHE = 256;
+    private static final int TIMEOUT_SEGUNDOS = 5;
+
+    private final String sql;
+    private final int limit;
+
+    // Prefijo normalizado -> resultados (LRU); se accede sincronizando sobre el mapa
+    private final Map<String, List<String>> cache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+            return size() > MAX_PREFIJOS_EN_CACHE;
+        }
+    };
+
+    /**
+     * Consulta en curso de un campo. Una búsqueda nueva en el mismo campo cancela la anterior en el servidor
+     * (ver InFlightQuery).
+     */
+    public final class Session {
+        private final InFlightQuery inFlight = new InFlightQuery();
+
+        public List<String> suggest(String text) throws SQLException {
+            return lookup(text, inFlight);
+        }
+    }
+
+    /**
+     * La tabla y la columna vienen del código (no del usuario), por eso se pueden concatenar.
+     */
+    public DatabasePrefixLookup(String table, String column, int limit) {
+        this.sql = "SELECT " + column + " FROM " + table + " WHERE " + column + " LIKE ? ESCAPE '!' ORDER BY " + column + " LIMIT ?";
+        this.limit = limit;
+    }
+
+    public Session openSession() {
+        return new Session();
+    }
+
+    public List<String> lookup(String text) throws SQLException {
+        return lookup(text, null);
+    }
+
+    private List<String> lookup(String text, InFlightQuery inFlight) throws SQLException {
+        String prefix = text == null ? "" : text.strip();
+        if (prefix.isEmpty()) return List.of();
+        String key = prefix.toLowerCase(Locale.ROOT);
+
+        List<String> cached = fromCache(key);
+        if (cached != null) return cached;
+
+        List<String> result = new ArrayList<>();
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            if (inFlight != null) inFlight.start(pstmt); // El usuario ya escribió otra cosa
+            try {
+                pstmt.setQueryTimeout(TIMEOUT_SEGUNDOS);
+                pstmt.setString(1, escapeLike(prefix) + "%");
+                pstmt.setInt(2, limit);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        result.add(rs.getString(1));
+                    }
+                }
+            } finally {
+                if (inFlight != null) inFlight.finish(pstmt); // Antes de devolver la conexión al pool
+            }
+        }
+
+        synchronized (cache) {
+            cache.put(key, result);
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Busca el prefijo exacto o, si no está, uno más corto cuya lista quedó completa (menos de k filas):
+     * en ese caso todos los resultados del prefijo largo están en ella.
+     */
+    private List<String> fromCache(String key) {
+        synchronized (cache) {
+            List<String> exact = cache.get(key);
+            if (exact != null) return new ArrayList<>(exact);
+            for (int length = key.length() - 1; length > 0; length--) {
+                List<String> shorter = cache.get(key.substring(0, length));
+                if (shorter != null && shorter.size() < limit) {
+                    List<String> filtered = new ArrayList<>();
+                    for (String value : shorter) {
+                        if (value.toLowerCase(Locale.ROOT).startsWith(key)) filtered.add(value);
+                    }
+                    cache.put(key, filtered);
+                    return new ArrayList<>(filtered);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Descarta los resultados guardados (después de insertar filas nuevas en la tabla).
+     */
+    public void invalidate() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Escapa los comodines de LIKE para usar el texto como prefijo literal (con ESCAPE '!').
+     */
+    static String escapeLike(String text) {
+        return text.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+}
@@ -10,7 +10,14 @@ import java.sql.Statement;
 import java.sql.Types;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 public class DatabaseService {
 
@@ -23,178 +30,30 @@ public class DatabaseService {
         return instance;
     }
 
+    /**
+     * Verifica el esquema y aplica las migraciones pendientes (ver SchemaMigrator).
+     * Solo consulta la base de datos la primera vez en el proceso; las llamadas posteriores no cuestan nada.
+     */
     public void checkAndUpgradeSchema() throws SQLException {
-        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
-            // 1. Crear todas las tablas si no existen, con todas sus columnas.
-            ensureClientesTableExists(conn);
-            ensureHojasServicioTableExists(conn);
-            ensureEquiposTableExists(conn);
-            ensureAccesoriosSugerenciasTableExists(conn);
-            ensureSettingsTableExists(conn);
-
-            // 2. Verificar y añadir columnas individuales para dar soporte a versiones antiguas (migración).
-            ensureAnticipoColumnExists(conn);
-            ensureCostoColumnExistsInEquiposTable(conn);
-            ensureEstadoFisicoColumnExists(conn);
-            ensureAccesoriosColumnExists(conn);
-            ensureEstadoAndInformeTecnicoColumnsExist(conn);
-            ensureInformeTecnicoColumnInEquiposTableExists(conn);
-            ensureVersioningColumnsExist(conn);
-        }
-    }
-
-    private void ensureVersioningColumnsExist(Connection conn) throws SQLException {
-        // Columna para id_hoja_anterior
-        String checkIdAnteriorSql = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'x_hojas_servicio' AND COLUMN_NAME = 'id_hoja_anterior'";
-        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(checkIdAnteriorSql)) {
-            if (rs.next() && rs.getInt(1) == 0) {
-                String addIdAnteriorSql = "ALTER TABLE x_hojas_servicio ADD COLUMN id_hoja_anterior BIGINT NULL DEFAULT NULL AFTER id";
-                try (Statement alterStmt = conn.createStatement()) {
-                    alterStmt.execute(addIdAnteriorSql);
-                }
-            }
-        }
-    }
-
-    private void ensureClientesTableExists(Connection conn) throws SQLException {
-        String sql = "CREATE TABLE IF NOT EXISTS x_clientes (" +
-                     "id INT AUTO_INCREMENT PRIMARY KEY, " +
-                     "nombre VARCHAR(255), " +
-                     "telefono VARCHAR(255), " +
-                     "direccion TEXT" +
-                     ")";
-        try (Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
-        }
-    }
-
-    private void ensureHojasServicioTableExists(Connection conn) throws SQLException {
-        String sql = "CREATE TABLE IF NOT EXISTS x_hojas_servicio (" +
-                     "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
-                     "numero_orden VARCHAR(255), " +
-                     "cliente_id INT, " +
-                     "fecha_orden DATE, " +
-                     "fecha_entrega DATE, " +
-                     "aclaraciones TEXT, " +
-                     "informe_tecnico TEXT, " +
-                     "total_costos DECIMAL(10, 2), " +
-                     "anticipo DECIMAL(10, 2) DEFAULT 0.00, " +
-                     "estado VARCHAR(50) DEFAULT 'ABIERTA', " +
-                     "firma_aclaracion TEXT, " +
-                     "informe_costos TEXT, " +
-                     "asset_id INT, " +
-                     "equipo_serie VARCHAR(255), " +
-                     "equipo_tipo VARCHAR(255), " +
-                     "equipo_marca VARCHAR(255), " +
-                     "equipo_modelo VARCHAR(255), " +
-                     "falla_reportada TEXT" +
-                     ")";
-        try (Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
-        }
-    }
-
-    private void ensureEquiposTableExists(Connection conn) throws SQLException {
-        String sql = "CREATE TABLE IF NOT EXISTS x_hojas_servicio_equipos (" +
-                     "id BIGINT PRIMARY KEY AUTO_INCREMENT, " +
-                     "hoja_id BIGINT NOT NULL, " +
-                     "asset_id BIGINT, " +
-                     "equipo_serie VARCHAR(255), " +
-                     "equipo_tipo VARCHAR(255), " +
-                     "equipo_marca VARCHAR(255), " +
-                     "equipo_modelo VARCHAR(255), " +
-                     "falla_reportada TEXT, " +
-                     "estado_fisico TEXT, " +
-                     "accesorios TEXT, " +
-                     "informe_tecnico TEXT, " +
-                     "costo DECIMAL(10, 2), " +
-                     "created_at DATETIME DEFAULT NOW(), " +
-                     "updated_at DATETIME DEFAULT NOW()" +
-                     ")";
-        try (Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
-        }
-    }
-
-    private void ensureAccesoriosSugerenciasTableExists(Connection conn) throws SQLException {
-        String sql = "CREATE TABLE IF NOT EXISTS x_accesorios_sugerencias (" +
-                     "id INT AUTO_INCREMENT PRIMARY KEY, " +
-                     "nombre VARCHAR(255) NOT NULL UNIQUE" +
-                     ")";
-        try (Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
-        }
-    }
-
-    private void ensureSettingsTableExists(Connection conn) throws SQLException {
-        String sql = "CREATE TABLE IF NOT EXISTS x_tecnimusic_settings (" +
-                     "setting_key VARCHAR(255) PRIMARY KEY, " +
-                     "setting_value TEXT" +
-                     ")";
-        try (Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
-        }
+        SchemaMigrator.getInstance().migrate();
     }
 
+    /**
+     * Las configuraciones se leen de SettingsCache: solo la primera lectura del proceso va a la base de datos.
+     */
     public String getSetting(String key, String defaultValue) throws SQLException {
-        String sql = "SELECT setting_value FROM x_tecnimusic_settings WHERE setting_key = ?";
-        try (Connection conn = DatabaseManager.getInstance().getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, key);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getString("setting_value");
-            }
-        }
-        return defaultValue;
+        return SettingsCache.getInstance().get(key, defaultValue);
     }
 
     public void saveSetting(String key, String value) throws SQLException {
-        String sql = "INSERT INTO x_tecnimusic_settings (setting_key, setting_value) VALUES (?, ?) " +
-                     "ON DUPLICATE KEY UPDATE setting_value = ?";
-        try (Connection conn = DatabaseManager.getInstance().getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, key);
-            pstmt.setString(2, value);
-            pstmt.setString(3, value);
-            pstmt.executeUpdate();
-        }
+        SettingsCache.getInstance().saveAll(Map.of(key, value));
     }
-    
-    private void ensureInformeTecnicoColumnInEquiposTableExists(Connection conn) throws SQLException {
-        String checkColumnSql = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'x_hojas_servicio_equipos' AND COLUMN_NAME = 'informe_tecnico'";
-        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(checkColumnSql)) {
-            if (rs.next() && rs.getInt(1) == 0) {
-                String addColumnSql = "ALTER TABLE x_hojas_servicio_equipos ADD COLUMN informe_tecnico TEXT";
-                try (Statement alterStmt = conn.createStatement()) {
-                    alterStmt.execute(addColumnSql);
-                }
-            }
-        }
-    }
-
-    private void ensureEstadoAndInformeTecnicoColumnsExist(Connection conn) throws SQLException {
-        // Verificar y añadir columna 'estado'
-        String checkEstadoSql = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'x_hojas_servicio' AND COLUMN_NAME = 'estado'";
-        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(checkEstadoSql)) {
-            if (rs.next() && rs.getInt(1) == 0) {
-                String addEstadoSql = "ALTER TABLE x_hojas_servicio ADD COLUMN estado VARCHAR(50) DEFAULT 'ABIERTA'";
-                try (Statement alterStmt = conn.createStatement()) {
-                    alterStmt.execute(addEstadoSql);
-                }
-            }
-        }
 
-        // Verificar y añadir columna 'informe_tecnico' (en la tabla principal, para mantener compatibilidad o uso general)
-        String checkInformeSql = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'x_hojas_servicio' AND COLUMN_NAME = 'informe_tecnico'";
-        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(checkInformeSql)) {
-            if (rs.next() && rs.getInt(1) == 0) {
-                String addInformeSql = "ALTER TABLE x_hojas_servicio ADD COLUMN informe_tecnico TEXT";
-                try (Statement alterStmt = conn.createStatement()) {
-                    alterStmt.execute(addInformeSql);
-                }
-            }
-        }
+    /**
+     * Guarda varias configuraciones en una sola transacción.
+     */
+    public void saveSettings(Map<String, String> settings) throws SQLException {
+        SettingsCache.getInstance().saveAll(settings);
     }
 
     public List<String> getAllAccesorios() throws SQLException {
@@ -210,6 +69,22 @@ public class DatabaseService {
         return sugerencias;
     }
 
+    /**
+     * Sugerencias de accesorios con su contador de uso, para ordenarlas de más a menos usada.
+     */
+    public Map<String, Integer> getAccesoriosConUso() throws SQLException {
+        Map<String, Integer> sugerencias = new LinkedHashMap<>();
+        String sql = "SELECT nombre, uso FROM x_accesorios_sugerencias";
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                sugerencias.put(rs.getString("nombre"), rs.getInt("uso"));
+            }
+        }
+        return sugerencias;
+    }
+
     public boolean accesorioExists(String accesorio) throws SQLException {
         if (accesorio == null || accesorio.trim().isEmpty()) {
             return false;
@@ -223,16 +98,21 @@ public class DatabaseService {
         }
     }
 
-    public void addAccesorio(String accesorio) throws SQLException {
+    /**
+     * Registra un uso del accesorio: lo crea con uso 1 o incrementa su contador.
+     * Devuelve true si el accesorio no existía.
+     */
+    public boolean addAccesorio(String accesorio) throws SQLException {
         if (accesorio == null || accesorio.trim().isEmpty()) {
-            return;
+            return false;
         }
         String accesorioTrimmed = accesorio.trim();
-        String sql = "INSERT IGNORE INTO x_accesorios_sugerencias (nombre) VALUES (?)";
+        String sql = "INSERT INTO x_accesorios_sugerencias (nombre, uso) VALUES (?, 1) ON DUPLICATE KEY UPDATE uso = uso + 1";
         try (Connection conn = DatabaseManager.getInstance().getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, accesorioTrimmed);
-            pstmt.executeUpdate();
+            // MySQL devuelve 1 si insertó la fila y 2 si actualizó una existente
+            return pstmt.executeUpdate() == 1;
         }
     }
 
@@ -249,136 +129,467 @@ public class DatabaseService {
         }
     }
 
-    private void ensureAccesoriosColumnExists(Connection conn) throws SQLException {
-        String checkColumnSql = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'x_hojas_servicio_equipos' AND COLUMN_NAME = 'accesorios'";
-        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(checkColumnSql)) {
-            if (rs.next() && rs.getInt(1) == 0) {
-                String addColumnSql = "ALTER TABLE x_hojas_servicio_equipos ADD COLUMN accesorios TEXT";
-                try (Statement alterStmt = conn.createStatement()) {
-                    alterStmt.execute(addColumnSql);
-                }
-            }
-        }
-    }
-
-    private void ensureEstadoFisicoColumnExists(Connection conn) throws SQLException {
-        String checkColumnSql = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'x_hojas_servicio_equipos' AND COLUMN_NAME = 'estado_fisico'";
-        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(checkColumnSql)) {
-            if (rs.next() && rs.getInt(1) == 0) {
-                String addColumnSql = "ALTER TABLE x_hojas_servicio_equipos ADD COLUMN estado_fisico TEXT";
-                try (Statement alterStmt = conn.createStatement()) {
-                    alterStmt.execute(addColumnSql);
-                }
-            }
-        }
-    }
-
-    private long gestionarCliente(Connection conn, Long idClienteSeleccionado, String nombreCliente, String telefonoCliente, String direccionCliente) throws SQLException {
+    private long gestionarCliente(Connection conn, ReferenceCache.Transaction referencias, Long idClienteSeleccionado, String nombreCliente, String telefonoCliente, String direccionCliente) throws SQLException {
         if (idClienteSeleccionado != null) return idClienteSeleccionado;
 
         String nombreClienteSimple = nombreCliente.split("\\s*\\|\\s*")[0].trim();
         String telefonoClienteTrimmed = telefonoCliente == null ? "" : telefonoCliente.trim();
         String direccionClienteTrimmed = direccionCliente == null ? "" : direccionCliente.trim();
 
-        String sqlSelect = "SELECT id FROM x_clientes WHERE nombre = ? AND telefono = ?";
+        String nombreClave = ClaveBusqueda.texto(nombreClienteSimple);
+        String telefonoDigitos = ClaveBusqueda.digitos(telefonoClienteTrimmed);
+
+        // Se compara por claves normalizadas: "Gómez" y "gomez" con el mismo teléfono son el mismo cliente
+        String sqlSelect = "SELECT id FROM x_clientes WHERE nombre_clave <=> ? AND telefono_digitos <=> ? ORDER BY id LIMIT 1";
         try (PreparedStatement pstmtSelect = conn.prepareStatement(sqlSelect)) {
-            pstmtSelect.setString(1, nombreClienteSimple);
-            pstmtSelect.setString(2, telefonoClienteTrimmed);
+            pstmtSelect.setString(1, nombreClave);
+            pstmtSelect.setString(2, telefonoDigitos);
             ResultSet rs = pstmtSelect.executeQuery();
             if (rs.next()) return rs.getLong("id");
         }
 
-        String sqlInsert = "INSERT INTO x_clientes (nombre, direccion, telefono) VALUES (?, ?, ?)";
+        String sqlInsert = "INSERT INTO x_clientes (nombre, direccion, telefono, nombre_clave, telefono_digitos) VALUES (?, ?, ?, ?, ?)";
         try (PreparedStatement pstmtInsert = conn.prepareStatement(sqlInsert, Statement.RETURN_GENERATED_KEYS)) {
             pstmtInsert.setString(1, nombreClienteSimple);
             pstmtInsert.setString(2, direccionClienteTrimmed);
             pstmtInsert.setString(3, telefonoClienteTrimmed);
+            pstmtInsert.setString(4, nombreClave);
+            pstmtInsert.setString(5, telefonoDigitos);
             pstmtInsert.executeUpdate();
             ResultSet rs = pstmtInsert.getGeneratedKeys();
-            if (rs.next()) return rs.getLong(1);
+            if (rs.next()) {
+                long clienteId = rs.getLong(1);
+                String sugerencia = SuggestionService.formatCliente(nombreClienteSimple, telefonoClienteTrimmed);
+                referencias.afterCommit(() -> SuggestionService.getInstance().add(SuggestionService.Vocabulary.CLIENTES, sugerencia));
+                referencias.afterCommit(() -> ClientDuplicateIndex.getInstance().put((int) clienteId, nombreClienteSimple, telefonoClienteTrimmed));
+                return clienteId;
+            }
         }
         throw new SQLException("No se pudo crear ni encontrar el cliente.");
     }
 
-    private Long gestionarAsset(Connection conn, String serieEquipo, String companiaEquipo, String modeloEquipo, String tipoEquipo, String nombreCliente) throws SQLException {
-        Long assetId = null;
+    /**
+     * Una página del directorio de clientes, ordenada por nombre (clave normalizada) e id. Con prefijo, solo
+     * los clientes cuyo nombre o teléfono empiezan con él, sin distinguir acentos ni la forma de escribir
+     * el teléfono (rangos de los índices de nombre_clave y telefono_digitos).
+     * La paginación es por clave: despuesDe es el último cliente de la página anterior (null para la primera),
+     * así el coste de cada página no depende de cuántos clientes haya antes.
+     */
+    public List<Client> buscarClientes(String prefijo, Client despuesDe, int limite) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT id, nombre, telefono, direccion FROM x_clientes WHERE 1 = 1 ");
+        List<Object> params = new ArrayList<>();
+
+        String nombreClave = ClaveBusqueda.texto(prefijo);
+        if (nombreClave != null) {
+            sql.append("AND (nombre_clave LIKE ? ESCAPE '!' ");
+            params.add(DatabasePrefixLookup.escapeLike(nombreClave) + "%");
+            if (ClaveBusqueda.pareceTelefono(prefijo)) {
+                sql.append("OR telefono_digitos LIKE ? ");
+                params.add(ClaveBusqueda.digitos(prefijo) + "%");
+            }
+            sql.append(") ");
+        }
+
+        if (despuesDe != null) {
+            String despuesClave = ClaveBusqueda.texto(despuesDe.getName());
+            if (despuesClave == null) {
+                // Las claves NULL van primero: quedan las NULL con id mayor y todas las demás
+                sql.append("AND (nombre_clave IS NOT NULL OR id > ?) ");
+                params.add(despuesDe.getId());
+            } else {
+                sql.append("AND (nombre_clave > ? OR (nombre_clave = ? AND id > ?)) ");
+                params.add(despuesClave);
+                params.add(despuesClave);
+                params.add(despuesDe.getId());
+            }
+        }
+
+        sql.append("ORDER BY nombre_clave, id LIMIT ?");
+        params.add(limite);
+
+        List<Client> clientes = new ArrayList<>();
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                clientes.add(new Client(
+                        rs.getInt("id"),
+                        rs.getString("nombre"),
+                        rs.getString("telefono"),
+                        rs.getString("direccion")));
+            }
+        }
+        return clientes;
+    }
+
+    /**
+     * Resuelve los activos de todos los equipos de una vez: una consulta "serial IN (...)" para los existentes,
+     * una actualización para reactivarlos y asignarles el cliente, y un solo lote de INSERT para los que faltan.
+     * Devuelve el id de activo de cada equipo (null si no tiene serie), en el mismo orden que la lista.
+     */
+    private List<Long> gestionarAssets(Connection conn, ReferenceCache.Transaction referencias, List<Equipo> equipos, String nombreCliente) throws SQLException {
         String nombreClienteSimple = (nombreCliente == null) ? "" : nombreCliente.split("\\s*\\|\\s*")[0].trim();
 
-        String serieEquipoTrimmed = serieEquipo == null ? "" : serieEquipo.trim();
-        if (!serieEquipoTrimmed.isEmpty()) {
-            String sqlSelect = "SELECT id, deleted_at FROM assets WHERE serial = ?";
-            try (PreparedStatement pstmtSelect = conn.prepareStatement(sqlSelect)) {
-                pstmtSelect.setString(1, serieEquipoTrimmed);
-                ResultSet rs = pstmtSelect.executeQuery();
-                if (rs.next()) {
-                    assetId = rs.getLong("id");
-                    if (rs.getTimestamp("deleted_at") != null) {
-                        // Reactivar el activo
-                        String sqlReactivate = "UPDATE assets SET deleted_at = NULL WHERE id = ?";
-                        try (PreparedStatement pstmtReactivate = conn.prepareStatement(sqlReactivate)) {
-                            pstmtReactivate.setLong(1, assetId);
-                            pstmtReactivate.executeUpdate();
-                        }
+        // Serie (en minúsculas, como la compara MySQL) -> primer equipo con esa serie
+        Map<String, Equipo> equiposPorSerie = new LinkedHashMap<>();
+        for (Equipo equipo : equipos) {
+            String serie = equipo.getSerie() == null ? "" : equipo.getSerie().trim();
+            if (!serie.isEmpty()) equiposPorSerie.putIfAbsent(claveSerie(serie), equipo);
+        }
+
+        Map<String, Long> assetIdsPorSerie = new HashMap<>();
+        if (!equiposPorSerie.isEmpty()) {
+            List<String> series = new ArrayList<>();
+            for (Equipo equipo : equiposPorSerie.values()) series.add(equipo.getSerie().trim());
+
+            List<Long> existentes = new ArrayList<>();
+            List<Long> eliminados = new ArrayList<>();
+            for (List<String> bloque : enBloques(series)) {
+                String sqlSelect = "SELECT id, serial, deleted_at FROM assets WHERE serial IN (" + placeholders(bloque.size()) + ")";
+                try (PreparedStatement pstmtSelect = conn.prepareStatement(sqlSelect)) {
+                    for (int i = 0; i < bloque.size(); i++) pstmtSelect.setString(i + 1, bloque.get(i));
+                    ResultSet rs = pstmtSelect.executeQuery();
+                    while (rs.next()) {
+                        long id = rs.getLong("id");
+                        if (assetIdsPorSerie.putIfAbsent(claveSerie(rs.getString("serial")), id) != null) continue;
+                        existentes.add(id);
+                        if (rs.getTimestamp("deleted_at") != null) eliminados.add(id);
                     }
                 }
             }
+
+            // Reactivar los activos archivados y asignar el cliente a todos los existentes
+            actualizarAssets(conn, "UPDATE assets SET deleted_at = NULL WHERE id IN ", eliminados, null);
+            actualizarAssets(conn, "UPDATE assets SET _snipeit_cliente_2 = ? WHERE id IN ", existentes, nombreClienteSimple);
+
+            List<Equipo> nuevos = new ArrayList<>();
+            for (Map.Entry<String, Equipo> entry : equiposPorSerie.entrySet()) {
+                if (!assetIdsPorSerie.containsKey(entry.getKey())) nuevos.add(entry.getValue());
+            }
+            if (!nuevos.isEmpty()) {
+                List<Long> creados = insertarAssets(conn, referencias, nuevos, nombreClienteSimple);
+                for (int i = 0; i < nuevos.size(); i++) {
+                    assetIdsPorSerie.put(claveSerie(nuevos.get(i).getSerie()), creados.get(i));
+                }
+            }
         }
 
-        if (assetId == null) {
-            if (serieEquipoTrimmed.isEmpty()) return null;
+        List<Long> assetIds = new ArrayList<>(equipos.size());
+        for (Equipo equipo : equipos) {
+            String serie = equipo.getSerie() == null ? "" : equipo.getSerie().trim();
+            assetIds.add(serie.isEmpty() ? null : assetIdsPorSerie.get(claveSerie(serie)));
+        }
+        return assetIds;
+    }
 
-            long modelId = gestionarModelo(conn, modeloEquipo, companiaEquipo, tipoEquipo);
-            long statusId = obtenerIdStatusPendiente(conn);
-            long companyId = gestionarEntidad(conn, "companies", companiaEquipo, "La Compañía no puede estar vacía.");
+    private List<Long> insertarAssets(Connection conn, ReferenceCache.Transaction referencias, List<Equipo> nuevos, String nombreClienteSimple) throws SQLException {
+        long statusId = obtenerIdStatusPendiente(conn, referencias);
+        String assetTagBase = "TEC-" + System.currentTimeMillis();
+
+        String sqlInsert = "INSERT INTO assets (asset_tag, serial, model_id, status_id, name, company_id, _snipeit_cliente_2, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, NOW(), NOW())";
+        List<Long> creados = new ArrayList<>();
+        try (PreparedStatement pstmtInsert = conn.prepareStatement(sqlInsert, Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < nuevos.size(); i++) {
+                Equipo equipo = nuevos.get(i);
+                String marca = equipo.getMarca() == null ? "" : equipo.getMarca().trim();
+                String modelo = equipo.getModelo() == null ? "" : equipo.getModelo().trim();
+                String tipo = equipo.getTipo() == null ? "" : equipo.getTipo().trim();
+                // Marca, categoría y modelo salen casi siempre de ReferenceCache, sin consultar
+                long modelId = gestionarModelo(conn, referencias, modelo, marca, tipo);
+                long companyId = gestionarEntidad(conn, referencias, "companies", marca, "La Compañía no puede estar vacía.");
 
-            String sqlInsert = "INSERT INTO assets (asset_tag, serial, model_id, status_id, name, company_id, _snipeit_cliente_2, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, NOW(), NOW())";
-            try (PreparedStatement pstmtInsert = conn.prepareStatement(sqlInsert, Statement.RETURN_GENERATED_KEYS)) {
-                String assetTag = "TEC-" + System.currentTimeMillis();
-                String marca = companiaEquipo.trim();
-                String modelo = modeloEquipo.trim();
                 String assetName = (marca + " " + modelo).trim();
-                if (assetName.isEmpty()) assetName = tipoEquipo == null ? "" : tipoEquipo.trim();
+                if (assetName.isEmpty()) assetName = tipo;
                 if (assetName.isEmpty()) assetName = "Equipo (registrado desde app)";
 
-                pstmtInsert.setString(1, assetTag);
-                pstmtInsert.setString(2, serieEquipoTrimmed);
+                pstmtInsert.setString(1, i == 0 ? assetTagBase : assetTagBase + "-" + i);
+                pstmtInsert.setString(2, equipo.getSerie().trim());
                 pstmtInsert.setLong(3, modelId);
                 pstmtInsert.setLong(4, statusId);
                 pstmtInsert.setString(5, assetName);
                 pstmtInsert.setLong(6, companyId);
                 pstmtInsert.setString(7, nombreClienteSimple);
-
-                pstmtInsert.executeUpdate();
-                ResultSet rs = pstmtInsert.getGeneratedKeys();
-                if (rs.next()) assetId = rs.getLong(1);
+                pstmtInsert.addBatch();
             }
-            if (assetId == null) throw new SQLException("La creación del activo (asset) falló para el número de serie: " + serieEquipoTrimmed);
-        } else {
-            String sqlUpdate = "UPDATE assets SET _snipeit_cliente_2 = ? WHERE id = ?";
-            try (PreparedStatement pstmtUpdate = conn.prepareStatement(sqlUpdate)) {
-                pstmtUpdate.setString(1, nombreClienteSimple);
-                pstmtUpdate.setLong(2, assetId);
-                pstmtUpdate.executeUpdate();
+            pstmtInsert.executeBatch();
+            ResultSet rs = pstmtInsert.getGeneratedKeys();
+            while (rs.next()) creados.add(rs.getLong(1));
+        }
+        if (creados.size() != nuevos.size()) {
+            throw new SQLException("La creación de los activos (assets) falló: se esperaban " + nuevos.size() + " ids y se obtuvieron " + creados.size() + ".");
+        }
+        List<String> seriesNuevas = new ArrayList<>();
+        for (Equipo equipo : nuevos) seriesNuevas.add(equipo.getSerie().trim());
+        referencias.afterCommit(() -> {
+            for (String serie : seriesNuevas) SuggestionService.getInstance().add(SuggestionService.Vocabulary.SERIES, serie);
+        });
+        return creados;
+    }
+
+    // Aplica "UPDATE ... WHERE id IN (...)" a los ids, en bloques; el valor opcional es el primer parámetro
+    private void actualizarAssets(Connection conn, String sqlPrefix, List<Long> ids, String valor) throws SQLException {
+        for (List<Long> bloque : enBloques(ids)) {
+            try (PreparedStatement pstmt = conn.prepareStatement(sqlPrefix + "(" + placeholders(bloque.size()) + ")")) {
+                int index = 1;
+                if (valor != null) pstmt.setString(index++, valor);
+                for (Long id : bloque) pstmt.setLong(index++, id);
+                pstmt.executeUpdate();
             }
         }
+    }
 
-        return assetId;
+    private static String claveSerie(String serie) {
+        return serie.trim().toLowerCase(Locale.ROOT);
     }
 
-    private void actualizarNumeroDeOrden(Connection conn, long hojaId, String numeroOrden) throws SQLException {
-        String sql = "UPDATE x_hojas_servicio SET numero_orden = ? WHERE id = ?";
+    // Límite de parámetros por cada "IN (...)" para no armar sentencias enormes
+    private static final int MAX_PARAMETROS_IN = 500;
+
+    static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    static <T> List<List<T>> enBloques(List<T> values) {
+        List<List<T>> bloques = new ArrayList<>();
+        for (int i = 0; i < values.size(); i += MAX_PARAMETROS_IN) {
+            bloques.add(values.subList(i, Math.min(values.size(), i + MAX_PARAMETROS_IN)));
+        }
+        return bloques;
+    }
+
+    /**
+     * Documento de búsqueda de la hoja (alias hs), indexado con FULLTEXT: número de orden, cliente
+     * y serie, tipo, marca, modelo y falla de cada equipo, en minúsculas.
+     */
+    static final String TEXTO_BUSQUEDA_SET =
+            "search_text = LOWER(CONCAT_WS(' ', hs.numero_orden, " +
+            "(SELECT c.nombre FROM x_clientes c WHERE c.id = hs.cliente_id), " +
+            "(SELECT GROUP_CONCAT(CONCAT_WS(' ', e.equipo_serie, e.equipo_tipo, e.equipo_marca, e.equipo_modelo, e.falla_reportada) " +
+            "ORDER BY e.id SEPARATOR ' ') FROM x_hojas_servicio_equipos e WHERE e.hoja_id = hs.id)))";
+
+    /**
+     * Columnas desnormalizadas de x_hojas_servicio calculadas a partir de sus equipos (alias hs):
+     * el resumen que muestran las listas y el documento de búsqueda.
+     */
+    static final String RESUMEN_EQUIPOS_SET =
+            "equipment_summary = (SELECT GROUP_CONCAT(TRIM(CONCAT_WS(' ', e.equipo_tipo, e.equipo_marca, e.equipo_modelo, " +
+            "CASE WHEN e.equipo_serie IS NOT NULL AND e.equipo_serie != '' THEN CONCAT('(Serie: ', e.equipo_serie, ')') ELSE NULL END)) " +
+            "ORDER BY e.id SEPARATOR '; ') FROM x_hojas_servicio_equipos e WHERE e.hoja_id = hs.id), " +
+            TEXTO_BUSQUEDA_SET;
+
+    /**
+     * Recalcula el resumen y el texto de búsqueda de la hoja; se llama dentro de la transacción
+     * que modificó sus equipos.
+     */
+    private void actualizarResumenEquipos(Connection conn, long hojaId) throws SQLException {
+        String sql = "UPDATE x_hojas_servicio hs SET " + RESUMEN_EQUIPOS_SET + " WHERE hs.id = ?";
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, numeroOrden);
-            pstmt.setLong(2, hojaId);
+            pstmt.setLong(1, hojaId);
             pstmt.executeUpdate();
         }
     }
 
-    private long gestionarModelo(Connection conn, String nombreModelo, String nombreMarca, String nombreCategoria) throws SQLException {
+    /**
+     * Actualiza los datos del cliente y, en la misma transacción, el texto de búsqueda de todas
+     * sus hojas (el nombre del cliente forma parte de él). Tras el commit actualiza las sugerencias
+     * y el índice de duplicados.
+     */
+    public void actualizarCliente(int clienteId, String nombre, String telefono, String direccion) throws SQLException {
+        Connection conn = null;
+        String sugerenciaAnterior;
+        try {
+            conn = DatabaseManager.getInstance().getConnection();
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT nombre, telefono FROM x_clientes WHERE id = ? FOR UPDATE")) {
+                pstmt.setInt(1, clienteId);
+                ResultSet rs = pstmt.executeQuery();
+                if (!rs.next()) throw new SQLException("El cliente ya no existe.");
+                sugerenciaAnterior = SuggestionService.formatCliente(rs.getString("nombre"), rs.getString("telefono"));
+            }
+
+            String sql = "UPDATE x_clientes SET nombre = ?, telefono = ?, direccion = ?, nombre_clave = ?, telefono_digitos = ? WHERE id = ?";
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, nombre);
+                pstmt.setString(2, telefono);
+                pstmt.setString(3, direccion);
+                pstmt.setString(4, ClaveBusqueda.texto(nombre));
+                pstmt.setString(5, ClaveBusqueda.digitos(telefono));
+                pstmt.setInt(6, clienteId);
+                pstmt.executeUpdate();
+            }
+
+            try (PreparedStatement pstmt = conn.prepareStatement("UPDATE x_hojas_servicio hs SET " + TEXTO_BUSQUEDA_SET + " WHERE hs.cliente_id = ?")) {
+                pstmt.setInt(1, clienteId);
+                pstmt.executeUpdate();
+            }
+
+            conn.commit();
+        } catch (SQLException e) {
+            if (conn != null) try { conn.rollback(); } catch (SQLException ex) { System.err.println("Error during rollback: " + ex.getMessage()); }
+            throw e;
+        } finally {
+            if (conn != null) try { conn.close(); } catch (SQLException e) { System.err.println("Error al cerrar la conexión: " + e.getMessage()); }
+        }
+
+        SuggestionService suggestions = SuggestionService.getInstance();
+        suggestions.removeAll(SuggestionService.Vocabulary.CLIENTES, List.of(sugerenciaAnterior));
+        suggestions.add(SuggestionService.Vocabulary.CLIENTES, SuggestionService.formatCliente(nombre, telefono));
+        ClientDuplicateIndex.getInstance().put(clienteId, nombre, telefono);
+    }
+
+    /**
+     * Calcula qué pasaría al fusionar los clientes: una consulta agregada (por bloques de ids) cuenta
+     * las hojas y los activos de cada uno. Sobrevive el que tiene más hojas; a igualdad, el de id menor.
+     * Cada activo cuenta para el cliente cuyo nombre lleva todavía en el inventario.
+     */
+    public ClientMergePreview previsualizarFusionClientes(Collection<Integer> clienteIds) throws SQLException {
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(clienteIds));
+        if (ids.size() < 2) throw new SQLException("Se necesitan al menos dos clientes para fusionar.");
+
+        List<int[]> conteos = new ArrayList<>(); // {id, hojas, activos}
+        Map<Integer, String[]> datos = new HashMap<>(); // id -> {nombre, telefono}
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
+            for (List<Integer> bloque : enBloques(ids)) {
+                // Solo cuentan los activos que todavía llevan el nombre de este cliente: son los que se renombran
+                String sql = "SELECT c.id, c.nombre, c.telefono, COUNT(DISTINCT hs.id) AS hojas, COUNT(DISTINCT a.id) AS activos " +
+                             "FROM x_clientes c " +
+                             "LEFT JOIN x_hojas_servicio hs ON hs.cliente_id = c.id " +
+                             "LEFT JOIN x_hojas_servicio_equipos e ON e.hoja_id = hs.id " +
+                             "LEFT JOIN assets a ON a.id = e.asset_id AND a._snipeit_cliente_2 = c.nombre " +
+                             "WHERE c.id IN (" + placeholders(bloque.size()) + ") " +
+                             "GROUP BY c.id, c.nombre, c.telefono";
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    int index = 1;
+                    for (Integer id : bloque) pstmt.setInt(index++, id);
+                    ResultSet rs = pstmt.executeQuery();
+                    while (rs.next()) {
+                        int id = rs.getInt("id");
+                        conteos.add(new int[]{id, rs.getInt("hojas"), rs.getInt("activos")});
+                        datos.put(id, new String[]{rs.getString("nombre"), rs.getString("telefono")});
+                    }
+                }
+            }
+        }
+        if (conteos.size() < 2) throw new SQLException("Algunos de los clientes seleccionados ya no existen.");
+
+        conteos.sort((a, b) -> a[1] != b[1] ? Integer.compare(b[1], a[1]) : Integer.compare(a[0], b[0]));
+        int[] sobreviviente = conteos.get(0);
+        List<Integer> absorbidos = new ArrayList<>();
+        int hojas = 0;
+        int activos = 0;
+        for (int[] conteo : conteos.subList(1, conteos.size())) {
+            absorbidos.add(conteo[0]);
+            hojas += conteo[1];
+            activos += conteo[2];
+        }
+        String[] datosSobreviviente = datos.get(sobreviviente[0]);
+        return new ClientMergePreview(sobreviviente[0], datosSobreviviente[0], datosSobreviviente[1], absorbidos, hojas, activos);
+    }
+
+    /**
+     * Fusiona los clientes absorbidos en el sobreviviente en una sola transacción: sus activos (los que
+     * aún llevan su nombre) pasan a llevar el del sobreviviente, sus hojas se reasignan y los clientes se borran.
+     * Cada paso es un UPDATE/DELETE por bloque de ids, no una sentencia por fila.
+     * Devuelve cuántas hojas se reasignaron.
+     */
+    public int fusionarClientes(int sobrevivienteId, Collection<Integer> absorbidoIds) throws SQLException {
+        List<Integer> absorbidos = new ArrayList<>(new LinkedHashSet<>(absorbidoIds));
+        absorbidos.remove(Integer.valueOf(sobrevivienteId));
+        if (absorbidos.isEmpty()) return 0;
+
+        Connection conn = null;
+        List<String> sugerenciasAbsorbidas = new ArrayList<>();
+        String sugerenciaSobreviviente;
+        int hojasReasignadas = 0;
+        try {
+            conn = DatabaseManager.getInstance().getConnection();
+            conn.setAutoCommit(false);
+
+            String nombreSobreviviente;
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT nombre, telefono FROM x_clientes WHERE id = ? FOR UPDATE")) {
+                pstmt.setInt(1, sobrevivienteId);
+                ResultSet rs = pstmt.executeQuery();
+                if (!rs.next()) throw new SQLException("El cliente que se conserva ya no existe.");
+                nombreSobreviviente = rs.getString("nombre");
+                sugerenciaSobreviviente = SuggestionService.formatCliente(nombreSobreviviente, rs.getString("telefono"));
+            }
+
+            for (List<Integer> bloque : enBloques(absorbidos)) {
+                String in = "(" + placeholders(bloque.size()) + ")";
+
+                try (PreparedStatement pstmt = conn.prepareStatement("SELECT nombre, telefono FROM x_clientes WHERE id IN " + in)) {
+                    setInts(pstmt, 1, bloque);
+                    ResultSet rs = pstmt.executeQuery();
+                    while (rs.next()) {
+                        sugerenciasAbsorbidas.add(SuggestionService.formatCliente(rs.getString("nombre"), rs.getString("telefono")));
+                    }
+                }
+
+                // Antes de reasignar las hojas, que es lo que liga cada activo con su cliente. Solo se renombran
+                // los activos que siguen a nombre del cliente absorbido: los que ya pasaron a otro no se tocan
+                String sqlAssets = "UPDATE assets a JOIN x_hojas_servicio_equipos e ON e.asset_id = a.id " +
+                                   "JOIN x_hojas_servicio hs ON hs.id = e.hoja_id " +
+                                   "JOIN x_clientes c ON c.id = hs.cliente_id " +
+                                   "SET a._snipeit_cliente_2 = ? WHERE hs.cliente_id IN " + in + " AND a._snipeit_cliente_2 = c.nombre";
+                try (PreparedStatement pstmt = conn.prepareStatement(sqlAssets)) {
+                    pstmt.setString(1, nombreSobreviviente);
+                    setInts(pstmt, 2, bloque);
+                    pstmt.executeUpdate();
+                }
+
+                try (PreparedStatement pstmt = conn.prepareStatement("UPDATE x_hojas_servicio SET cliente_id = ? WHERE cliente_id IN " + in)) {
+                    pstmt.setInt(1, sobrevivienteId);
+                    setInts(pstmt, 2, bloque);
+                    hojasReasignadas += pstmt.executeUpdate();
+                }
+
+                try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM x_clientes WHERE id IN " + in)) {
+                    setInts(pstmt, 1, bloque);
+                    pstmt.executeUpdate();
+                }
+            }
+
+            // Las hojas reasignadas se buscan ahora por el nombre del sobreviviente
+            try (PreparedStatement pstmt = conn.prepareStatement("UPDATE x_hojas_servicio hs SET " + TEXTO_BUSQUEDA_SET + " WHERE hs.cliente_id = ?")) {
+                pstmt.setInt(1, sobrevivienteId);
+                pstmt.executeUpdate();
+            }
+
+            conn.commit();
+        } catch (SQLException e) {
+            if (conn != null) try { conn.rollback(); } catch (SQLException ex) { System.err.println("Error during rollback: " + ex.getMessage()); }
+            throw e;
+        } finally {
+            if (conn != null) try { conn.close(); } catch (SQLException e) { System.err.println("Error al cerrar la conexión: " + e.getMessage()); }
+        }
+
+        sugerenciasAbsorbidas.removeIf(sugerenciaSobreviviente::equals);
+        SuggestionService.getInstance().removeAll(SuggestionService.Vocabulary.CLIENTES, sugerenciasAbsorbidas);
+        ClientDuplicateIndex duplicados = ClientDuplicateIndex.getInstance();
+        for (Integer id : absorbidos) {
+            duplicados.remove(id);
+        }
+        return hojasReasignadas;
+    }
+
+    private static void setInts(PreparedStatement pstmt, int firstIndex, List<Integer> values) throws SQLException {
+        int index = firstIndex;
+        for (Integer value : values) pstmt.setInt(index++, value);
+    }
+
+    private long gestionarModelo(Connection conn, ReferenceCache.Transaction referencias, String nombreModelo, String nombreMarca, String nombreCategoria) throws SQLException {
         if (nombreModelo == null || nombreModelo.trim().isEmpty()) throw new SQLException("El nombre del modelo no puede estar vacío.");
 
-        long manufacturerId = gestionarEntidad(conn, "manufacturers", nombreMarca, "La Marca (fabricante) no puede estar vacía para crear un modelo.");
-        long categoryId = gestionarEntidad(conn, "categories", nombreCategoria, "El Tipo (categoría) no puede estar vacía para crear un modelo.");
+        long manufacturerId = gestionarEntidad(conn, referencias, "manufacturers", nombreMarca, "La Marca (fabricante) no puede estar vacía para crear un modelo.");
+        long categoryId = gestionarEntidad(conn, referencias, "categories", nombreCategoria, "El Tipo (categoría) no puede estar vacía para crear un modelo.");
+
+        String cacheKey = ReferenceCache.key(nombreModelo, String.valueOf(manufacturerId), String.valueOf(categoryId));
+        Long cachedId = referencias.get("models", cacheKey);
+        if (cachedId != null) return cachedId;
 
         String sqlSelect = "SELECT id FROM models WHERE name = ? AND manufacturer_id = ? AND category_id = ?";
         try (PreparedStatement pstmtSelect = conn.prepareStatement(sqlSelect)) {
@@ -386,7 +597,10 @@ public class DatabaseService {
             pstmtSelect.setLong(2, manufacturerId);
             pstmtSelect.setLong(3, categoryId);
             ResultSet rs = pstmtSelect.executeQuery();
-            if (rs.next()) return rs.getLong("id");
+            if (rs.next()) {
+                referencias.put("models", cacheKey, rs.getLong("id"));
+                return rs.getLong("id");
+            }
         }
 
         String sqlInsert = "INSERT INTO models (name, manufacturer_id, category_id, created_at, updated_at) VALUES (?, ?, ?, NOW(), NOW())";
@@ -396,19 +610,32 @@ public class DatabaseService {
             pstmtInsert.setLong(3, categoryId);
             pstmtInsert.executeUpdate();
             ResultSet rs = pstmtInsert.getGeneratedKeys();
-            if (rs.next()) return rs.getLong(1);
+            if (rs.next()) {
+                referencias.put("models", cacheKey, rs.getLong(1));
+                String modelo = nombreModelo.trim();
+                referencias.afterCommit(() -> SuggestionService.getInstance().add(SuggestionService.Vocabulary.MODELOS, modelo));
+                return rs.getLong(1);
+            }
         }
         throw new SQLException("No se pudo crear ni encontrar el modelo '" + nombreModelo.trim() + "'.");
     }
 
-    private long gestionarEntidad(Connection conn, String tabla, String nombre, String mensajeError) throws SQLException {
+    private long gestionarEntidad(Connection conn, ReferenceCache.Transaction referencias, String tabla, String nombre, String mensajeError) throws SQLException {
         if (nombre == null || nombre.trim().isEmpty()) throw new SQLException(mensajeError);
         String nombreTrimmed = nombre.trim();
+
+        String cacheKey = ReferenceCache.key(nombreTrimmed);
+        Long cachedId = referencias.get(tabla, cacheKey);
+        if (cachedId != null) return cachedId;
+
         String sqlSelect = "SELECT id FROM " + tabla + " WHERE name = ?";
         try (PreparedStatement pstmtSelect = conn.prepareStatement(sqlSelect)) {
             pstmtSelect.setString(1, nombreTrimmed);
             ResultSet rs = pstmtSelect.executeQuery();
-            if (rs.next()) return rs.getLong("id");
+            if (rs.next()) {
+                referencias.put(tabla, cacheKey, rs.getLong("id"));
+                return rs.getLong("id");
+            }
         }
 
         String sqlInsert = "INSERT INTO " + tabla + " (name, created_at, updated_at) VALUES (?, NOW(), NOW())";
@@ -416,81 +643,79 @@ public class DatabaseService {
             pstmtInsert.setString(1, nombreTrimmed);
             pstmtInsert.executeUpdate();
             ResultSet rs = pstmtInsert.getGeneratedKeys();
-            if (rs.next()) return rs.getLong(1);
+            if (rs.next()) {
+                referencias.put(tabla, cacheKey, rs.getLong(1));
+                agregarSugerenciaEntidad(referencias, tabla, nombreTrimmed);
+                return rs.getLong(1);
+            }
         }
         throw new SQLException("No se pudo crear ni encontrar la entidad en la tabla '" + tabla + "' con nombre '" + nombreTrimmed + "'.");
     }
 
-    private long obtenerIdStatusPendiente(Connection conn) throws SQLException {
+    // Las compañías y categorías creadas aquí aparecen en el autocompletado en cuanto se confirma la transacción
+    private void agregarSugerenciaEntidad(ReferenceCache.Transaction referencias, String tabla, String nombre) {
+        if ("companies".equals(tabla)) {
+            referencias.afterCommit(() -> SuggestionService.getInstance().add(SuggestionService.Vocabulary.COMPANIAS, nombre));
+        } else if ("categories".equals(tabla)) {
+            referencias.afterCommit(() -> SuggestionService.getInstance().add(SuggestionService.Vocabulary.CATEGORIAS, nombre));
+        }
+    }
+
+    // Se resuelve una vez por proceso (y por base de datos) y queda en ReferenceCache tras el commit
+    private long obtenerIdStatusPendiente(Connection conn, ReferenceCache.Transaction referencias) throws SQLException {
+        Long cachedId = referencias.getPendingStatusId();
+        if (cachedId != null) return cachedId;
+
         String sql = "SELECT id FROM status_labels WHERE pending = 1 ORDER BY id LIMIT 1";
         try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
-            if (rs.next()) return rs.getLong("id");
+            if (rs.next()) {
+                referencias.setPendingStatusId(rs.getLong("id"));
+                return rs.getLong("id");
+            }
         }
 
         sql = "SELECT id FROM status_labels WHERE name = 'Pendiente' LIMIT 1";
         try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
-            if (rs.next()) return rs.getLong("id");
-        }
-
-        throw new SQLException("No se encontró un StatusLabel apropiado (con la marca 'pending' activada o con el nombre 'Pendiente').\nPor favor, configure uno en Snipe-IT para registrar nuevos equipos desde la aplicación.");
-    }
-
-    private void ensureAnticipoColumnExists(Connection conn) throws SQLException {
-        String checkColumnSql = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'x_hojas_servicio' AND COLUMN_NAME = 'anticipo'";
-        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(checkColumnSql)) {
-            if (rs.next() && rs.getInt(1) == 0) {
-                String addColumnSql = "ALTER TABLE x_hojas_servicio ADD COLUMN anticipo DECIMAL(10, 2) DEFAULT 0.00";
-                try (Statement alterStmt = conn.createStatement()) {
-                    alterStmt.execute(addColumnSql);
-                }
+            if (rs.next()) {
+                referencias.setPendingStatusId(rs.getLong("id"));
+                return rs.getLong("id");
             }
         }
-    }
 
-    private void ensureCostoColumnExistsInEquiposTable(Connection conn) throws SQLException {
-        String checkColumnSql = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'x_hojas_servicio_equipos' AND COLUMN_NAME = 'costo'";
-        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(checkColumnSql)) {
-            if (rs.next() && rs.getInt(1) == 0) {
-                String addColumnSql = "ALTER TABLE x_hojas_servicio_equipos ADD COLUMN costo DECIMAL(10, 2)";
-                try (Statement alterStmt = conn.createStatement()) {
-                    alterStmt.execute(addColumnSql);
-                }
-            }
-        }
+        throw new SQLException("No se encontró un StatusLabel apropiado (con la marca 'pending' activada o con el nombre 'Pendiente').\nPor favor, configure uno en Snipe-IT para registrar nuevos equipos desde la aplicación.");
     }
 
+    /**
+     * Guarda una hoja nueva con el número de orden que ya se mostró en el formulario
+     * (reservado con NumeradorOrdenes); si es null, se asigna uno aquí.
+     */
     public String guardarHojaServicioCompleta(
-            Long idClienteSeleccionado, String nombreCliente, String telefonoCliente, String direccionCliente,
+            String numeroOrden, Long idClienteSeleccionado, String nombreCliente, String telefonoCliente, String direccionCliente,
             List<Equipo> equipos,
             LocalDate fechaOrden, String informeDiagnostico, BigDecimal subtotal, BigDecimal anticipo,
             LocalDate fechaEntrega, String firmaAclaracion, String aclaraciones) throws SQLException {
 
+        // La reserva va fuera de la transacción: si esta falla, el número no se reutiliza
+        String realOrdenNumero = numeroOrden != null ? numeroOrden : NumeradorOrdenes.getInstance().siguienteNumero();
+
         Connection conn = null;
         try {
             conn = DatabaseManager.getInstance().getConnection();
             conn.setAutoCommit(false);
+            ReferenceCache.Transaction referencias = ReferenceCache.getInstance().begin();
 
-            long clienteId = gestionarCliente(conn, idClienteSeleccionado, nombreCliente, telefonoCliente, direccionCliente);
+            long clienteId = gestionarCliente(conn, referencias, idClienteSeleccionado, nombreCliente, telefonoCliente, direccionCliente);
 
-            long hojaId = insertarHojaServicioMaestra(conn, clienteId, fechaOrden, informeDiagnostico, subtotal, anticipo, fechaEntrega, firmaAclaracion, aclaraciones, null, "ABIERTA");
-            String realOrdenNumero = "TM-" + LocalDate.now().getYear() + "-" + hojaId;
-            actualizarNumeroDeOrden(conn, hojaId, realOrdenNumero);
+            long hojaId = insertarHojaServicioMaestra(conn, realOrdenNumero, clienteId, fechaOrden, informeDiagnostico, subtotal, anticipo, fechaEntrega, firmaAclaracion, aclaraciones, null, "ABIERTA", null);
 
-            if (equipos != null) {
-                for (Equipo equipo : equipos) {
-                    Long assetId = gestionarAsset(conn,
-                            equipo.getSerie() == null ? "" : equipo.getSerie(),
-                            equipo.getMarca() == null ? "" : equipo.getMarca(),
-                            equipo.getModelo() == null ? "" : equipo.getModelo(),
-                            equipo.getTipo() == null ? "" : equipo.getTipo(),
-                            nombreCliente);
-
-                    insertarEquipoEnHoja(conn, hojaId, assetId,
-                            equipo.getSerie(), equipo.getTipo(), equipo.getMarca(), equipo.getModelo(), equipo.getFalla(), null, equipo.getEstadoFisico(), equipo.getAccesorios(), null);
-                }
+            if (equipos != null && !equipos.isEmpty()) {
+                List<Long> assetIds = gestionarAssets(conn, referencias, equipos, nombreCliente);
+                insertarEquiposEnHoja(conn, hojaId, equipos, assetIds, false);
             }
+            actualizarResumenEquipos(conn, hojaId);
 
             conn.commit();
+            referencias.publish();
             return realOrdenNumero;
 
         } catch (SQLException e) {
@@ -509,6 +734,7 @@ public class DatabaseService {
         try {
             conn = DatabaseManager.getInstance().getConnection();
             conn.setAutoCommit(false);
+            ReferenceCache.Transaction referencias = ReferenceCache.getInstance().begin();
 
             // 1. Anular la hoja de servicio original
             String sqlAnular = "UPDATE x_hojas_servicio SET estado = 'ANULADA' WHERE id = ?";
@@ -521,22 +747,20 @@ public class DatabaseService {
             RevisionInfo revInfo = getRevisionInfo(conn, idHojaAnterior);
 
             // 2. Crear la nueva hoja de servicio (la versión corregida)
-            long clienteId = gestionarCliente(conn, idCliente, nombreCliente, telefonoCliente, direccionCliente);
-            long nuevaHojaId = insertarHojaServicioMaestra(conn, clienteId, fechaOrden, "", BigDecimal.ZERO, anticipo, fechaEntrega, "", aclaraciones, idHojaAnterior, "ABIERTA");
-
-            // 3. Generar el nuevo número de orden con sufijo de revisión
+            long clienteId = gestionarCliente(conn, referencias, idCliente, nombreCliente, telefonoCliente, direccionCliente);
+            // 3. El nuevo número de orden lleva el sufijo de revisión y se guarda en el mismo INSERT
             String nuevoNumeroOrden = revInfo.baseOrderNumber + "-REV" + revInfo.nextRevisionNumber;
-            actualizarNumeroDeOrden(conn, nuevaHojaId, nuevoNumeroOrden);
+            long nuevaHojaId = insertarHojaServicioMaestra(conn, nuevoNumeroOrden, clienteId, fechaOrden, "", BigDecimal.ZERO, anticipo, fechaEntrega, "", aclaraciones, idHojaAnterior, "ABIERTA", revInfo);
 
             // 4. Insertar los equipos en la nueva hoja
-            if (equipos != null) {
-                for (Equipo equipo : equipos) {
-                    Long assetId = gestionarAsset(conn, equipo.getSerie(), equipo.getMarca(), equipo.getModelo(), equipo.getTipo(), nombreCliente);
-                    insertarEquipoEnHoja(conn, nuevaHojaId, assetId, equipo.getSerie(), equipo.getTipo(), equipo.getMarca(), equipo.getModelo(), equipo.getFalla(), null, equipo.getEstadoFisico(), equipo.getAccesorios(), null);
-                }
+            if (equipos != null && !equipos.isEmpty()) {
+                List<Long> assetIds = gestionarAssets(conn, referencias, equipos, nombreCliente);
+                insertarEquiposEnHoja(conn, nuevaHojaId, equipos, assetIds, false);
             }
+            actualizarResumenEquipos(conn, nuevaHojaId);
 
             conn.commit();
+            referencias.publish();
             return nuevoNumeroOrden;
 
         } catch (SQLException e) {
@@ -554,13 +778,14 @@ public class DatabaseService {
             LocalDate fechaEntrega,
             String aclaraciones,
             List<Equipo> equipos,
-            String nombreCliente // Needed for gestionarAsset
+            String nombreCliente // Needed for gestionarAssets
     ) throws SQLException {
 
         Connection conn = null;
         try {
             conn = DatabaseManager.getInstance().getConnection();
             conn.setAutoCommit(false);
+            ReferenceCache.Transaction referencias = ReferenceCache.getInstance().begin();
 
             // 1. Actualizar la hoja de servicio maestra
             String sqlUpdateHoja = "UPDATE x_hojas_servicio SET fecha_orden = ?, anticipo = ?, fecha_entrega = ?, aclaraciones = ? WHERE id = ?";
@@ -584,10 +809,15 @@ public class DatabaseService {
                 }
             }
 
-            String sqlUpdateEquipo = "UPDATE x_hojas_servicio_equipos SET equipo_tipo = ?, equipo_marca = ?, equipo_modelo = ?, equipo_serie = ?, falla_reportada = ?, estado_fisico = ?, accesorios = ?, asset_id = ? WHERE id = ?";
+            List<Long> assetIds = gestionarAssets(conn, referencias, equipos, nombreCliente);
+            List<Equipo> equiposNuevos = new ArrayList<>();
+            List<Long> assetIdsNuevos = new ArrayList<>();
+
+            String sqlUpdateEquipo = "UPDATE x_hojas_servicio_equipos SET equipo_tipo = ?, equipo_marca = ?, equipo_modelo = ?, equipo_serie = ?, falla_reportada = ?, estado_fisico = ?, accesorios = ?, asset_id = ?, serie_clave = ?, marca_clave = ?, modelo_clave = ? WHERE id = ?";
             try (PreparedStatement pstmtUpdate = conn.prepareStatement(sqlUpdateEquipo)) {
-                for (Equipo equipo : equipos) {
-                    Long assetId = gestionarAsset(conn, equipo.getSerie(), equipo.getMarca(), equipo.getModelo(), equipo.getTipo(), nombreCliente);
+                for (int i = 0; i < equipos.size(); i++) {
+                    Equipo equipo = equipos.get(i);
+                    Long assetId = assetIds.get(i);
 
                     if (equipo.getId() != null && idsEquiposEnBD.contains(equipo.getId())) {
                         // Es un equipo existente, actualizarlo
@@ -599,17 +829,22 @@ public class DatabaseService {
                         pstmtUpdate.setString(6, equipo.getEstadoFisico());
                         pstmtUpdate.setString(7, equipo.getAccesorios());
                         if (assetId != null) pstmtUpdate.setLong(8, assetId); else pstmtUpdate.setNull(8, Types.BIGINT);
-                        pstmtUpdate.setLong(9, equipo.getId());
+                        pstmtUpdate.setString(9, ClaveBusqueda.texto(equipo.getSerie()));
+                        pstmtUpdate.setString(10, ClaveBusqueda.texto(equipo.getMarca()));
+                        pstmtUpdate.setString(11, ClaveBusqueda.texto(equipo.getModelo()));
+                        pstmtUpdate.setLong(12, equipo.getId());
                         pstmtUpdate.addBatch();
                         
                         idsEquiposEnBD.remove(equipo.getId());
                     } else {
-                        // Es un equipo nuevo, insertarlo
-                        insertarEquipoEnHoja(conn, hojaId, assetId, equipo.getSerie(), equipo.getTipo(), equipo.getMarca(), equipo.getModelo(), equipo.getFalla(), null, equipo.getEstadoFisico(), equipo.getAccesorios(), null);
+                        // Es un equipo nuevo, se inserta con el resto en un solo lote
+                        equiposNuevos.add(equipo);
+                        assetIdsNuevos.add(assetId);
                     }
                 }
                 pstmtUpdate.executeBatch();
             }
+            insertarEquiposEnHoja(conn, hojaId, equiposNuevos, assetIdsNuevos, false);
 
             // 3. Eliminar los equipos que ya no están en la lista
             if (!idsEquiposEnBD.isEmpty()) {
@@ -623,7 +858,11 @@ public class DatabaseService {
                 }
             }
 
+            // 4. Actualizar el resumen de equipos que muestran las listas
+            actualizarResumenEquipos(conn, hojaId);
+
             conn.commit();
+            referencias.publish();
 
         } catch (SQLException e) {
             if (conn != null) try { conn.rollback(); } catch (SQLException ex) { System.err.println("Error during rollback: " + ex.getMessage()); }
@@ -642,12 +881,14 @@ public class DatabaseService {
         try {
             conn = DatabaseManager.getInstance().getConnection();
             conn.setAutoCommit(false);
+            ReferenceCache.Transaction referencias = ReferenceCache.getInstance().begin();
 
-            Long assetId = gestionarAsset(conn, equipo.getSerie(), equipo.getMarca(), equipo.getModelo(), equipo.getTipo(), nombreCliente);
+            Long assetId = gestionarAssets(conn, referencias, List.of(equipo), nombreCliente).get(0);
 
             String sql = "UPDATE x_hojas_servicio_equipos SET " +
                          "equipo_tipo = ?, equipo_marca = ?, equipo_modelo = ?, equipo_serie = ?, " +
-                         "falla_reportada = ?, estado_fisico = ?, accesorios = ?, asset_id = ?, updated_at = NOW(), informe_tecnico = ? " +
+                         "falla_reportada = ?, estado_fisico = ?, accesorios = ?, asset_id = ?, updated_at = NOW(), informe_tecnico = ?, " +
+                         "serie_clave = ?, marca_clave = ?, modelo_clave = ? " +
                          "WHERE id = ?";
 
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -664,12 +905,23 @@ public class DatabaseService {
                     pstmt.setNull(8, Types.BIGINT);
                 }
                 pstmt.setString(9, equipo.getInformeTecnico());
-                pstmt.setLong(10, equipo.getId());
+                pstmt.setString(10, ClaveBusqueda.texto(equipo.getSerie()));
+                pstmt.setString(11, ClaveBusqueda.texto(equipo.getMarca()));
+                pstmt.setString(12, ClaveBusqueda.texto(equipo.getModelo()));
+                pstmt.setLong(13, equipo.getId());
+
+                pstmt.executeUpdate();
+            }
 
+            String sqlResumen = "UPDATE x_hojas_servicio hs SET " + RESUMEN_EQUIPOS_SET +
+                                " WHERE hs.id = (SELECT hoja_id FROM x_hojas_servicio_equipos WHERE id = ?)";
+            try (PreparedStatement pstmt = conn.prepareStatement(sqlResumen)) {
+                pstmt.setLong(1, equipo.getId());
                 pstmt.executeUpdate();
             }
 
             conn.commit();
+            referencias.publish();
 
         } catch (SQLException e) {
             if (conn != null) try { conn.rollback(); } catch (SQLException ex) { System.err.println("Error during rollback: " + ex.getMessage()); }
@@ -681,70 +933,87 @@ public class DatabaseService {
 
     // Clase interna para encapsular la información de revisión
     private static class RevisionInfo {
+        long rootHojaId; // Hoja original de la cadena
         String baseOrderNumber; // Ej. "TM-2023-100"
         int nextRevisionNumber; // Ej. 1 para la primera revisión, 2 para la segunda, etc.
 
-        RevisionInfo(String baseOrderNumber, int nextRevisionNumber) {
+        RevisionInfo(long rootHojaId, String baseOrderNumber, int nextRevisionNumber) {
+            this.rootHojaId = rootHojaId;
             this.baseOrderNumber = baseOrderNumber;
             this.nextRevisionNumber = nextRevisionNumber;
         }
     }
 
     /**
-     * Rastrea la cadena de revisiones para encontrar el número de orden original
-     * y determina el siguiente número de revisión.
+     * Obtiene el número de orden base de la cadena de revisiones y el siguiente número de revisión.
+     * La raíz guarda root_hoja_id NULL y cada revisión guarda la raíz y su número, así que basta una
+     * consulta: la raíz sale por clave primaria y el MAX de sus revisiones del índice (root_hoja_id, revision_number).
      *
      * @param conn La conexión a la base de datos.
      * @param idHojaBeingRevised El ID de la hoja de servicio que se está revisando.
-     * @return Un objeto RevisionInfo con el número de orden base y el siguiente número de revisión.
+     * @return Un objeto RevisionInfo con la raíz, el número de orden base y el siguiente número de revisión.
      * @throws SQLException Si ocurre un error de base de datos.
      */
     private RevisionInfo getRevisionInfo(Connection conn, long idHojaBeingRevised) throws SQLException {
-        String originalOrderNumber = null;
-        long currentHojaId = idHojaBeingRevised;
-
-        // Encontrar el numero_orden original (el primero en la cadena de revisión)
-        // Este bucle rastreará el id_hoja_anterior hasta encontrar el ancestro más antiguo.
-        while (true) {
-            String sql = "SELECT numero_orden, id_hoja_anterior FROM x_hojas_servicio WHERE id = ?";
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setLong(1, currentHojaId);
-                ResultSet rs = pstmt.executeQuery();
-                if (!rs.next()) {
-                    throw new SQLException("Hoja de servicio con ID " + currentHojaId + " no encontrada.");
-                }
-                originalOrderNumber = rs.getString("numero_orden");
-                long previousId = rs.getLong("id_hoja_anterior");
-                if (rs.wasNull() || previousId == 0) { // Si id_hoja_anterior es NULL o 0, esta es la raíz
-                    break;
-                }
-                currentHojaId = previousId;
+        String sql = "SELECT r.id, r.numero_orden, " +
+                     "GREATEST(r.revision_number, COALESCE((SELECT MAX(revision_number) FROM x_hojas_servicio WHERE root_hoja_id = r.id), 0)) AS max_revision " +
+                     "FROM x_hojas_servicio h JOIN x_hojas_servicio r ON r.id = COALESCE(h.root_hoja_id, h.id) " +
+                     "WHERE h.id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, idHojaBeingRevised);
+            ResultSet rs = pstmt.executeQuery();
+            if (!rs.next()) {
+                throw new SQLException("Hoja de servicio con ID " + idHojaBeingRevised + " no encontrada.");
             }
+            // El número de la raíz no lleva sufijo, salvo en datos antiguos: se quita por si acaso
+            String baseOrderNumber = rs.getString("numero_orden").split("-REV")[0];
+            return new RevisionInfo(rs.getLong("id"), baseOrderNumber, rs.getInt("max_revision") + 1);
         }
+    }
 
-        // El originalOrderNumber ahora contiene el numero_orden de la primera hoja en la cadena.
-        // Este número podría ser una revisión en sí mismo (ej. "TM-2023-100-REV1").
-        // Necesitamos la parte "base" de este, sin ningún sufijo "-REV".
-        String baseOrderNumberWithoutRev = originalOrderNumber.split("-REV")[0];
-
-        // Contar cuántas revisiones (incluyendo las existentes) existen para este número de orden base.
-        // Buscamos todas las hojas cuyo numero_orden comienza con baseOrderNumberWithoutRev y contiene "-REV".
-        String sqlCountRevisions = "SELECT COUNT(*) FROM x_hojas_servicio WHERE numero_orden LIKE ? AND numero_orden LIKE '%-REV%'";
-        try (PreparedStatement pstmt = conn.prepareStatement(sqlCountRevisions)) {
-            pstmt.setString(1, baseOrderNumberWithoutRev + "%");
+    /**
+     * Toda la cadena de revisiones a la que pertenece la hoja (de la original a la última), en una consulta:
+     * la raíz por clave primaria y sus revisiones por el índice de root_hoja_id.
+     */
+    public List<RevisionHojaServicio> getRevisionHistory(long hojaId) throws SQLException {
+        List<RevisionHojaServicio> history = new ArrayList<>();
+        String columnas = "h.revision_number, h.id_hoja_anterior, h.numero_orden, h.fecha_orden, h.estado, h.equipment_summary ";
+        String raiz = "(SELECT COALESCE(root_hoja_id, id) AS root_id FROM x_hojas_servicio WHERE id = ?) t ";
+        String sql = "SELECT h.id, h.id AS root_hoja_id, " + columnas +
+                     "FROM " + raiz + "JOIN x_hojas_servicio h ON h.id = t.root_id " +
+                     "UNION ALL " +
+                     "SELECT h.id, h.root_hoja_id, " + columnas +
+                     "FROM " + raiz + "JOIN x_hojas_servicio h ON h.root_hoja_id = t.root_id " +
+                     "ORDER BY revision_number, id";
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, hojaId);
+            pstmt.setLong(2, hojaId);
             ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                // El +1 es para la nueva revisión que estamos a punto de crear.
-                return new RevisionInfo(baseOrderNumberWithoutRev, rs.getInt(1) + 1);
+            while (rs.next()) {
+                long previousId = rs.getLong("id_hoja_anterior");
+                Long idHojaAnterior = rs.wasNull() || previousId == 0 ? null : previousId;
+                Date fechaOrden = rs.getDate("fecha_orden");
+                history.add(new RevisionHojaServicio(
+                        rs.getLong("id"),
+                        rs.getLong("root_hoja_id"),
+                        rs.getInt("revision_number"),
+                        idHojaAnterior,
+                        rs.getString("numero_orden"),
+                        fechaOrden != null ? fechaOrden.toLocalDate() : null,
+                        rs.getString("estado"),
+                        rs.getString("equipment_summary")));
             }
         }
-        // Si no se encontraron revisiones existentes, significa que baseOrderNumberWithoutRev es el primero.
-        // Por lo tanto, la siguiente revisión será REV1.
-        return new RevisionInfo(baseOrderNumberWithoutRev, 1);
+        return history;
     }
 
-    private long insertarHojaServicioMaestra(Connection conn, long clienteId, LocalDate fechaOrden, String informeDiagnostico, BigDecimal subtotal, BigDecimal anticipo, LocalDate fechaEntrega, String firmaAclaracion, String aclaraciones, Long idHojaAnterior, String estado) throws SQLException {
-        String sql = "INSERT INTO x_hojas_servicio (fecha_orden, cliente_id, asset_id, equipo_serie, equipo_tipo, equipo_marca, equipo_modelo, falla_reportada, informe_costos, total_costos, anticipo, fecha_entrega, firma_aclaracion, aclaraciones, estado, id_hoja_anterior) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    /**
+     * Inserta la hoja maestra. Una revisión recibe la raíz de su cadena y su número de revisión;
+     * una hoja nueva (revision null) es raíz: root_hoja_id NULL y revisión 0, sin una segunda escritura.
+     */
+    private long insertarHojaServicioMaestra(Connection conn, String numeroOrden, long clienteId, LocalDate fechaOrden, String informeDiagnostico, BigDecimal subtotal, BigDecimal anticipo, LocalDate fechaEntrega, String firmaAclaracion, String aclaraciones, Long idHojaAnterior, String estado, RevisionInfo revision) throws SQLException {
+        String sql = "INSERT INTO x_hojas_servicio (fecha_orden, cliente_id, asset_id, equipo_serie, equipo_tipo, equipo_marca, equipo_modelo, falla_reportada, informe_costos, total_costos, anticipo, fecha_entrega, firma_aclaracion, aclaraciones, estado, id_hoja_anterior, root_hoja_id, revision_number, numero_orden) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             pstmt.setDate(1, fechaOrden != null ? Date.valueOf(fechaOrden) : null);
             pstmt.setLong(2, clienteId);
@@ -762,29 +1031,50 @@ public class DatabaseService {
             pstmt.setString(14, aclaraciones);
             pstmt.setString(15, estado); // New parameter for state
             if (idHojaAnterior != null) pstmt.setLong(16, idHojaAnterior); else pstmt.setNull(16, Types.BIGINT);
+            if (revision != null) pstmt.setLong(17, revision.rootHojaId); else pstmt.setNull(17, Types.BIGINT);
+            pstmt.setInt(18, revision != null ? revision.nextRevisionNumber : 0);
+            pstmt.setString(19, numeroOrden);
 
             pstmt.executeUpdate();
             ResultSet rs = pstmt.getGeneratedKeys();
-            if (rs.next()) return rs.getLong(1);
+            if (rs.next()) {
+                return rs.getLong(1);
+            }
         }
         throw new SQLException("No se pudo crear la hoja de servicio maestra.");
     }
 
-    private void insertarEquipoEnHoja(Connection conn, long hojaId, Long assetId, String serie, String tipo, String marca, String modelo, String falla, BigDecimal costo, String estadoFisico, String accesorios, String informeTecnico) throws SQLException {
-        String sql = "INSERT INTO x_hojas_servicio_equipos (hoja_id, asset_id, equipo_serie, equipo_tipo, equipo_marca, equipo_modelo, falla_reportada, costo, estado_fisico, accesorios, informe_tecnico) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    /**
+     * Inserta los equipos de la hoja con un solo executeBatch (la conexión usa rewriteBatchedStatements,
+     * así que el lote viaja como un único INSERT de varias filas). Con conCierre se copian también
+     * el costo y el informe técnico de cada equipo. Las claves normalizadas de serie, marca y modelo
+     * se calculan aquí, una sola vez.
+     */
+    private void insertarEquiposEnHoja(Connection conn, long hojaId, List<Equipo> equipos, List<Long> assetIds, boolean conCierre) throws SQLException {
+        if (equipos.isEmpty()) return;
+        String sql = "INSERT INTO x_hojas_servicio_equipos (hoja_id, asset_id, equipo_serie, equipo_tipo, equipo_marca, equipo_modelo, falla_reportada, costo, estado_fisico, accesorios, informe_tecnico, serie_clave, marca_clave, modelo_clave) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setLong(1, hojaId);
-            if (assetId != null) pstmt.setLong(2, assetId); else pstmt.setNull(2, Types.BIGINT);
-            pstmt.setString(3, serie);
-            pstmt.setString(4, tipo);
-            pstmt.setString(5, marca);
-            pstmt.setString(6, modelo);
-            pstmt.setString(7, falla);
-            if (costo != null) pstmt.setBigDecimal(8, costo); else pstmt.setNull(8, Types.DECIMAL);
-            pstmt.setString(9, estadoFisico);
-            pstmt.setString(10, accesorios);
-            pstmt.setString(11, informeTecnico); // New parameter
-            pstmt.executeUpdate();
+            for (int i = 0; i < equipos.size(); i++) {
+                Equipo equipo = equipos.get(i);
+                Long assetId = assetIds.get(i);
+                BigDecimal costo = conCierre ? equipo.getCosto() : null;
+                pstmt.setLong(1, hojaId);
+                if (assetId != null) pstmt.setLong(2, assetId); else pstmt.setNull(2, Types.BIGINT);
+                pstmt.setString(3, equipo.getSerie());
+                pstmt.setString(4, equipo.getTipo());
+                pstmt.setString(5, equipo.getMarca());
+                pstmt.setString(6, equipo.getModelo());
+                pstmt.setString(7, equipo.getFalla());
+                if (costo != null) pstmt.setBigDecimal(8, costo); else pstmt.setNull(8, Types.DECIMAL);
+                pstmt.setString(9, equipo.getEstadoFisico());
+                pstmt.setString(10, equipo.getAccesorios());
+                pstmt.setString(11, conCierre ? equipo.getInformeTecnico() : null);
+                pstmt.setString(12, ClaveBusqueda.texto(equipo.getSerie()));
+                pstmt.setString(13, ClaveBusqueda.texto(equipo.getMarca()));
+                pstmt.setString(14, ClaveBusqueda.texto(equipo.getModelo()));
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
         }
     }
 
@@ -919,6 +1209,7 @@ public class DatabaseService {
         try {
             conn = DatabaseManager.getInstance().getConnection();
             conn.setAutoCommit(false);
+            ReferenceCache.Transaction referencias = ReferenceCache.getInstance().begin();
 
             // 1. Anular la hoja de servicio original (marcar como ANULADA)
             String sqlAnular = "UPDATE x_hojas_servicio SET estado = 'ANULADA' WHERE id = ?";
@@ -932,25 +1223,23 @@ public class DatabaseService {
 
             // 3. Crear la nueva hoja de servicio (la versión corregida)
             // For a revision of a CLOSED sheet, the new sheet should also be CLOSED.
-            long nuevaHojaId = insertarHojaServicioMaestra(conn, idCliente, fechaOrden, "", BigDecimal.ZERO, anticipo, fechaEntrega, "", aclaraciones, idHojaAnterior, "CERRADA");
-
-            // 4. Generar el nuevo número de orden con sufijo de revisión
+            // 4. El nuevo número de orden lleva el sufijo de revisión y se guarda en el mismo INSERT
             String nuevoNumeroOrden = revInfo.baseOrderNumber + "-REV" + revInfo.nextRevisionNumber;
-            actualizarNumeroDeOrden(conn, nuevaHojaId, nuevoNumeroOrden);
+            long nuevaHojaId = insertarHojaServicioMaestra(conn, nuevoNumeroOrden, idCliente, fechaOrden, "", BigDecimal.ZERO, anticipo, fechaEntrega, "", aclaraciones, idHojaAnterior, "CERRADA", revInfo);
 
             // 5. Insertar los equipos en la nueva hoja
-            if (equipos != null) {
-                for (Equipo equipo : equipos) {
-                    // gestionarAsset handles reactivating deleted assets and linking.
-                    Long assetId = gestionarAsset(conn, equipo.getSerie(), equipo.getMarca(), equipo.getModelo(), equipo.getTipo(), nombreCliente);
-                    
-                    // When creating a revision of a closed sheet, the equipment already has costs and informe_tecnico.
-                    // These should be carried over to the new revision.
-                    insertarEquipoEnHoja(conn, nuevaHojaId, assetId, equipo.getSerie(), equipo.getTipo(), equipo.getMarca(), equipo.getModelo(), equipo.getFalla(), equipo.getCosto(), equipo.getEstadoFisico(), equipo.getAccesorios(), equipo.getInformeTecnico());
-                }
+            if (equipos != null && !equipos.isEmpty()) {
+                // gestionarAssets handles reactivating deleted assets and linking.
+                List<Long> assetIds = gestionarAssets(conn, referencias, equipos, nombreCliente);
+
+                // When creating a revision of a closed sheet, the equipment already has costs and informe_tecnico.
+                // These should be carried over to the new revision.
+                insertarEquiposEnHoja(conn, nuevaHojaId, equipos, assetIds, true);
             }
+            actualizarResumenEquipos(conn, nuevaHojaId);
             
             conn.commit();
+            referencias.publish();
             return nuevoNumeroOrden;
 
         } catch (SQLException e) {
@@ -962,50 +1251,72 @@ public class DatabaseService {
     }
 
     public HojaServicioData getHojaServicioCompleta(long hojaId) throws SQLException {
-        HojaServicioData data = null;
-        String sqlHoja = "SELECT hs.*, c.id as cliente_id_fk, c.nombre as cliente_nombre, c.direccion as cliente_direccion, c.telefono as cliente_telefono " +
-                         "FROM x_hojas_servicio hs " +
-                         "JOIN x_clientes c ON hs.cliente_id = c.id " +
-                         "WHERE hs.id = ?";
-
-        try (Connection conn = DatabaseManager.getInstance().getConnection();
-             PreparedStatement pstmtHoja = conn.prepareStatement(sqlHoja)) {
-
-            pstmtHoja.setLong(1, hojaId);
-            ResultSet rsHoja = pstmtHoja.executeQuery();
-
-            if (rsHoja.next()) {
-                data = new HojaServicioData();
-                data.setId(rsHoja.getLong("id"));
-                data.setNumeroOrden(rsHoja.getString("numero_orden"));
-                Date fechaOrden = rsHoja.getDate("fecha_orden");
-                if (fechaOrden != null) data.setFechaOrden(fechaOrden.toLocalDate());
-
-                data.setClienteId(rsHoja.getLong("cliente_id_fk"));
-                data.setClienteNombre(rsHoja.getString("cliente_nombre"));
-                data.setClienteDireccion(rsHoja.getString("cliente_direccion"));
-                data.setClienteTelefono(rsHoja.getString("cliente_telefono"));
-
-                data.setTotalCostos(rsHoja.getBigDecimal("total_costos"));
-                data.setAnticipo(rsHoja.getBigDecimal("anticipo"));
-
-                Date fechaEntrega = rsHoja.getDate("fecha_entrega");
-                if (fechaEntrega != null) data.setFechaEntrega(fechaEntrega.toLocalDate());
+        List<HojaServicioData> hojas = getHojasServicioCompletas(List.of(hojaId));
+        return hojas.isEmpty() ? null : hojas.get(0);
+    }
 
-                data.setAclaraciones(rsHoja.getString("aclaraciones"));
-                data.setFirmaAclaracion("");
-                data.setInformeCostos(rsHoja.getString("informe_costos"));
+    /**
+     * Carga varias hojas completas (cliente y equipos) sin una consulta por hoja: una consulta IN para los
+     * encabezados y otra para todos los equipos (por bloques de ids), y arma los objetos en memoria.
+     * Devuelve las hojas en el orden de los ids pedidos; las que no existen se omiten.
+     */
+    public List<HojaServicioData> getHojasServicioCompletas(Collection<Long> hojaIds) throws SQLException {
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(hojaIds));
+        Map<Long, HojaServicioData> hojas = new HashMap<>();
+        if (ids.isEmpty()) return new ArrayList<>();
 
-                data.setEstado(rsHoja.getString("estado"));
-                data.setInformeTecnico(rsHoja.getString("informe_tecnico"));
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
+            for (List<Long> bloque : enBloques(ids)) {
+                String in = "(" + placeholders(bloque.size()) + ")";
+
+                String sqlHojas = "SELECT hs.id, hs.numero_orden, hs.fecha_orden, hs.total_costos, hs.anticipo, hs.fecha_entrega, " +
+                                  "hs.aclaraciones, hs.informe_costos, hs.estado, hs.informe_tecnico, " +
+                                  "c.id as cliente_id_fk, c.nombre as cliente_nombre, c.direccion as cliente_direccion, c.telefono as cliente_telefono " +
+                                  "FROM x_hojas_servicio hs " +
+                                  "JOIN x_clientes c ON hs.cliente_id = c.id " +
+                                  "WHERE hs.id IN " + in;
+                try (PreparedStatement pstmtHojas = conn.prepareStatement(sqlHojas)) {
+                    setLongs(pstmtHojas, 1, bloque);
+                    ResultSet rsHoja = pstmtHojas.executeQuery();
+                    while (rsHoja.next()) {
+                        HojaServicioData data = new HojaServicioData();
+                        data.setId(rsHoja.getLong("id"));
+                        data.setNumeroOrden(rsHoja.getString("numero_orden"));
+                        Date fechaOrden = rsHoja.getDate("fecha_orden");
+                        if (fechaOrden != null) data.setFechaOrden(fechaOrden.toLocalDate());
+
+                        data.setClienteId(rsHoja.getLong("cliente_id_fk"));
+                        data.setClienteNombre(rsHoja.getString("cliente_nombre"));
+                        data.setClienteDireccion(rsHoja.getString("cliente_direccion"));
+                        data.setClienteTelefono(rsHoja.getString("cliente_telefono"));
+
+                        data.setTotalCostos(rsHoja.getBigDecimal("total_costos"));
+                        data.setAnticipo(rsHoja.getBigDecimal("anticipo"));
+
+                        Date fechaEntrega = rsHoja.getDate("fecha_entrega");
+                        if (fechaEntrega != null) data.setFechaEntrega(fechaEntrega.toLocalDate());
+
+                        data.setAclaraciones(rsHoja.getString("aclaraciones"));
+                        data.setFirmaAclaracion("");
+                        data.setInformeCostos(rsHoja.getString("informe_costos"));
+
+                        data.setEstado(rsHoja.getString("estado"));
+                        data.setInformeTecnico(rsHoja.getString("informe_tecnico"));
+                        data.setEquipos(new ArrayList<>());
+                        hojas.put(data.getId(), data);
+                    }
+                }
 
-                String sqlEquipos = "SELECT * FROM x_hojas_servicio_equipos WHERE hoja_id = ?";
+                String sqlEquipos = "SELECT id, hoja_id, equipo_tipo, equipo_marca, equipo_serie, equipo_modelo, falla_reportada, " +
+                                    "costo, estado_fisico, accesorios, informe_tecnico " +
+                                    "FROM x_hojas_servicio_equipos WHERE hoja_id IN " + in + " ORDER BY hoja_id, id";
                 try (PreparedStatement pstmtEquipos = conn.prepareStatement(sqlEquipos)) {
-                    pstmtEquipos.setLong(1, hojaId);
+                    setLongs(pstmtEquipos, 1, bloque);
                     ResultSet rsEquipos = pstmtEquipos.executeQuery();
-                    List<Equipo> equipos = new ArrayList<>();
                     while (rsEquipos.next()) {
-                        equipos.add(new Equipo(
+                        HojaServicioData data = hojas.get(rsEquipos.getLong("hoja_id"));
+                        if (data == null) continue; // Hoja sin cliente: no se cargó el encabezado
+                        data.getEquipos().add(new Equipo(
                             rsEquipos.getLong("id"),
                             rsEquipos.getString("equipo_tipo"),
                             rsEquipos.getString("equipo_marca"),
@@ -1018,10 +1329,20 @@ public class DatabaseService {
                             rsEquipos.getString("informe_tecnico")
                         ));
                     }
-                    data.setEquipos(equipos);
                 }
             }
         }
-        return data;
+
+        List<HojaServicioData> result = new ArrayList<>(hojas.size());
+        for (Long id : ids) {
+            HojaServicioData data = hojas.get(id);
+            if (data != null) result.add(data);
+        }
+        return result;
+    }
+
+    private static void setLongs(PreparedStatement pstmt, int firstIndex, List<Long> values) throws SQLException {
+        int index = firstIndex;
+        for (Long value : values) pstmt.setLong(index++, value);
     }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package com.example.tecnimusic_recepcion;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Consulta en curso de un campo o ventana, para que una búsqueda nueva cancele la anterior en el servidor.
+ * <p>
+ * Connector/J implementa Statement.cancel() como "KILL QUERY &lt;id de conexión&gt;" desde otra conexión.
+ * Con el pool, cancelar un statement cuya conexión ya se devolvió mataría la consulta de quien la tomó
+ * después. Por eso solo se cancela bajo el candado y mientras el statement siga registrado, y el dueño
+ * lo quita con finish() antes de cerrar la conexión: una vez fuera, nadie lo cancela.
+ */
+class InFlightQuery {
+
+    private Statement current;
+
+    /**
+     * Registra el statement que se va a ejecutar y cancela el anterior, si sigue en curso.
+     */
+    synchronized void start(Statement statement) {
+        cancelCurrent();
+        current = statement;
+    }
+
+    /**
+     * Quita el statement. Llamar siempre, en un finally, antes de cerrar la conexión.
+     */
+    synchronized void finish(Statement statement) {
+        if (current == statement) current = null;
+    }
+
+    /**
+     * Cancela la consulta registrada, si hay una.
+     */
+    synchronized void cancel() {
+        cancelCurrent();
+    }
+
+    private void cancelCurrent() {
+        if (current == null) return;
+        try {
+            current.cancel();
+        } catch (SQLException e) {
+            // Ya terminó o la conexión se cerró: no hay nada que cancelar
+        }
+        current = null;
+    }
+}
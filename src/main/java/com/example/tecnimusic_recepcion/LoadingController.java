@@ -1,13 +1,14 @@
 package com.example.tecnimusic_recepcion;
 
 import javafx.application.Platform;
-import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.stage.Modality;
@@ -15,21 +16,18 @@ import javafx.stage.Stage;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Optional;
 
 public class LoadingController {
 
     @FXML
     private ImageView loadingImageView;
+    @FXML
+    private ProgressBar startupProgressBar;
+    @FXML
+    private Label startupStatusLabel;
 
-    // --- CONFIGURACIÓN DE LA ANIMACIÓN ---
-    // Ajusta este valor para que coincida con la duración de tu animación GIF en milisegundos.
-    // Por ejemplo, si el GIF dura 4.5 segundos, el valor debería ser 4500.
-    private static final long ANIMATION_DURATION_MS = 9000;
-
-    private volatile boolean isDatabaseReady = false;
-    private volatile boolean isSpellCheckerReady = false;
-    private volatile boolean isAnimationFinished = false;
     private volatile boolean isTransitioning = false;
 
     public void initialize() {
@@ -43,98 +41,108 @@ public class LoadingController {
         Image gif = new Image(getClass().getResourceAsStream("/com/example/tecnimusic_recepcion/images/TecniMusic_Intro.gif"));
         loadingImageView.setImage(gif);
 
-        // Tarea que espera a que la duración de la animación GIF se complete.
-        Task<Void> animationFinishTask = new Task<>() {
-            @Override
-            protected Void call() throws Exception {
-                Thread.sleep(ANIMATION_DURATION_MS);
-                return null;
-            }
-        };
-        animationFinishTask.setOnSucceeded(event -> {
-            isAnimationFinished = true;
-            trySwitchToMainView();
-        });
-        new Thread(animationFinishTask).start();
-
-        startDatabaseLoadTask();
-        startSpellCheckerLoadTask();
+        startStartup();
     }
 
-    private void startDatabaseLoadTask() {
-        Task<Boolean> databaseTask = new Task<>() {
-            @Override
-            protected Boolean call() {
-                System.out.println("Iniciando conexión y verificación de esquema de BD...");
-                try (var ignored = DatabaseManager.getInstance().getConnection()) {
-                    System.out.println("Conexión a la base de datos: Exitosa.");
+    /**
+     * Arranca las etapas de inicialización. El menú principal se abre en cuanto terminan las críticas
+     * (base de datos, esquema y configuración); el corrector, las sugerencias y la verificación
+     * de índices siguen en segundo plano.
+     */
+    private void startStartup() {
+        StartupOrchestrator orchestrator = new StartupOrchestrator()
+                .addStep("conexion", "Conectando a la base de datos", true, () -> {
+                    try (var ignored = DatabaseManager.getInstance().getConnection()) {
+                        System.out.println("Conexión a la base de datos: Exitosa.");
+                    }
+                })
+                .addStep("esquema", "Verificando el esquema de la base de datos", true, () -> {
                     DatabaseService.getInstance().checkAndUpgradeSchema();
                     System.out.println("Esquema de base de datos: Verificado y actualizado.");
-                    return true;
-                } catch (SQLException e) {
-                    System.err.println("Conexión o verificación de esquema fallida.");
-                    e.printStackTrace();
-                    updateMessage(e.getMessage());
-                    return false;
-                }
-            }
-        };
+                }, "conexion")
+                .addStep("ajustes", "Cargando la configuración", true, () -> {
+                    SettingsCache.getInstance().load();
+                    System.out.println("Configuración: Cargada.");
+                }, "esquema")
+                .addStep("indices", "Verificando índices", false, this::reportarIndicesFaltantes, "esquema")
+                .addStep("sugerencias", "Cargando sugerencias", false, () -> {
+                    SuggestionService.getInstance().load();
+                    System.out.println("Sugerencias de autocompletado: Cargadas.");
+                }, "esquema")
+                .addStep("duplicados", "Cargando el índice de clientes", false, () -> {
+                    ClientDuplicateIndex.getInstance().load();
+                    System.out.println("Índice de clientes duplicados: Cargado.");
+                }, "esquema")
+                .addStep("corrector", "Cargando el corrector ortográfico", false, () -> {
+                    CorrectorOrtografico.inicializar();
+                    System.out.println("Corrector ortográfico (nivel rápido): Listo (" + CorrectorOrtografico.getPool().getTamano() + " instancias en el pool). La gramática se carga en segundo plano.");
+                });
 
-        databaseTask.setOnSucceeded(event -> {
-            boolean success = databaseTask.getValue();
-            if (success) {
-                isDatabaseReady = true;
-                trySwitchToMainView();
-            } else {
+        startupProgressBar.setProgress(0);
+        startupStatusLabel.setText("Iniciando...");
+        orchestrator.start(new StartupOrchestrator.Listener() {
+            @Override
+            public void stepStarted(StartupOrchestrator.Step step) {
+                if (!step.isCritical()) return;
                 Platform.runLater(() -> {
-                    Alert alert = new Alert(Alert.AlertType.ERROR);
-                    alert.setTitle("Error de Base de Datos");
-                    alert.setHeaderText("No se pudo conectar o inicializar la base de datos.");
-                    alert.setContentText("Por favor, verifique la configuración de la conexión y el estado de la base de datos.\nError: " + databaseTask.getMessage());
-
-                    ButtonType retryButton = new ButtonType("Reintentar");
-                    ButtonType exitButton = new ButtonType("Salir");
-
-                    alert.getButtonTypes().setAll(retryButton, exitButton);
-
-                    alert.getDialogPane().getStylesheets().add(getClass().getResource("styles.css").toExternalForm());
-                    ((Stage) alert.getDialogPane().getScene().getWindow()).getIcons().add(new Image(getClass().getResourceAsStream("/logo.png")));
-
-                    Optional<ButtonType> result = alert.showAndWait();
-                    if (result.isPresent() && result.get() == retryButton) {
-                        showSettingsAndRetry();
-                    } else {
-                        Platform.exit();
-                    }
+                    if (!isTransitioning) startupStatusLabel.setText(step.getDescription() + "...");
                 });
             }
-        });
 
-        new Thread(databaseTask).start();
+            @Override
+            public void stepFinished(StartupOrchestrator.Step step) {
+                double progress = orchestrator.getCriticalProgress();
+                Platform.runLater(() -> startupProgressBar.setProgress(progress));
+            }
+        }).whenComplete((ignored, error) -> Platform.runLater(() -> {
+            if (error == null) {
+                startupStatusLabel.setText("Listo");
+                trySwitchToMainView();
+            } else {
+                System.err.println("Conexión o verificación de esquema fallida.");
+                error.printStackTrace();
+                showDatabaseError(error.getMessage());
+            }
+        }));
     }
 
-    private void startSpellCheckerLoadTask() {
-        Task<Void> spellCheckerTask = new Task<>() {
-            @Override
-            protected Void call() {
-                System.out.println("Iniciando corrector ortográfico...");
-                CorrectorOrtografico.inicializar();
-                System.out.println("Corrector ortográfico: Listo");
-                return null;
+    /**
+     * Autocomprobación de índices: no impide arrancar, solo avisa en consola si falta alguno.
+     */
+    private void reportarIndicesFaltantes() {
+        try {
+            List<String> faltantes = SchemaMigrator.getInstance().checkIndexes();
+            if (faltantes.isEmpty()) {
+                System.out.println("Índices de base de datos: Completos.");
+            } else {
+                System.err.println("Advertencia: faltan " + faltantes.size() + " índices en la base de datos; las búsquedas pueden ser lentas:");
+                faltantes.forEach(indice -> System.err.println("  - " + indice));
             }
-        };
+        } catch (SQLException e) {
+            System.err.println("No se pudo verificar los índices de la base de datos: " + e.getMessage());
+        }
+    }
 
-        spellCheckerTask.setOnSucceeded(event -> {
-            isSpellCheckerReady = true;
-            trySwitchToMainView();
-        });
+    private void showDatabaseError(String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Error de Base de Datos");
+        alert.setHeaderText("No se pudo conectar o inicializar la base de datos.");
+        alert.setContentText("Por favor, verifique la configuración de la conexión y el estado de la base de datos.\nError: " + message);
 
-        spellCheckerTask.setOnFailed(event -> {
-            System.err.println("Error crítico: No se pudo inicializar el corrector ortográfico.");
-            spellCheckerTask.getException().printStackTrace();
-        });
+        ButtonType retryButton = new ButtonType("Reintentar");
+        ButtonType exitButton = new ButtonType("Salir");
 
-        new Thread(spellCheckerTask).start();
+        alert.getButtonTypes().setAll(retryButton, exitButton);
+
+        alert.getDialogPane().getStylesheets().add(getClass().getResource("styles.css").toExternalForm());
+        ((Stage) alert.getDialogPane().getScene().getWindow()).getIcons().add(new Image(getClass().getResourceAsStream("/logo.png")));
+
+        Optional<ButtonType> result = alert.showAndWait();
+        if (result.isPresent() && result.get() == retryButton) {
+            showSettingsAndRetry();
+        } else {
+            Platform.exit();
+        }
     }
 
     private void showSettingsAndRetry() {
@@ -150,8 +158,7 @@ public class LoadingController {
 
             DatabaseManager.resetInstance();
             
-            isDatabaseReady = false;
-            startDatabaseLoadTask();
+            startStartup();
 
         } catch (IOException e) {
             e.printStackTrace();
@@ -166,10 +173,10 @@ public class LoadingController {
         }
     }
 
-    private synchronized void trySwitchToMainView() {
-        if (isDatabaseReady && isSpellCheckerReady && isAnimationFinished && !isTransitioning) {
+    private void trySwitchToMainView() {
+        if (!isTransitioning) {
             isTransitioning = true;
-            Platform.runLater(this::switchToMainView);
+            switchToMainView();
         }
     }
 
@@ -28,7 +28,10 @@ public class MainMenuController {
         // Opcional: Configuración inicial de los botones o la ventana
     }
 
-    private void openWindow(String fxmlFile, String title, Button ownerButton) {
+    /**
+     * Abre la ventana y devuelve su controlador (null si no se pudo cargar).
+     */
+    private Object openWindow(String fxmlFile, String title, Button ownerButton) {
         try {
             FXMLLoader fxmlLoader = new FXMLLoader(getClass().getResource(fxmlFile));
             Scene scene = new Scene(fxmlLoader.load());
@@ -53,16 +56,22 @@ public class MainMenuController {
 
             // 4. Mostrar la ventana de forma no bloqueante.
             stage.show();
+            return fxmlLoader.getController();
 
         } catch (IOException e) {
             e.printStackTrace();
             showAlert(Alert.AlertType.ERROR, "Error de Carga", "No se pudo abrir la ventana: " + title);
+            return null;
         }
     }
 
     @FXML
     protected void onCreateServiceSheetClicked() {
-        openWindow("/com/example/tecnimusic_recepcion/tecniMusic-view.fxml", "TecniMusic - Nueva Hoja de Servicio", createServiceSheetButton);
+        Object controller = openWindow("/com/example/tecnimusic_recepcion/tecniMusic-view.fxml", "TecniMusic - Nueva Hoja de Servicio", createServiceSheetButton);
+        // Solo una hoja nueva reserva número de orden; consultar o editar una hoja no gasta ninguno
+        if (controller instanceof tecniMusicController) {
+            ((tecniMusicController) controller).loadForNewSheet();
+        }
     }
 
     @FXML
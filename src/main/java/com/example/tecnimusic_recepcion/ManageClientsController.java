@@ -1,13 +1,15 @@
 package com.example.tecnimusic_recepcion;
 
-import javafx.beans.property.SimpleIntegerProperty;
-import javafx.beans.property.SimpleStringProperty;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
 import javafx.collections.transformation.SortedList;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
@@ -17,6 +19,7 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.Window;
+import javafx.util.Duration;
 
 import java.io.IOException;
 import java.sql.Connection;
@@ -24,6 +27,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 public class ManageClientsController {
@@ -48,6 +53,8 @@ public class ManageClientsController {
     @FXML
     private Button deleteButton;
     @FXML
+    private Button mergeButton;
+    @FXML
     private Button exitButton;
 
     @FXML
@@ -63,9 +70,28 @@ public class ManageClientsController {
     @FXML
     private Button cancelButton;
 
+    private static final String PAGE_SIZE_SETTING = "clientes.page.size";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    // Fracción del recorrido de la barra a partir de la cual se pide la siguiente página
+    private static final double SCROLL_THRESHOLD = 0.9;
+    // Pausa al escribir antes de lanzar la búsqueda
+    private static final Duration SEARCH_DELAY = Duration.millis(300);
+
+    // Clientes traídos del servidor para loadedTerm, en el orden de la consulta (nombre, id)
     private final ObservableList<Client> clientList = FXCollections.observableArrayList();
+    private final FilteredList<Client> filteredData = new FilteredList<>(clientList, b -> true);
     private Client selectedClient = null;
 
+    // Estado de la paginación (solo se modifica en el hilo de JavaFX)
+    private String loadedTerm = "";
+    private boolean hasMorePages = true;
+    private boolean loadingPage = false;
+    private long loadGeneration = 0;
+    private volatile int pageSize = 0;
+    private ScrollBar verticalBar;
+    private final PauseTransition searchPause = new PauseTransition(SEARCH_DELAY);
+    private final AsyncDatabaseService.Scope dbScope = new AsyncDatabaseService.Scope();
+
     @FXML
     public void initialize() {
         idColumn.setCellValueFactory(new PropertyValueFactory<>("id"));
@@ -73,24 +99,20 @@ public class ManageClientsController {
         phoneColumn.setCellValueFactory(new PropertyValueFactory<>("phone"));
         addressColumn.setCellValueFactory(new PropertyValueFactory<>("address"));
 
-        loadClientsFromDatabase();
-
-        FilteredList<Client> filteredData = new FilteredList<>(clientList, b -> true);
+        SortedList<Client> sortedData = new SortedList<>(filteredData);
+        sortedData.comparatorProperty().bind(clientsTable.comparatorProperty());
+        clientsTable.setItems(sortedData);
+        clientsTable.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        dbScope.bindTo(clientsTable);
+        installScrollPaging();
 
+        // Búsqueda mientras se escribe: se lanza tras una pausa
         searchField.textProperty().addListener((observable, oldValue, newValue) -> {
-            filteredData.setPredicate(client -> {
-                if (newValue == null || newValue.isEmpty()) return true;
-                String lowerCaseFilter = newValue.toLowerCase();
-                if (client.getName() != null && client.getName().toLowerCase().contains(lowerCaseFilter)) return true;
-                if (client.getPhone() != null && client.getPhone().toLowerCase().contains(lowerCaseFilter)) return true;
-                if (client.getAddress() != null && client.getAddress().toLowerCase().contains(lowerCaseFilter)) return true;
-                return false;
-            });
+            searchPause.setOnFinished(event -> searchClients(newValue, false));
+            searchPause.playFromStart();
         });
 
-        SortedList<Client> sortedData = new SortedList<>(filteredData);
-        sortedData.comparatorProperty().bind(clientsTable.comparatorProperty());
-        clientsTable.setItems(sortedData);
+        loadClientsFromDatabase();
 
         clientsTable.setRowFactory(tv -> {
             TableRow<Client> row = new TableRow<>();
@@ -134,25 +156,111 @@ public class ManageClientsController {
         }
     }
 
+    /**
+     * Vuelve a consultar el directorio para el texto de búsqueda actual (después de altas, cambios y bajas).
+     */
     private void loadClientsFromDatabase() {
+        searchPause.stop();
+        searchClients(searchField.getText(), true);
+    }
+
+    /**
+     * Muestra los clientes cuyo nombre o teléfono empiezan con el término. Si lo ya cargado es el resultado
+     * completo de un término del que este es continuación (una sola página, sin más en el servidor),
+     * se filtra en memoria; si no, se reinicia el listado y se pide la primera página al servidor.
+     */
+    private void searchClients(String searchTerm, boolean force) {
+        String term = searchTerm != null ? searchTerm.trim() : "";
+        String key = ClaveBusqueda.plegar(term);
+
+        if (!force && !loadingPage && !hasMorePages && clientList.size() <= getPageSize()
+                && key.startsWith(ClaveBusqueda.plegar(loadedTerm))) {
+            String digits = ClaveBusqueda.pareceTelefono(term) ? ClaveBusqueda.digitos(term) : null;
+            filteredData.setPredicate(key.isEmpty() ? null : client -> ClaveBusqueda.plegar(client.getName()).startsWith(key)
+                    || (digits != null && startsWith(ClaveBusqueda.digitos(client.getPhone()), digits)));
+            return;
+        }
+
+        loadedTerm = term;
+        loadGeneration++;
+        hasMorePages = true;
+        loadingPage = false;
+        filteredData.setPredicate(null);
         clientList.clear();
-        String sql = "SELECT id, nombre, telefono, direccion FROM x_clientes ORDER BY nombre";
-        try (Connection conn = DatabaseManager.getInstance().getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            while (rs.next()) {
-                clientList.add(new Client(
-                        rs.getInt("id"),
-                        rs.getString("nombre"),
-                        rs.getString("telefono"),
-                        rs.getString("direccion")
-                ));
+        loadNextPage();
+    }
+
+    private static boolean startsWith(String value, String prefix) {
+        return value != null && value.startsWith(prefix);
+    }
+
+    /**
+     * Pide en segundo plano la página que sigue al último cliente cargado.
+     */
+    private void loadNextPage() {
+        if (loadingPage || !hasMorePages) return;
+        loadingPage = true;
+
+        final long generation = loadGeneration;
+        final String term = loadedTerm;
+        final Client last = clientList.isEmpty() ? null : clientList.get(clientList.size() - 1);
+
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().submit(db -> db.buscarClientes(term, last, getPageSize())),
+                page -> {
+                    if (generation != loadGeneration) return; // Resultado de una búsqueda anterior
+                    loadingPage = false;
+                    hasMorePages = page.size() >= getPageSize();
+                    clientList.addAll(page);
+                    // Si la página no llena la tabla no aparece la barra de desplazamiento: pedir la siguiente ya
+                    Platform.runLater(() -> {
+                        if (generation == loadGeneration && verticalBar != null && !verticalBar.isVisible()) {
+                            loadNextPage();
+                        }
+                    });
+                },
+                error -> {
+                    if (generation != loadGeneration) return;
+                    loadingPage = false;
+                    hasMorePages = false;
+                    showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudieron cargar los clientes.");
+                    error.printStackTrace();
+                });
+    }
+
+    /**
+     * Tamaño de página configurable con el ajuste "clientes.page.size"; se lee una sola vez por ventana.
+     */
+    private int getPageSize() {
+        if (pageSize <= 0) {
+            int size = DEFAULT_PAGE_SIZE;
+            try {
+                size = Integer.parseInt(DatabaseService.getInstance().getSetting(PAGE_SIZE_SETTING, String.valueOf(DEFAULT_PAGE_SIZE)).trim());
+            } catch (SQLException | NumberFormatException e) {
+                System.err.println("No se pudo leer el tamaño de página, se usa " + DEFAULT_PAGE_SIZE + ": " + e.getMessage());
             }
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudieron cargar los clientes.");
-            e.printStackTrace();
+            pageSize = Math.max(10, size);
         }
+        return pageSize;
+    }
+
+    /**
+     * Engancha la barra de desplazamiento vertical de la tabla (existe cuando se crea el skin)
+     * para pedir la siguiente página al acercarse al final.
+     */
+    private void installScrollPaging() {
+        clientsTable.skinProperty().addListener((obs, oldSkin, newSkin) -> {
+            for (Node node : clientsTable.lookupAll(".scroll-bar")) {
+                if (node instanceof ScrollBar && ((ScrollBar) node).getOrientation() == Orientation.VERTICAL) {
+                    ScrollBar bar = (ScrollBar) node;
+                    verticalBar = bar;
+                    bar.valueProperty().addListener((o, oldValue, newValue) -> {
+                        if (newValue.doubleValue() >= bar.getMax() * SCROLL_THRESHOLD) {
+                            loadNextPage();
+                        }
+                    });
+                }
+            }
+        });
     }
 
     @FXML
@@ -187,6 +295,55 @@ public class ManageClientsController {
         }
     }
 
+    /**
+     * Fusiona los clientes seleccionados (duplicados) en uno: primero muestra qué se va a cambiar
+     * y, si se confirma, reasigna sus hojas y borra los demás.
+     */
+    @FXML
+    private void handleMergeButton() {
+        List<Integer> ids = new ArrayList<>();
+        for (Client client : clientsTable.getSelectionModel().getSelectedItems()) {
+            ids.add(client.getId());
+        }
+        if (ids.size() < 2) {
+            showAlert(Alert.AlertType.WARNING, "Selección Insuficiente", "Seleccione al menos dos clientes (con Ctrl o Shift) para fusionarlos.");
+            return;
+        }
+
+        mergeButton.setDisable(true);
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().previsualizarFusionClientes(ids),
+                preview -> {
+                    String header = "Se conservará el cliente: " + preview.getSurvivorName() + " (" + preview.getSurvivorPhone() + ").\n" +
+                                    "Se eliminarán " + preview.getAbsorbedIds().size() + " clientes duplicados, " +
+                                    preview.getSheetsToReassign() + " hojas de servicio pasarán al cliente conservado y " +
+                                    preview.getAssetsToRename() + " equipos cambiarán de cliente en el inventario. ¿Desea continuar?";
+                    Optional<ButtonType> result = showConfirmationDialog("Confirmar Fusión de Clientes", header);
+                    if (result.isEmpty() || result.get() != ButtonType.OK) {
+                        mergeButton.setDisable(false);
+                        return;
+                    }
+                    mergeClients(preview);
+                },
+                error -> {
+                    mergeButton.setDisable(false);
+                    showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudo calcular la fusión: " + error.getMessage());
+                });
+    }
+
+    private void mergeClients(ClientMergePreview preview) {
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().fusionarClientes(preview.getSurvivorId(), preview.getAbsorbedIds()),
+                reassigned -> {
+                    mergeButton.setDisable(false);
+                    loadClientsFromDatabase();
+                    showAlert(Alert.AlertType.INFORMATION, "Fusión Completada", "Se fusionaron los clientes en " + preview.getSurvivorName() + " (" + reassigned + " hojas reasignadas).");
+                },
+                error -> {
+                    mergeButton.setDisable(false);
+                    showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudieron fusionar los clientes. No se hizo ningún cambio.");
+                    error.printStackTrace();
+                });
+    }
+
     @FXML
     private void handleSaveButton() {
         String name = nameField.getText();
@@ -199,32 +356,48 @@ public class ManageClientsController {
         }
 
         if (selectedClient == null) { // Adding new client
-            String sql = "INSERT INTO x_clientes (nombre, telefono, direccion) VALUES (?, ?, ?)";
-            try (Connection conn = DatabaseManager.getInstance().getConnection();
-                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, name);
-                pstmt.setString(2, phone);
-                pstmt.setString(3, address);
-                pstmt.executeUpdate();
-            } catch (SQLException e) {
-                showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudo guardar el nuevo cliente.");
-                e.printStackTrace();
-            }
+            String sql = "INSERT INTO x_clientes (nombre, telefono, direccion, nombre_clave, telefono_digitos) VALUES (?, ?, ?, ?, ?)";
+            saveButton.setDisable(true);
+            dbScope.onFxThread(AsyncDatabaseService.getInstance().submitWrite(db -> {
+                        try (Connection conn = DatabaseManager.getInstance().getConnection();
+                             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                            pstmt.setString(1, name);
+                            pstmt.setString(2, phone);
+                            pstmt.setString(3, address);
+                            pstmt.setString(4, ClaveBusqueda.texto(name));
+                            pstmt.setString(5, ClaveBusqueda.digitos(phone));
+                            pstmt.executeUpdate();
+                            ResultSet rs = pstmt.getGeneratedKeys();
+                            return rs.next() ? rs.getInt(1) : null;
+                        }
+                    }),
+                    id -> {
+                        saveButton.setDisable(false);
+                        if (id != null) ClientDuplicateIndex.getInstance().put(id, name, phone);
+                        SuggestionService.getInstance().add(SuggestionService.Vocabulary.CLIENTES, SuggestionService.formatCliente(name, phone));
+                        finishSave();
+                    },
+                    error -> {
+                        saveButton.setDisable(false);
+                        showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudo guardar el nuevo cliente.");
+                        error.printStackTrace();
+                    });
         } else { // Editing existing client
-            String sql = "UPDATE x_clientes SET nombre = ?, telefono = ?, direccion = ? WHERE id = ?";
-            try (Connection conn = DatabaseManager.getInstance().getConnection();
-                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, name);
-                pstmt.setString(2, phone);
-                pstmt.setString(3, address);
-                pstmt.setInt(4, selectedClient.getId());
-                pstmt.executeUpdate();
-            } catch (SQLException e) {
-                showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudo actualizar el cliente.");
-                e.printStackTrace();
-            }
+            saveButton.setDisable(true);
+            dbScope.onFxThread(AsyncDatabaseService.getInstance().actualizarCliente(selectedClient.getId(), name, phone, address),
+                    ignored -> {
+                        saveButton.setDisable(false);
+                        finishSave();
+                    },
+                    error -> {
+                        saveButton.setDisable(false);
+                        showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudo actualizar el cliente.");
+                        error.printStackTrace();
+                    });
         }
+    }
 
+    private void finishSave() {
         loadClientsFromDatabase();
         hideForm();
         clearForm();
@@ -244,17 +417,25 @@ public class ManageClientsController {
 
     private void deleteClientFromDatabase(Client client) {
         String sql = "DELETE FROM x_clientes WHERE id = ?";
-        try (Connection conn = DatabaseManager.getInstance().getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, client.getId());
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
-                loadClientsFromDatabase(); // Refresh table
-            }
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudo eliminar el cliente.");
-            e.printStackTrace();
-        }
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().submitWrite(db -> {
+                    try (Connection conn = DatabaseManager.getInstance().getConnection();
+                         PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                        pstmt.setInt(1, client.getId());
+                        return pstmt.executeUpdate();
+                    }
+                }),
+                affectedRows -> {
+                    if (affectedRows > 0) {
+                        ClientDuplicateIndex.getInstance().remove(client.getId());
+                        SuggestionService.getInstance().removeAll(SuggestionService.Vocabulary.CLIENTES,
+                                List.of(SuggestionService.formatCliente(client.getName(), client.getPhone())));
+                        loadClientsFromDatabase(); // Refresh table
+                    }
+                },
+                error -> {
+                    showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudo eliminar el cliente.");
+                    error.printStackTrace();
+                });
     }
 
     private void showForm() {
@@ -1,10 +1,14 @@
 package com.example.tecnimusic_recepcion;
 
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
@@ -12,6 +16,7 @@ import javafx.scene.image.Image;
 import javafx.scene.input.MouseButton;
 import javafx.stage.Stage;
 import javafx.stage.Window;
+import javafx.util.Duration;
 
 import java.awt.Desktop;
 import java.io.File;
@@ -21,7 +26,10 @@ import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 public class ManageServiceSheetsController {
 
@@ -46,17 +54,57 @@ public class ManageServiceSheetsController {
     @FXML
     private CheckBox showAnuladasCheckBox; // Nuevo: CheckBox para mostrar/ocultar anuladas
 
+    private static final String PAGE_SIZE_SETTING = "hojas.page.size";
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    // Fracción del recorrido de la barra a partir de la cual se pide la siguiente página
+    private static final double SCROLL_THRESHOLD = 0.9;
+    // Pausa al escribir antes de lanzar la búsqueda
+    private static final Duration SEARCH_DELAY = Duration.millis(300);
+
+    // Palabras más cortas que el mínimo del índice FULLTEXT de InnoDB (innodb_ft_min_token_size)
+    private static final int MIN_FULLTEXT_WORD = 3;
+    // Palabras vacías de la lista por defecto de InnoDB: el índice no las guarda, se buscan con LIKE
+    private static final Set<String> FULLTEXT_STOPWORDS = Set.of(
+            "about", "are", "com", "for", "from", "how", "that", "the", "this", "was", "what", "when", "where", "who", "will", "with", "und", "www");
+    private static final Pattern ORDER_NUMBER_PATTERN = Pattern.compile("(?i)TM-\\d{4}-\\d+(-REV\\d+)?");
+    // Una sola palabra de al menos 4 caracteres con algún dígito: probablemente un número de serie
+    private static final Pattern SERIAL_PATTERN = Pattern.compile("(?=\\S*\\d)\\S{4,}");
+
+    /**
+     * Cómo se resuelve una búsqueda. Los números de orden y las series van por igualdad sobre un índice;
+     * el resto usa el índice FULLTEXT de search_text ordenado por relevancia.
+     */
+    private enum SearchMode { LISTADO, NUMERO_ORDEN, SERIE, TEXTO }
+
+    private static final class Page {
+        final SearchMode mode;
+        final List<ServiceSheetSummary> rows;
+
+        Page(SearchMode mode, List<ServiceSheetSummary> rows) {
+            this.mode = mode;
+            this.rows = rows;
+        }
+    }
+
     private final ObservableList<ServiceSheetSummary> serviceSheets = FXCollections.observableArrayList();
 
+    // Estado de la paginación (solo se modifica en el hilo de JavaFX)
+    private String currentSearchTerm = "";
+    private boolean currentShowAnuladas = false;
+    private SearchMode currentSearchMode; // Lo decide la primera página; null hasta entonces
+    private Long lastLoadedId;
+    private boolean hasMorePages = true;
+    private boolean loadingPage = false;
+    private long loadGeneration = 0;
+    private volatile int pageSize = 0;
+    private ScrollBar verticalBar;
+    private final PauseTransition searchPause = new PauseTransition(SEARCH_DELAY);
+    // Consulta en curso; una búsqueda nueva la cancela en el servidor (ver InFlightQuery)
+    private final InFlightQuery inFlightQuery = new InFlightQuery();
+    private final AsyncDatabaseService.Scope dbScope = new AsyncDatabaseService.Scope();
+
     @FXML
     public void initialize() {
-        try {
-            DatabaseService.getInstance().checkAndUpgradeSchema();
-        } catch (SQLException e) {
-            e.printStackTrace();
-            showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudo verificar o actualizar la estructura de la base de datos.");
-        }
-
         orderNumberCol.setCellValueFactory(new PropertyValueFactory<>("orderNumber"));
         dateCol.setCellValueFactory(new PropertyValueFactory<>("date"));
         clientNameCol.setCellValueFactory(new PropertyValueFactory<>("clientName"));
@@ -64,6 +112,8 @@ public class ManageServiceSheetsController {
         statusCol.setCellValueFactory(new PropertyValueFactory<>("status"));
 
         serviceSheetsTable.setItems(serviceSheets);
+        dbScope.bindTo(serviceSheetsTable);
+        installScrollPaging();
 
         // Listener para habilitar/deshabilitar el botón de editar
         editSheetButton.setDisable(true); // Keep disabled by default
@@ -86,89 +136,265 @@ public class ManageServiceSheetsController {
             return row;
         });
 
+        // Búsqueda mientras se escribe: se lanza tras una pausa y solo si el término cambió
+        searchField.textProperty().addListener((obs, oldText, newText) -> {
+            searchPause.setOnFinished(event -> {
+                if (!newText.trim().equals(currentSearchTerm)) searchAndLoadServiceSheets(newText);
+            });
+            searchPause.playFromStart();
+        });
+
         // Asegurarse de que el CheckBox esté desmarcado al inicio
         showAnuladasCheckBox.setSelected(false); 
-        // Cargar inicialmente las hojas de servicio (sin anuladas por defecto)
-        searchAndLoadServiceSheets(null);
+        // Verificar la estructura en segundo plano y después cargar las hojas de servicio (sin anuladas por defecto)
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().submitWrite(db -> {
+                    db.checkAndUpgradeSchema();
+                    return null;
+                }),
+                ignored -> searchAndLoadServiceSheets(null),
+                error -> {
+                    error.printStackTrace();
+                    showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudo verificar o actualizar la estructura de la base de datos.");
+                    searchAndLoadServiceSheets(null);
+                });
         // Listener para el CheckBox
         showAnuladasCheckBox.selectedProperty().addListener((obs, oldVal, newVal) -> onShowAnuladasChanged());
     }
 
+    /**
+     * Reinicia el listado y carga la primera página para el término y filtro actuales.
+     * Las siguientes páginas se piden al llegar al final de la tabla (ver loadNextPage).
+     */
     private void searchAndLoadServiceSheets(String searchTerm) {
+        currentSearchTerm = searchTerm != null ? searchTerm.trim() : "";
+        currentShowAnuladas = showAnuladasCheckBox.isSelected();
+        loadGeneration++;
+        cancelInFlightQuery(); // Su resultado ya no se aplicaría
+        currentSearchMode = null;
+        lastLoadedId = null;
+        hasMorePages = true;
+        loadingPage = false;
         serviceSheets.clear();
+        loadNextPage();
+    }
+
+    /**
+     * Pide en segundo plano la siguiente página. El listado y las búsquedas exactas usan paginación por clave
+     * (hs.id menor que el último id cargado), así el coste de cada página no depende de cuántas hojas haya antes;
+     * la búsqueda por texto, ordenada por relevancia, usa desplazamiento.
+     */
+    private void loadNextPage() {
+        if (loadingPage || !hasMorePages) return;
+        loadingPage = true;
+
+        final long generation = loadGeneration;
+        final String searchTerm = currentSearchTerm;
+        final boolean showAnuladas = currentShowAnuladas;
+        final SearchMode mode = currentSearchMode;
+        final Long afterId = lastLoadedId;
+        final int offset = serviceSheets.size();
+
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().submit(db -> fetchPage(searchTerm, mode, showAnuladas, afterId, offset, getPageSize())),
+                page -> {
+                    if (generation != loadGeneration) return; // Resultado de una búsqueda anterior
+                    loadingPage = false;
+                    currentSearchMode = page.mode;
+                    hasMorePages = page.rows.size() >= getPageSize();
+                    if (!page.rows.isEmpty()) {
+                        lastLoadedId = page.rows.get(page.rows.size() - 1).getId();
+                        serviceSheets.addAll(page.rows);
+                    }
+                    // Si la página no llena la tabla no aparece la barra de desplazamiento: pedir la siguiente ya
+                    Platform.runLater(() -> {
+                        if (generation == loadGeneration && verticalBar != null && !verticalBar.isVisible()) {
+                            loadNextPage();
+                        }
+                    });
+                },
+                error -> {
+                    if (generation != loadGeneration) return;
+                    loadingPage = false;
+                    hasMorePages = false;
+                    showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudieron cargar las hojas de servicio.");
+                    error.printStackTrace();
+                });
+    }
 
-        String baseSql = "SELECT hs.id, hs.numero_orden, hs.fecha_orden, c.nombre as cliente_nombre, hs.estado, " +
-                         "GROUP_CONCAT( " +
-                         "    TRIM(CONCAT_WS(' ', " +
-                         "        hse.equipo_tipo, " +
-                         "        hse.equipo_marca, " +
-                         "        hse.equipo_modelo, " +
-                         "        CASE WHEN hse.equipo_serie IS NOT NULL AND hse.equipo_serie != '' THEN CONCAT('(Serie: ', hse.equipo_serie, ')') ELSE NULL END " +
-                         "    )) " +
-                         "    SEPARATOR '; ' " +
-                         ") AS equipment_summary " +
-                         "FROM x_hojas_servicio hs " +
-                         "JOIN x_clientes c ON hs.cliente_id = c.id " +
-                         "LEFT JOIN x_hojas_servicio_equipos hse ON hs.id = hse.hoja_id ";
-
-        StringBuilder whereClause = new StringBuilder();
-        List<String> params = new ArrayList<>();
+    private Page fetchPage(String searchTerm, SearchMode mode, boolean showAnuladas, Long afterId, int offset, int pageSize) throws SQLException {
+        if (mode == null) mode = detectSearchMode(searchTerm);
+
+        if (mode == SearchMode.NUMERO_ORDEN || mode == SearchMode.SERIE) {
+            List<ServiceSheetSummary> rows = fetchKeysetPage(searchTerm, mode, showAnuladas, afterId, pageSize);
+            // Sin coincidencia exacta (por ejemplo, una palabra con dígitos que es parte de un modelo): buscar por texto
+            if (!rows.isEmpty() || afterId != null) return new Page(mode, rows);
+            mode = SearchMode.TEXTO;
+        }
+        if (mode == SearchMode.TEXTO) {
+            return new Page(mode, fetchFullTextPage(searchTerm, showAnuladas, offset, pageSize));
+        }
+        return new Page(mode, fetchKeysetPage(searchTerm, mode, showAnuladas, afterId, pageSize));
+    }
+
+    private static SearchMode detectSearchMode(String searchTerm) {
+        if (searchTerm.isEmpty()) return SearchMode.LISTADO;
+        if (ORDER_NUMBER_PATTERN.matcher(searchTerm).matches()) return SearchMode.NUMERO_ORDEN;
+        if (SERIAL_PATTERN.matcher(searchTerm).matches()) return SearchMode.SERIE;
+        return SearchMode.TEXTO;
+    }
+
+    /**
+     * Listado completo o búsqueda exacta por número de orden (con sus revisiones) o por serie de un equipo.
+     * El resumen de equipos está guardado en la propia hoja, así que no hace falta agrupar.
+     */
+    private List<ServiceSheetSummary> fetchKeysetPage(String searchTerm, SearchMode mode, boolean showAnuladas, Long afterId, int pageSize) throws SQLException {
+        StringBuilder sql = new StringBuilder(
+                "SELECT hs.id, hs.numero_orden, hs.fecha_orden, c.nombre as cliente_nombre, hs.estado, hs.equipment_summary " +
+                "FROM x_hojas_servicio hs JOIN x_clientes c ON hs.cliente_id = c.id WHERE 1 = 1 ");
+        List<Object> params = new ArrayList<>();
 
         // Filtrar por estado "ANULADA" si el checkbox no está marcado
-        if (!showAnuladasCheckBox.isSelected()) {
-            whereClause.append(" WHERE hs.estado != ? ");
+        if (!showAnuladas) {
+            sql.append("AND hs.estado != ? ");
             params.add("ANULADA");
         }
 
-        boolean hasSearchTerm = searchTerm != null && !searchTerm.trim().isEmpty();
-        if (hasSearchTerm) {
-            String searchPattern = "%" + searchTerm.trim() + "%";
-            String searchCondition = " (hs.numero_orden LIKE ? OR c.nombre LIKE ? OR hse.equipo_serie LIKE ? OR hse.equipo_marca LIKE ? OR hse.equipo_modelo LIKE ?) ";
-            
-            if (whereClause.length() == 0) {
-                whereClause.append(" WHERE ").append(searchCondition);
+        if (afterId != null) {
+            sql.append("AND hs.id < ? ");
+            params.add(afterId);
+        }
+
+        if (mode == SearchMode.NUMERO_ORDEN) {
+            sql.append("AND (hs.numero_orden = ? OR hs.numero_orden LIKE ?) ");
+            params.add(searchTerm);
+            params.add(searchTerm + "-REV%");
+        } else if (mode == SearchMode.SERIE) {
+            sql.append("AND hs.id IN (SELECT e.hoja_id FROM x_hojas_servicio_equipos e WHERE e.serie_clave = ?) ");
+            params.add(ClaveBusqueda.texto(searchTerm));
+        }
+
+        sql.append("ORDER BY hs.id DESC LIMIT ?");
+        params.add(pageSize);
+        return querySheets(sql.toString(), params);
+    }
+
+    /**
+     * Búsqueda por palabras sobre el índice FULLTEXT de search_text (número de orden, cliente, serie, tipo,
+     * marca, modelo y falla). Todas las palabras deben aparecer, como prefijo; los resultados van por relevancia.
+     * Las palabras que el índice no guarda (muy cortas o vacías) se exigen con LIKE sobre el mismo texto.
+     */
+    private List<ServiceSheetSummary> fetchFullTextPage(String searchTerm, boolean showAnuladas, int offset, int pageSize) throws SQLException {
+        StringBuilder booleanQuery = new StringBuilder();
+        List<String> likeWords = new ArrayList<>();
+        for (String word : searchTerm.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) continue;
+            if (word.length() < MIN_FULLTEXT_WORD || FULLTEXT_STOPWORDS.contains(word)) {
+                likeWords.add(word);
             } else {
-                whereClause.append(" AND ").append(searchCondition);
+                booleanQuery.append(booleanQuery.length() > 0 ? " " : "").append('+').append(word).append('*');
             }
-            params.add(searchPattern);
-            params.add(searchPattern);
-            params.add(searchPattern);
-            params.add(searchPattern);
-            params.add(searchPattern);
+        }
+        boolean useFullText = booleanQuery.length() > 0;
+
+        StringBuilder sql = new StringBuilder(
+                "SELECT hs.id, hs.numero_orden, hs.fecha_orden, c.nombre as cliente_nombre, hs.estado, hs.equipment_summary" +
+                (useFullText ? ", MATCH(hs.search_text) AGAINST (? IN BOOLEAN MODE) AS relevancia " : " ") +
+                "FROM x_hojas_servicio hs JOIN x_clientes c ON hs.cliente_id = c.id WHERE 1 = 1 ");
+        List<Object> params = new ArrayList<>();
+        if (useFullText) {
+            params.add(booleanQuery.toString());
+            sql.append("AND MATCH(hs.search_text) AGAINST (? IN BOOLEAN MODE) ");
+            params.add(booleanQuery.toString());
+        }
+        for (String word : likeWords) {
+            sql.append("AND hs.search_text LIKE ? ");
+            params.add("%" + word + "%");
+        }
+
+        // Filtrar por estado "ANULADA" si el checkbox no está marcado
+        if (!showAnuladas) {
+            sql.append("AND hs.estado != ? ");
+            params.add("ANULADA");
         }
 
-        String sql = baseSql + whereClause.toString() +
-                     "GROUP BY hs.id, hs.numero_orden, hs.fecha_orden, c.nombre, hs.estado " +
-                     "ORDER BY hs.id DESC";
+        sql.append(useFullText ? "ORDER BY relevancia DESC, hs.id DESC " : "ORDER BY hs.id DESC ");
+        sql.append("LIMIT ? OFFSET ?");
+        params.add(pageSize);
+        params.add(offset);
+        return querySheets(sql.toString(), params);
+    }
 
+    private List<ServiceSheetSummary> querySheets(String sql, List<Object> params) throws SQLException {
+        List<ServiceSheetSummary> page = new ArrayList<>();
         try (Connection conn = DatabaseManager.getInstance().getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            inFlightQuery.start(pstmt);
+            try {
+                for (int i = 0; i < params.size(); i++) {
+                    pstmt.setObject(i + 1, params.get(i));
+                }
 
-            for (int i = 0; i < params.size(); i++) {
-                pstmt.setString(i + 1, params.get(i));
+                ResultSet rs = pstmt.executeQuery();
+
+                while (rs.next()) {
+                    page.add(new ServiceSheetSummary(
+                            rs.getLong("id"),
+                            rs.getString("numero_orden"),
+                            rs.getDate("fecha_orden").toLocalDate(),
+                            rs.getString("cliente_nombre"),
+                            rs.getString("equipment_summary") != null ? rs.getString("equipment_summary") : "",
+                            rs.getString("estado")
+                    ));
+                }
+            } finally {
+                inFlightQuery.finish(pstmt); // Antes de devolver la conexión al pool
             }
+        }
+        return page;
+    }
 
-            ResultSet rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                serviceSheets.add(new ServiceSheetSummary(
-                        rs.getLong("id"),
-                        rs.getString("numero_orden"),
-                        rs.getDate("fecha_orden").toLocalDate(),
-                        rs.getString("cliente_nombre"),
-                        rs.getString("equipment_summary") != null ? rs.getString("equipment_summary") : "",
-                        rs.getString("estado")
-                ));
-            }
+    private void cancelInFlightQuery() {
+        inFlightQuery.cancel();
+    }
 
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudieron cargar las hojas de servicio.");
-            e.printStackTrace();
+    /**
+     * Tamaño de página configurable con el ajuste "hojas.page.size"; se lee una sola vez por ventana.
+     */
+    private int getPageSize() {
+        if (pageSize <= 0) {
+            int size = DEFAULT_PAGE_SIZE;
+            try {
+                size = Integer.parseInt(DatabaseService.getInstance().getSetting(PAGE_SIZE_SETTING, String.valueOf(DEFAULT_PAGE_SIZE)).trim());
+            } catch (SQLException | NumberFormatException e) {
+                System.err.println("No se pudo leer el tamaño de página, se usa " + DEFAULT_PAGE_SIZE + ": " + e.getMessage());
+            }
+            pageSize = Math.max(10, size);
         }
+        return pageSize;
+    }
+
+    /**
+     * Engancha la barra de desplazamiento vertical de la tabla (existe cuando se crea el skin)
+     * para pedir la siguiente página al acercarse al final.
+     */
+    private void installScrollPaging() {
+        serviceSheetsTable.skinProperty().addListener((obs, oldSkin, newSkin) -> {
+            for (Node node : serviceSheetsTable.lookupAll(".scroll-bar")) {
+                if (node instanceof ScrollBar && ((ScrollBar) node).getOrientation() == Orientation.VERTICAL) {
+                    ScrollBar bar = (ScrollBar) node;
+                    verticalBar = bar;
+                    bar.valueProperty().addListener((o, oldValue, newValue) -> {
+                        if (newValue.doubleValue() >= bar.getMax() * SCROLL_THRESHOLD) {
+                            loadNextPage();
+                        }
+                    });
+                }
+            }
+        });
     }
 
     @FXML
     protected void onSearchAction() {
+        searchPause.stop(); // Enter busca de inmediato
         searchAndLoadServiceSheets(searchField.getText());
     }
 
@@ -185,17 +411,8 @@ public class ManageServiceSheetsController {
             return;
         }
 
-        fetchAndProcessServiceSheet(selected.getId(), (data) -> {
-            try {
-                // Forzar la generación del PDF de recepción
-                data.setEstado("ABIERTA"); 
-                String pdfPath = new PdfGenerator().generatePdf(data);
-                performPrint(pdfPath);
-            } catch (IOException e) {
-                showAlert(Alert.AlertType.ERROR, "Error de PDF", "No se pudo generar el PDF. Error: " + e.getMessage());
-                e.printStackTrace();
-            }
-        });
+        // Forzar la generación del PDF de recepción
+        generateAndPrint(selected.getId(), true);
     }
 
     @FXML
@@ -211,15 +428,30 @@ public class ManageServiceSheetsController {
             return;
         }
 
-        fetchAndProcessServiceSheet(selected.getId(), (data) -> {
-            try {
-                String pdfPath = new PdfGenerator().generatePdf(data);
-                performPrint(pdfPath);
-            } catch (IOException e) {
-                showAlert(Alert.AlertType.ERROR, "Error de PDF", "No se pudo generar el PDF. Error: " + e.getMessage());
-                e.printStackTrace();
-            }
-        });
+        generateAndPrint(selected.getId(), false);
+    }
+
+    /**
+     * Consulta la hoja y genera el PDF en segundo plano (PdfGenerator también lee ajustes de la BD);
+     * solo la apertura del visor vuelve al hilo de JavaFX.
+     */
+    private void generateAndPrint(long hojaId, boolean forceReception) {
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().submit(db -> {
+                    HojaServicioData data = db.getHojaServicioCompleta(hojaId);
+                    if (data == null) {
+                        throw new SQLException("No se pudieron obtener los detalles completos para la hoja de servicio seleccionada.");
+                    }
+                    return new PdfGenerator().generatePdf(data, forceReception);
+                }),
+                this::performPrint,
+                error -> {
+                    if (error instanceof IOException) {
+                        showAlert(Alert.AlertType.ERROR, "Error de PDF", "No se pudo generar el PDF. Error: " + error.getMessage());
+                    } else {
+                        showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "Ocurrió un error al consultar los datos: " + error.getMessage());
+                    }
+                    error.printStackTrace();
+                });
     }
 
     private void performPrint(String pdfPath) {
@@ -316,17 +548,18 @@ public class ManageServiceSheetsController {
     }
 
     private void fetchAndProcessServiceSheet(long hojaId, java.util.function.Consumer<HojaServicioData> dataConsumer) {
-        try {
-            HojaServicioData data = DatabaseService.getInstance().getHojaServicioCompleta(hojaId);
-            if (data != null) {
-                dataConsumer.accept(data);
-            } else {
-                showAlert(Alert.AlertType.ERROR, "Error", "No se pudieron obtener los detalles completos para la hoja de servicio seleccionada.");
-            }
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "Ocurrió un error al consultar los datos: " + e.getMessage());
-            e.printStackTrace();
-        }
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().getHojaServicioCompleta(hojaId),
+                data -> {
+                    if (data != null) {
+                        dataConsumer.accept(data);
+                    } else {
+                        showAlert(Alert.AlertType.ERROR, "Error", "No se pudieron obtener los detalles completos para la hoja de servicio seleccionada.");
+                    }
+                },
+                error -> {
+                    showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "Ocurrió un error al consultar los datos: " + error.getMessage());
+                    error.printStackTrace();
+                });
     }
 
     private void showAlert(Alert.AlertType type, String title, String message) {
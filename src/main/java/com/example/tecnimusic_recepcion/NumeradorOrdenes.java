@@ -0,0 +1,89 @@
+package com.example.tecnimusic_recepcion;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+/**
+ * Asigna los números de orden (TM-año-n) a partir de la secuencia por año de x_secuencias_orden.
+ * Cada estación reserva un bloque de números con una sola sentencia atómica y los va entregando
+ * desde memoria; solo vuelve a la base de datos cuando se le acaba el bloque o cambia el año.
+ * Los números de un bloque que no se usen (por ejemplo, al cerrar la aplicación) se pierden:
+ * la numeración es única pero puede tener huecos.
+ */
+public class NumeradorOrdenes {
+
+    private static final String BLOCK_SIZE_SETTING = "orden.bloque.tamano";
+    private static final int DEFAULT_BLOCK_SIZE = 10;
+
+    private static NumeradorOrdenes instance;
+
+    // Bloque reservado: [siguiente, fin) del año bloqueAnio, en la base de datos reservadoEn
+    private DatabaseManager reservadoEn;
+    private int bloqueAnio;
+    private long siguiente;
+    private long fin;
+
+    private NumeradorOrdenes() {}
+
+    public static synchronized NumeradorOrdenes getInstance() {
+        if (instance == null) instance = new NumeradorOrdenes();
+        return instance;
+    }
+
+    public static String formatear(int anio, long numero) {
+        return "TM-" + anio + "-" + numero;
+    }
+
+    /**
+     * Entrega el siguiente número de orden. Cada número se entrega una sola vez.
+     */
+    public synchronized String siguienteNumero() throws SQLException {
+        int anio = LocalDate.now().getYear();
+        DatabaseManager manager = DatabaseManager.getInstance();
+        if (reservadoEn != manager || bloqueAnio != anio || siguiente >= fin) {
+            reservarBloque(manager, anio);
+        }
+        return formatear(anio, siguiente++);
+    }
+
+    /**
+     * Reserva el siguiente bloque del año. LAST_INSERT_ID(expr) deja el nuevo tope en la sesión,
+     * así el incremento y la lectura no pueden mezclarse con los de otra estación.
+     */
+    private void reservarBloque(DatabaseManager manager, int anio) throws SQLException {
+        int tamano = getBlockSize();
+        String sql = "INSERT INTO x_secuencias_orden (anio, siguiente) VALUES (?, LAST_INSERT_ID(1 + ?)) " +
+                     "ON DUPLICATE KEY UPDATE siguiente = LAST_INSERT_ID(siguiente + ?)";
+        try (Connection conn = manager.getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, anio);
+                pstmt.setInt(2, tamano);
+                pstmt.setInt(3, tamano);
+                pstmt.executeUpdate();
+            }
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT LAST_INSERT_ID()")) {
+                if (!rs.next()) throw new SQLException("No se pudo reservar un bloque de números de orden.");
+                long tope = rs.getLong(1);
+                reservadoEn = manager;
+                bloqueAnio = anio;
+                siguiente = tope - tamano;
+                fin = tope;
+            }
+        }
+    }
+
+    private int getBlockSize() {
+        try {
+            int size = Integer.parseInt(DatabaseService.getInstance().getSetting(BLOCK_SIZE_SETTING, String.valueOf(DEFAULT_BLOCK_SIZE)).trim());
+            return Math.max(1, size);
+        } catch (SQLException | NumberFormatException e) {
+            System.err.println("No se pudo leer el tamaño del bloque de números de orden, se usa " + DEFAULT_BLOCK_SIZE + ": " + e.getMessage());
+            return DEFAULT_BLOCK_SIZE;
+        }
+    }
+}
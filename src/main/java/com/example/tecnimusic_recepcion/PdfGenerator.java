@@ -17,6 +17,7 @@ import com.itextpdf.layout.element.Paragraph;
 import com.itextpdf.layout.element.Table;
 import com.itextpdf.layout.properties.TextAlignment;
 import com.itextpdf.layout.properties.UnitValue;
+import javafx.application.Platform;
 import javafx.scene.control.Alert;
 
 import java.io.File;
@@ -304,6 +305,11 @@ public class PdfGenerator {
     }
 
     private void mostrarAlerta(Alert.AlertType tipo, String titulo, String contenido) {
+        // El PDF puede generarse desde un hilo de AsyncDatabaseService; las alertas solo se crean en el hilo de JavaFX
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(() -> mostrarAlerta(tipo, titulo, contenido));
+            return;
+        }
         Alert alert = new Alert(tipo);
         alert.setTitle(titulo);
         alert.setHeaderText(null);
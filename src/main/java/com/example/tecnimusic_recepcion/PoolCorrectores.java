@@ -0,0 +1,226 @@
+package com.example.tecnimusic_recepcion;
+
+import java.io.IOException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Pool de instancias de corrector (JLanguageTool y el corrector rápido no son seguros entre hilos).
+ * Cada verificación toma una instancia libre, la usa en exclusiva y la devuelve.
+ * La primera instancia se crea y calienta al inicializar; el resto se crea en segundo plano
+ * para no alargar el arranque. Si una de esas instancias no se puede crear, se vuelve a
+ * intentar al pedirla. Lleva métricas de espera y de uso.
+ */
+public class PoolCorrectores {
+
+    /**
+     * Trabajo que se hace con una instancia prestada.
+     */
+    @FunctionalInterface
+    public interface Uso<T> {
+        T aplicar(CorrectorOrtografico.Instancia instancia) throws IOException;
+    }
+
+    // Texto con el que se calienta cada instancia (carga diccionarios y reglas perezosas)
+    private static final String TEXTO_CALENTAMIENTO = "El equipo no enciende y tiene la carcasa rota.";
+    // Espera máxima por una instancia libre antes de dar la verificación por fallida
+    private static final long ESPERA_MAXIMA_SEGUNDOS = 30;
+
+    private final String nombre;
+    private final Supplier<CorrectorOrtografico.Instancia> fabrica;
+    private final int tamano;
+    private final LinkedBlockingDeque<CorrectorOrtografico.Instancia> libres = new LinkedBlockingDeque<>();
+    private final AtomicInteger creadas = new AtomicInteger();
+    // Instancias creadas o en creación; baja cuando una creación falla para que se reintente
+    private final AtomicInteger reservadas = new AtomicInteger();
+    private volatile boolean iniciado = false;
+    private volatile RuntimeException errorInicio;
+
+    // Métricas
+    private final long creadoEnNanos = System.nanoTime();
+    private final AtomicLong prestamos = new AtomicLong();
+    private final AtomicLong prestamosConEspera = new AtomicLong();
+    private final AtomicLong esperaTotalNanos = new AtomicLong();
+    private final AtomicLong esperaMaximaNanos = new AtomicLong();
+    private final AtomicLong ocupadoTotalNanos = new AtomicLong();
+    private final AtomicInteger enUso = new AtomicInteger();
+
+    public PoolCorrectores(String nombre, Supplier<CorrectorOrtografico.Instancia> fabrica, int tamano) {
+        this.nombre = nombre;
+        this.fabrica = fabrica;
+        this.tamano = Math.max(1, tamano);
+    }
+
+    /**
+     * Tamaño por defecto según los núcleos: cada instancia ocupa bastante memoria, así que
+     * se usa la mitad de los núcleos con un máximo de 3. Se puede forzar con
+     * -Dtecnimusic.corrector.instancias=N.
+     */
+    public static int tamanoPorDefecto() {
+        String forzado = System.getProperty("tecnimusic.corrector.instancias");
+        if (forzado != null) {
+            try {
+                return Math.max(1, Integer.parseInt(forzado.trim()));
+            } catch (NumberFormatException e) {
+                System.err.println("Valor inválido para tecnimusic.corrector.instancias: " + forzado);
+            }
+        }
+        int nucleos = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(3, nucleos / 2));
+    }
+
+    /**
+     * Crea y calienta la primera instancia en el hilo actual y lanza la creación del resto en segundo plano.
+     * Si la primera instancia no se puede crear, el error se guarda y se relanza; el pool queda sin
+     * iniciar y una llamada posterior lo vuelve a intentar.
+     */
+    public synchronized void iniciar() {
+        if (iniciado) return;
+        reservadas.incrementAndGet();
+        try {
+            libres.addLast(crearInstancia());
+        } catch (RuntimeException e) {
+            reservadas.decrementAndGet();
+            errorInicio = e;
+            throw e;
+        }
+        errorInicio = null;
+        iniciado = true;
+        for (int i = 1; i < tamano; i++) {
+            reservadas.incrementAndGet();
+            Thread hilo = new Thread(() -> {
+                try {
+                    libres.addLast(crearInstancia());
+                } catch (RuntimeException e) {
+                    reservadas.decrementAndGet();
+                    System.err.println("No se pudo crear una instancia del corrector (" + nombre + "): " + e.getMessage());
+                }
+            }, nombre + "-calentamiento-" + i);
+            hilo.setDaemon(true);
+            hilo.setPriority(Thread.MIN_PRIORITY);
+            hilo.start();
+        }
+    }
+
+    public boolean isIniciado() {
+        return iniciado;
+    }
+
+    private CorrectorOrtografico.Instancia crearInstancia() {
+        CorrectorOrtografico.Instancia instancia = fabrica.get();
+        try {
+            instancia.verificarOracion(TEXTO_CALENTAMIENTO);
+        } catch (IOException e) {
+            System.err.println("No se pudo calentar una instancia del corrector: " + e.getMessage());
+        }
+        creadas.incrementAndGet();
+        return instancia;
+    }
+
+    /**
+     * Si alguna instancia del pool no se pudo crear, la crea ahora en el hilo actual.
+     * Devuelve null si el pool ya está completo (creadas o en creación).
+     */
+    private CorrectorOrtografico.Instancia reponerInstancia() throws IOException {
+        int actuales = reservadas.get();
+        while (actuales < tamano) {
+            if (reservadas.compareAndSet(actuales, actuales + 1)) {
+                try {
+                    return crearInstancia();
+                } catch (RuntimeException e) {
+                    reservadas.decrementAndGet();
+                    throw new IOException("No se pudo crear una instancia del corrector (" + nombre + ").", e);
+                }
+            }
+            actuales = reservadas.get();
+        }
+        return null;
+    }
+
+    /**
+     * Presta una instancia para el trabajo dado, esperando si todas están ocupadas.
+     * Falla de inmediato si el pool no se pudo iniciar, y tras ESPERA_MAXIMA_SEGUNDOS si no se libera ninguna.
+     */
+    public <T> T usar(Uso<T> uso) throws IOException {
+        if (!iniciado) {
+            throw new IOException("El corrector (" + nombre + ") no está disponible.", errorInicio);
+        }
+        CorrectorOrtografico.Instancia instancia = libres.pollFirst();
+        if (instancia == null) {
+            instancia = reponerInstancia();
+        }
+        if (instancia == null) {
+            long inicioEspera = System.nanoTime();
+            try {
+                instancia = libres.pollFirst(ESPERA_MAXIMA_SEGUNDOS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrumpido mientras se esperaba una instancia del corrector.", e);
+            }
+            if (instancia == null) {
+                throw new IOException("No se liberó ninguna instancia del corrector (" + nombre + ") a tiempo.");
+            }
+            long espera = System.nanoTime() - inicioEspera;
+            prestamosConEspera.incrementAndGet();
+            esperaTotalNanos.addAndGet(espera);
+            esperaMaximaNanos.accumulateAndGet(espera, Math::max);
+        }
+        prestamos.incrementAndGet();
+        enUso.incrementAndGet();
+        long inicioUso = System.nanoTime();
+        try {
+            return uso.aplicar(instancia);
+        } finally {
+            ocupadoTotalNanos.addAndGet(System.nanoTime() - inicioUso);
+            enUso.decrementAndGet();
+            libres.addFirst(instancia); // La más usada vuelve primero: sus cachés internas están calientes
+        }
+    }
+
+    public int getTamano() {
+        return tamano;
+    }
+
+    public int getInstanciasCreadas() {
+        return creadas.get();
+    }
+
+    public int getInstanciasEnUso() {
+        return enUso.get();
+    }
+
+    public long getPrestamos() {
+        return prestamos.get();
+    }
+
+    public long getPrestamosConEspera() {
+        return prestamosConEspera.get();
+    }
+
+    public double getEsperaPromedioMs() {
+        long total = prestamos.get();
+        return total == 0 ? 0 : esperaTotalNanos.get() / 1_000_000.0 / total;
+    }
+
+    public double getEsperaMaximaMs() {
+        return esperaMaximaNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Fracción del tiempo (0 a 1) que las instancias del pool han estado ocupadas desde su creación.
+     */
+    public double getUtilizacion() {
+        long transcurrido = System.nanoTime() - creadoEnNanos;
+        return transcurrido <= 0 ? 0 : (double) ocupadoTotalNanos.get() / ((double) transcurrido * tamano);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PoolCorrectores[%s: instancias=%d/%d, en uso=%d, préstamos=%d (con espera=%d), espera promedio=%.2f ms, espera máxima=%.2f ms, utilización=%.1f%%]",
+                nombre, getInstanciasCreadas(), tamano, getInstanciasEnUso(), getPrestamos(), getPrestamosConEspera(),
+                getEsperaPromedioMs(), getEsperaMaximaMs(), getUtilizacion() * 100);
+    }
+}
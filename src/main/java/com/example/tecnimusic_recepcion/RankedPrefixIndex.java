@@ -0,0 +1,170 @@
+package com.example.tecnimusic_recepcion;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Índice de sugerencias ordenado por clave normalizada y clasificado por uso.
+ * El rango de un prefijo se encuentra por búsqueda binaria y, dentro del rango, los K más usados
+ * se sacan con una tabla dispersa de máximos (cada consulta de máximo es O(1)), sin recorrer el rango:
+ * O(log n + k log k) por búsqueda. Pensado para vocabularios chicos que cambian poco (los accesorios):
+ * cada alta o baja reconstruye el índice.
+ */
+public class RankedPrefixIndex {
+
+    private final String[] keys;
+    private final String[] values;
+    private final int[] usage;
+    // sparse[j][i] = posición con más uso en [i, i + 2^j)
+    private final int[][] sparse;
+
+    public RankedPrefixIndex(Map<String, Integer> usageByValue) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(usageByValue.entrySet());
+        entries.sort(Comparator.comparing(entry -> normalize(entry.getKey())));
+        int n = entries.size();
+        keys = new String[n];
+        values = new String[n];
+        usage = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = entries.get(i).getKey();
+            keys[i] = normalize(values[i]);
+            usage[i] = entries.get(i).getValue() == null ? 0 : entries.get(i).getValue();
+        }
+        sparse = buildSparseTable();
+    }
+
+    public static RankedPrefixIndex empty() {
+        return new RankedPrefixIndex(Map.of());
+    }
+
+    static String normalize(String text) {
+        return ClaveBusqueda.plegar(text);
+    }
+
+    private int[][] buildSparseTable() {
+        int n = keys.length;
+        int levels = n <= 1 ? 1 : 32 - Integer.numberOfLeadingZeros(n);
+        int[][] table = new int[levels][];
+        table[0] = new int[n];
+        for (int i = 0; i < n; i++) table[0][i] = i;
+        for (int j = 1; j < levels; j++) {
+            int half = 1 << (j - 1);
+            table[j] = new int[n - (1 << j) + 1];
+            for (int i = 0; i < table[j].length; i++) {
+                table[j][i] = better(table[j - 1][i], table[j - 1][i + half]);
+            }
+        }
+        return table;
+    }
+
+    // A igual uso gana el primero en orden alfabético
+    private int better(int a, int b) {
+        if (usage[a] != usage[b]) return usage[a] > usage[b] ? a : b;
+        return Math.min(a, b);
+    }
+
+    // Posición con más uso en [from, to), con to > from
+    private int maxIn(int from, int to) {
+        int level = 31 - Integer.numberOfLeadingZeros(to - from);
+        return better(sparse[level][from], sparse[level][to - (1 << level)]);
+    }
+
+    /**
+     * Los K valores más usados que empiezan con el prefijo (sin distinguir mayúsculas ni acentos).
+     */
+    public List<String> search(String prefix, int limit) {
+        String key = normalize(prefix);
+        int from = lowerBound(key);
+        int to = upperBound(key, from);
+        List<String> result = new ArrayList<>(Math.min(limit, Math.max(0, to - from)));
+        if (from >= to || limit <= 0) return result;
+
+        // Cada elemento de la cola es un subrango disjunto {posición del máximo, desde, hasta}
+        PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> better(a[0], b[0]) == a[0] ? -1 : 1);
+        ranges.add(new int[]{maxIn(from, to), from, to});
+        while (!ranges.isEmpty() && result.size() < limit) {
+            int[] range = ranges.poll();
+            int best = range[0];
+            result.add(values[best]);
+            if (range[1] < best) ranges.add(new int[]{maxIn(range[1], best), range[1], best});
+            if (best + 1 < range[2]) ranges.add(new int[]{maxIn(best + 1, range[2]), best + 1, range[2]});
+        }
+        return result;
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(key) < 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // Primera posición (desde from) cuya clave ya no empieza con el prefijo
+    private int upperBound(String key, int from) {
+        int low = from;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].startsWith(key)) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Copia con un uso más para el valor (o con el valor nuevo, si no estaba).
+     */
+    public RankedPrefixIndex withUse(String value) {
+        Map<String, Integer> copy = toMap();
+        copy.merge(value, 1, Integer::sum);
+        return new RankedPrefixIndex(copy);
+    }
+
+    /**
+     * Copia con un uso más para el valor ya guardado con la misma clave normalizada ("cable" suma al
+     * "Cable" existente, como hace la base de datos al comparar sin mayúsculas ni acentos).
+     * Si no hay ninguno, agrega el valor como withUse.
+     */
+    public RankedPrefixIndex withUseOfExisting(String value) {
+        String key = normalize(value);
+        String existing = null;
+        for (int i = lowerBound(key); i < keys.length && keys[i].equals(key); i++) {
+            if (existing == null || values[i].equals(value)) existing = values[i];
+        }
+        return withUse(existing != null ? existing : value);
+    }
+
+    public RankedPrefixIndex without(String value) {
+        Map<String, Integer> copy = toMap();
+        copy.remove(value);
+        return new RankedPrefixIndex(copy);
+    }
+
+    public boolean contains(String value) {
+        String key = normalize(value);
+        for (int i = lowerBound(key); i < keys.length && keys[i].equals(key); i++) {
+            if (values[i].equals(value)) return true;
+        }
+        return false;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    private Map<String, Integer> toMap() {
+        Map<String, Integer> map = new LinkedHashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            map.put(values[i], usage[i]);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.tecnimusic_recepcion;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caché nombre -> id de las tablas de referencia de Snipe-IT (manufacturers, categories, companies, models)
+ * que se consultan al registrar cada equipo, y del id del estado "pendiente".
+ * Los ids se guardan sin vencimiento. Las claves van en minúsculas, como compara la collation de MySQL.
+ * Lo que se aprende dentro de una transacción se anota en un Transaction y solo se publica con publish()
+ * después del commit: así nunca se comparten ids de filas que la transacción todavía podría deshacer.
+ * El mismo Transaction guarda las actualizaciones de otras cachés del proceso (sugerencias, índice de
+ * clientes duplicados) que dependen de filas insertadas en la transacción.
+ */
+public class ReferenceCache {
+
+    private static ReferenceCache instance;
+
+    // tabla -> clave -> id
+    private final Map<String, Map<String, Long>> ids = new ConcurrentHashMap<>();
+    private volatile Long pendingStatusId;
+    // Base de datos a la que corresponde lo guardado; si cambia la configuración se descarta todo
+    private volatile DatabaseManager cachedFor;
+
+    private ReferenceCache() {}
+
+    public static synchronized ReferenceCache getInstance() {
+        if (instance == null) instance = new ReferenceCache();
+        return instance;
+    }
+
+    public static String key(String... parts) {
+        StringBuilder key = new StringBuilder();
+        for (String part : parts) {
+            if (key.length() > 0) key.append('\u0000');
+            key.append(part == null ? "" : part.trim().toLowerCase(Locale.ROOT));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Anotaciones de una transacción sobre la caché compartida. Si la transacción se deshace,
+     * basta con no llamar a publish().
+     */
+    public Transaction begin() {
+        checkDatabase();
+        return new Transaction(cachedFor);
+    }
+
+    /**
+     * Id guardado para la clave, o null si no se conoce.
+     */
+    public Long get(String table, String key) {
+        checkDatabase();
+        return ids.getOrDefault(table, Map.of()).get(key);
+    }
+
+    public Long getPendingStatusId() {
+        checkDatabase();
+        return pendingStatusId;
+    }
+
+    /**
+     * Descarta todo lo guardado (por ejemplo, al cambiar de base de datos).
+     */
+    public void invalidate() {
+        ids.clear();
+        pendingStatusId = null;
+    }
+
+    private void checkDatabase() {
+        DatabaseManager manager = DatabaseManager.getInstance();
+        if (cachedFor != manager) {
+            synchronized (this) {
+                if (cachedFor != manager) {
+                    invalidate();
+                    cachedFor = manager;
+                }
+            }
+        }
+    }
+
+    /**
+     * Ids encontrados o insertados en una transacción. Las lecturas ven primero lo anotado y después
+     * la caché compartida; las escrituras quedan aquí hasta publish().
+     */
+    public class Transaction {
+
+        private final DatabaseManager database;
+        private final Map<String, Map<String, Long>> staged = new HashMap<>();
+        private Long stagedPendingStatusId;
+        private final List<Runnable> afterCommit = new ArrayList<>();
+
+        private Transaction(DatabaseManager database) {
+            this.database = database;
+        }
+
+        public Long get(String table, String key) {
+            Long id = staged.getOrDefault(table, Map.of()).get(key);
+            return id != null ? id : ReferenceCache.this.get(table, key);
+        }
+
+        public void put(String table, String key, long id) {
+            staged.computeIfAbsent(table, t -> new HashMap<>()).put(key, id);
+        }
+
+        public Long getPendingStatusId() {
+            return stagedPendingStatusId != null ? stagedPendingStatusId : ReferenceCache.this.getPendingStatusId();
+        }
+
+        public void setPendingStatusId(long id) {
+            stagedPendingStatusId = id;
+        }
+
+        /**
+         * Acción que se ejecuta en publish(), después del commit (por ejemplo, sugerir un valor recién insertado).
+         */
+        public void afterCommit(Runnable action) {
+            afterCommit.add(action);
+        }
+
+        /**
+         * Pasa lo anotado a la caché compartida y ejecuta las acciones pendientes. Llamar solo después de conn.commit().
+         */
+        public void publish() {
+            checkDatabase();
+            if (cachedFor != database) return; // Se cambió de base de datos durante la transacción
+            for (Map.Entry<String, Map<String, Long>> table : staged.entrySet()) {
+                ids.computeIfAbsent(table.getKey(), t -> new ConcurrentHashMap<>()).putAll(table.getValue());
+            }
+            if (stagedPendingStatusId != null) pendingStatusId = stagedPendingStatusId;
+            staged.clear();
+            stagedPendingStatusId = null;
+            for (Runnable action : afterCommit) action.run();
+            afterCommit.clear();
+        }
+    }
+}
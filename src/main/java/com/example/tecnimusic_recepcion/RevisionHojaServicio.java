@@ -0,0 +1,63 @@
+package com.example.tecnimusic_recepcion;
+
+import java.time.LocalDate;
+
+/**
+ * Una hoja dentro de la cadena de revisiones de una orden.
+ * La hoja original tiene revisión 0; cada revisión apunta a la hoja que reemplazó.
+ */
+public class RevisionHojaServicio {
+
+    private final long id;
+    private final long rootHojaId;
+    private final int revisionNumber;
+    private final Long idHojaAnterior;
+    private final String numeroOrden;
+    private final LocalDate fechaOrden;
+    private final String estado;
+    private final String equipmentSummary;
+
+    public RevisionHojaServicio(long id, long rootHojaId, int revisionNumber, Long idHojaAnterior,
+                                String numeroOrden, LocalDate fechaOrden, String estado, String equipmentSummary) {
+        this.id = id;
+        this.rootHojaId = rootHojaId;
+        this.revisionNumber = revisionNumber;
+        this.idHojaAnterior = idHojaAnterior;
+        this.numeroOrden = numeroOrden;
+        this.fechaOrden = fechaOrden;
+        this.estado = estado;
+        this.equipmentSummary = equipmentSummary;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getRootHojaId() {
+        return rootHojaId;
+    }
+
+    public int getRevisionNumber() {
+        return revisionNumber;
+    }
+
+    public Long getIdHojaAnterior() {
+        return idHojaAnterior;
+    }
+
+    public String getNumeroOrden() {
+        return numeroOrden;
+    }
+
+    public LocalDate getFechaOrden() {
+        return fechaOrden;
+    }
+
+    public String getEstado() {
+        return estado;
+    }
+
+    public String getEquipmentSummary() {
+        return equipmentSummary;
+    }
+}
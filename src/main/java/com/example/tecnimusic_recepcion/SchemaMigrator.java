@@ -0,0 +1,601 @@
+package com.example.tecnimusic_recepcion;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Motor de migraciones del esquema propio de la aplicación (tablas x_*).
+ * Cada migración tiene un número de versión, una descripción y una lista ordenada de pasos.
+ * Las versiones aplicadas se registran en x_schema_version junto con un checksum de sus pasos,
+ * de modo que cada migración se ejecuta una sola vez por base de datos.
+ * Dentro de un mismo proceso, la verificación se hace una sola vez por configuración de conexión.
+ */
+public class SchemaMigrator {
+
+    private static final String VERSION_TABLE = "x_schema_version";
+    // Bloqueo con nombre de MySQL para que dos estaciones no migren a la vez
+    private static final String LOCK_NAME = "tecnimusic_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 30;
+
+    private static SchemaMigrator instance;
+
+    private final List<Migration> migrations = new ArrayList<>();
+    // Índices que deben existir; los crean las migraciones (3 y siguientes) y los comprueba checkIndexes()
+    private final List<IndexSpec> expectedIndexes = new ArrayList<>();
+    // Instancia de DatabaseManager contra la que ya se verificó el esquema en este proceso
+    private volatile DatabaseManager verifiedFor;
+
+    private SchemaMigrator() {
+        registerMigrations();
+    }
+
+    public static synchronized SchemaMigrator getInstance() {
+        if (instance == null) instance = new SchemaMigrator();
+        return instance;
+    }
+
+    private void registerMigrations() {
+        // Reproducen los antiguos ensure*Exists de DatabaseService. Son idempotentes para que
+        // las bases de datos que ya tenían las tablas (sin x_schema_version) migren sin errores.
+        migrations.add(new Migration(1, "Tablas base de la aplicación",
+                sql("CREATE TABLE IF NOT EXISTS x_clientes (" +
+                    "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                    "nombre VARCHAR(255), " +
+                    "telefono VARCHAR(255), " +
+                    "direccion TEXT" +
+                    ")"),
+                sql("CREATE TABLE IF NOT EXISTS x_hojas_servicio (" +
+                    "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "numero_orden VARCHAR(255), " +
+                    "cliente_id INT, " +
+                    "fecha_orden DATE, " +
+                    "fecha_entrega DATE, " +
+                    "aclaraciones TEXT, " +
+                    "informe_tecnico TEXT, " +
+                    "total_costos DECIMAL(10, 2), " +
+                    "anticipo DECIMAL(10, 2) DEFAULT 0.00, " +
+                    "estado VARCHAR(50) DEFAULT 'ABIERTA', " +
+                    "firma_aclaracion TEXT, " +
+                    "informe_costos TEXT, " +
+                    "asset_id INT, " +
+                    "equipo_serie VARCHAR(255), " +
+                    "equipo_tipo VARCHAR(255), " +
+                    "equipo_marca VARCHAR(255), " +
+                    "equipo_modelo VARCHAR(255), " +
+                    "falla_reportada TEXT" +
+                    ")"),
+                sql("CREATE TABLE IF NOT EXISTS x_hojas_servicio_equipos (" +
+                    "id BIGINT PRIMARY KEY AUTO_INCREMENT, " +
+                    "hoja_id BIGINT NOT NULL, " +
+                    "asset_id BIGINT, " +
+                    "equipo_serie VARCHAR(255), " +
+                    "equipo_tipo VARCHAR(255), " +
+                    "equipo_marca VARCHAR(255), " +
+                    "equipo_modelo VARCHAR(255), " +
+                    "falla_reportada TEXT, " +
+                    "estado_fisico TEXT, " +
+                    "accesorios TEXT, " +
+                    "informe_tecnico TEXT, " +
+                    "costo DECIMAL(10, 2), " +
+                    "created_at DATETIME DEFAULT NOW(), " +
+                    "updated_at DATETIME DEFAULT NOW()" +
+                    ")"),
+                sql("CREATE TABLE IF NOT EXISTS x_accesorios_sugerencias (" +
+                    "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                    "nombre VARCHAR(255) NOT NULL UNIQUE" +
+                    ")"),
+                sql("CREATE TABLE IF NOT EXISTS x_tecnimusic_settings (" +
+                    "setting_key VARCHAR(255) PRIMARY KEY, " +
+                    "setting_value TEXT" +
+                    ")")));
+
+        // Columnas que se fueron agregando en versiones anteriores de la aplicación.
+        migrations.add(new Migration(2, "Columnas agregadas en versiones anteriores",
+                addColumn("x_hojas_servicio", "anticipo", "DECIMAL(10, 2) DEFAULT 0.00"),
+                addColumn("x_hojas_servicio_equipos", "costo", "DECIMAL(10, 2)"),
+                addColumn("x_hojas_servicio_equipos", "estado_fisico", "TEXT"),
+                addColumn("x_hojas_servicio_equipos", "accesorios", "TEXT"),
+                addColumn("x_hojas_servicio", "estado", "VARCHAR(50) DEFAULT 'ABIERTA'"),
+                addColumn("x_hojas_servicio", "informe_tecnico", "TEXT"),
+                addColumn("x_hojas_servicio_equipos", "informe_tecnico", "TEXT"),
+                addColumn("x_hojas_servicio", "id_hoja_anterior", "BIGINT NULL DEFAULT NULL AFTER id")));
+
+        // Índices secundarios para las búsquedas y filtros de las pantallas de consulta.
+        // Los VARCHAR(255) se indexan con prefijo para no superar el límite de 767 bytes de InnoDB antiguo.
+        expectedIndexes.add(new IndexSpec("x_hojas_servicio_equipos", "idx_hse_hoja", "hoja_id"));
+        expectedIndexes.add(new IndexSpec("x_hojas_servicio_equipos", "idx_hse_serie", "equipo_serie(191)"));
+        expectedIndexes.add(new IndexSpec("x_hojas_servicio", "idx_hs_cliente_estado", "cliente_id", "estado"));
+        expectedIndexes.add(new IndexSpec("x_hojas_servicio", "idx_hs_estado", "estado"));
+        expectedIndexes.add(new IndexSpec("x_hojas_servicio", "idx_hs_numero_orden", "numero_orden(191)"));
+        expectedIndexes.add(new IndexSpec("x_hojas_servicio", "idx_hs_hoja_anterior", "id_hoja_anterior"));
+        expectedIndexes.add(new IndexSpec("x_clientes", "idx_clientes_nombre_telefono", "nombre(191)", "telefono(64)"));
+        expectedIndexes.add(new IndexSpec("assets", "idx_assets_serial", "serial"));
+
+        List<SchemaStep> indexSteps = new ArrayList<>();
+        for (IndexSpec spec : expectedIndexes) {
+            indexSteps.add(addIndex(spec));
+        }
+        migrations.add(new Migration(3, "Índices secundarios de tablas x_ y búsqueda de assets por serie",
+                indexSteps.toArray(new SchemaStep[0])));
+
+        // Contador de uso de las sugerencias de accesorios (para mostrar primero las más comunes).
+        // Se inicializa con las veces que cada accesorio aparece en los equipos ya registrados.
+        migrations.add(new Migration(4, "Contador de uso en x_accesorios_sugerencias",
+                addColumn("x_accesorios_sugerencias", "uso", "INT NOT NULL DEFAULT 0"),
+                sql("UPDATE x_accesorios_sugerencias s SET uso = (" +
+                    "SELECT COUNT(*) FROM x_hojas_servicio_equipos e " +
+                    "WHERE FIND_IN_SET(s.nombre, REPLACE(e.accesorios, ', ', ',')) > 0)")));
+
+        // Resumen de equipos y texto de búsqueda guardados en la hoja: las listas leen una sola tabla
+        // en lugar de agrupar los equipos en cada consulta. Se mantienen al escribir (DatabaseService).
+        migrations.add(new Migration(5, "Resumen de equipos y texto de búsqueda en x_hojas_servicio",
+                addColumn("x_hojas_servicio", "equipment_summary", "TEXT NULL"),
+                addColumn("x_hojas_servicio", "search_text", "TEXT NULL"),
+                sql("UPDATE x_hojas_servicio hs SET " +
+                    "equipment_summary = (SELECT GROUP_CONCAT(TRIM(CONCAT_WS(' ', e.equipo_tipo, e.equipo_marca, e.equipo_modelo, " +
+                    "CASE WHEN e.equipo_serie IS NOT NULL AND e.equipo_serie != '' THEN CONCAT('(Serie: ', e.equipo_serie, ')') ELSE NULL END)) " +
+                    "ORDER BY e.id SEPARATOR '; ') FROM x_hojas_servicio_equipos e WHERE e.hoja_id = hs.id), " +
+                    "search_text = (SELECT LOWER(GROUP_CONCAT(CONCAT_WS(' ', e.equipo_serie, e.equipo_tipo, e.equipo_marca, e.equipo_modelo) " +
+                    "ORDER BY e.id SEPARATOR ' ')) FROM x_hojas_servicio_equipos e WHERE e.hoja_id = hs.id)")));
+
+        // Linaje de revisiones: cada hoja guarda la raíz de su cadena y su número de revisión, así el
+        // siguiente número sale de un MAX indexado en lugar de recorrer id_hoja_anterior salto a salto.
+        // El relleno baja un nivel de la cadena por pasada; después se respeta el sufijo -REVn ya emitido.
+        IndexSpec revisionIndex = new IndexSpec("x_hojas_servicio", "idx_hs_root_revision", "root_hoja_id", "revision_number");
+        expectedIndexes.add(revisionIndex);
+        migrations.add(new Migration(6, "Raíz y número de revisión en x_hojas_servicio",
+                addColumn("x_hojas_servicio", "root_hoja_id", "BIGINT NULL DEFAULT NULL"),
+                addColumn("x_hojas_servicio", "revision_number", "INT NOT NULL DEFAULT 0"),
+                sql("UPDATE x_hojas_servicio SET root_hoja_id = id, revision_number = 0 " +
+                    "WHERE root_hoja_id IS NULL AND (id_hoja_anterior IS NULL OR id_hoja_anterior = 0)"),
+                repeatUntilNoRows("UPDATE x_hojas_servicio h JOIN x_hojas_servicio p ON h.id_hoja_anterior = p.id " +
+                                  "SET h.root_hoja_id = p.root_hoja_id, h.revision_number = p.revision_number + 1 " +
+                                  "WHERE h.root_hoja_id IS NULL AND p.root_hoja_id IS NOT NULL"),
+                // Hojas cuya anterior ya no existe: se toman como raíz de su propia cadena
+                sql("UPDATE x_hojas_servicio SET root_hoja_id = id, revision_number = 0 WHERE root_hoja_id IS NULL"),
+                sql("UPDATE x_hojas_servicio SET revision_number = CAST(SUBSTRING_INDEX(numero_orden, '-REV', -1) AS UNSIGNED) " +
+                    "WHERE numero_orden LIKE '%-REV%'"),
+                addIndex(revisionIndex)));
+
+        // Secuencia de números de orden por año: las estaciones reservan bloques con LAST_INSERT_ID
+        // (NumeradorOrdenes). Se inicializa después del número más alto ya emitido en cada año.
+        migrations.add(new Migration(7, "Secuencia de números de orden por año",
+                sql("CREATE TABLE IF NOT EXISTS x_secuencias_orden (" +
+                    "anio INT PRIMARY KEY, " +
+                    "siguiente BIGINT NOT NULL" +
+                    ")"),
+                sql("INSERT IGNORE INTO x_secuencias_orden (anio, siguiente) " +
+                    "SELECT CAST(SUBSTRING_INDEX(SUBSTRING_INDEX(numero_orden, '-', 2), '-', -1) AS UNSIGNED) AS anio, " +
+                    "MAX(CAST(SUBSTRING_INDEX(SUBSTRING_INDEX(numero_orden, '-', 3), '-', -1) AS UNSIGNED)) + 1 " +
+                    "FROM x_hojas_servicio WHERE numero_orden LIKE 'TM-%-%' GROUP BY anio")));
+
+        // Búsqueda por texto completo: search_text pasa a incluir número de orden, cliente y falla,
+        // y se indexa con FULLTEXT para buscar por palabras ordenando por relevancia.
+        IndexSpec searchIndex = IndexSpec.fullText("x_hojas_servicio", "ft_hs_search_text", "search_text");
+        expectedIndexes.add(searchIndex);
+        migrations.add(new Migration(8, "Índice FULLTEXT de búsqueda de hojas de servicio",
+                sql("UPDATE x_hojas_servicio hs SET " +
+                    "search_text = LOWER(CONCAT_WS(' ', hs.numero_orden, " +
+                    "(SELECT c.nombre FROM x_clientes c WHERE c.id = hs.cliente_id), " +
+                    "(SELECT GROUP_CONCAT(CONCAT_WS(' ', e.equipo_serie, e.equipo_tipo, e.equipo_marca, e.equipo_modelo, e.falla_reportada) " +
+                    "ORDER BY e.id SEPARATOR ' ') FROM x_hojas_servicio_equipos e WHERE e.hoja_id = hs.id)))"),
+                addIndex(searchIndex)));
+
+        // Directorio de clientes paginado en el servidor: la búsqueda por prefijo de teléfono
+        // necesita su propio índice (el compuesto solo sirve para el nombre).
+        IndexSpec phoneIndex = new IndexSpec("x_clientes", "idx_clientes_telefono", "telefono(64)");
+        expectedIndexes.add(phoneIndex);
+        migrations.add(new Migration(9, "Índice por teléfono en x_clientes",
+                addIndex(phoneIndex)));
+
+        // Claves de búsqueda normalizadas (sin acentos, minúsculas; solo dígitos en el teléfono), calculadas
+        // al escribir con ClaveBusqueda. El relleno se hace en Java porque MySQL no tiene cómo quitar acentos.
+        IndexSpec nombreClaveIndex = new IndexSpec("x_clientes", "idx_clientes_nombre_clave", "nombre_clave");
+        IndexSpec telefonoDigitosIndex = new IndexSpec("x_clientes", "idx_clientes_telefono_digitos", "telefono_digitos");
+        IndexSpec serieClaveIndex = new IndexSpec("x_hojas_servicio_equipos", "idx_hse_serie_clave", "serie_clave");
+        IndexSpec marcaModeloClaveIndex = new IndexSpec("x_hojas_servicio_equipos", "idx_hse_marca_modelo_clave", "marca_clave", "modelo_clave");
+        expectedIndexes.add(nombreClaveIndex);
+        expectedIndexes.add(telefonoDigitosIndex);
+        expectedIndexes.add(serieClaveIndex);
+        expectedIndexes.add(marcaModeloClaveIndex);
+        migrations.add(new Migration(10, "Claves de búsqueda normalizadas de clientes y equipos",
+                addColumn("x_clientes", "nombre_clave", "VARCHAR(191) NULL"),
+                addColumn("x_clientes", "telefono_digitos", "VARCHAR(64) NULL"),
+                addColumn("x_hojas_servicio_equipos", "serie_clave", "VARCHAR(191) NULL"),
+                addColumn("x_hojas_servicio_equipos", "marca_clave", "VARCHAR(191) NULL"),
+                addColumn("x_hojas_servicio_equipos", "modelo_clave", "VARCHAR(191) NULL"),
+                fillColumns("x_clientes",
+                        computed("nombre_clave", "nombre", "texto", ClaveBusqueda::texto),
+                        computed("telefono_digitos", "telefono", "digitos", ClaveBusqueda::digitos)),
+                fillColumns("x_hojas_servicio_equipos",
+                        computed("serie_clave", "equipo_serie", "texto", ClaveBusqueda::texto),
+                        computed("marca_clave", "equipo_marca", "texto", ClaveBusqueda::texto),
+                        computed("modelo_clave", "equipo_modelo", "texto", ClaveBusqueda::texto)),
+                addIndex(nombreClaveIndex),
+                addIndex(telefonoDigitosIndex),
+                addIndex(serieClaveIndex),
+                addIndex(marcaModeloClaveIndex)));
+
+        // Una sola representación de las raíces de revisión: root_hoja_id NULL (como las guarda
+        // DatabaseService al insertar). Así cada cadena se lee como "id = raíz" más "root_hoja_id = raíz",
+        // las dos por índice, sin OR ni COALESCE en la condición de unión.
+        migrations.add(new Migration(11, "Raíces de revisión con root_hoja_id NULL",
+                sql("UPDATE x_hojas_servicio SET root_hoja_id = NULL WHERE root_hoja_id = id")));
+    }
+
+    /**
+     * Aplica las migraciones pendientes. Tras la primera verificación exitosa no vuelve a
+     * consultar la base de datos mientras no cambie la configuración de conexión.
+     */
+    public void migrate() throws SQLException {
+        DatabaseManager manager = DatabaseManager.getInstance();
+        if (verifiedFor == manager) return;
+
+        synchronized (this) {
+            if (verifiedFor == manager) return;
+            try (Connection conn = manager.getConnection()) {
+                acquireLock(conn);
+                try {
+                    applyPending(conn);
+                } finally {
+                    releaseLock(conn);
+                }
+            }
+            verifiedFor = manager;
+        }
+    }
+
+    /**
+     * Última versión de esquema que conoce esta versión de la aplicación.
+     */
+    public int getLatestVersion() {
+        return migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).version;
+    }
+
+    /**
+     * Autocomprobación de arranque: devuelve los índices esperados que no existen en la base de datos
+     * (por ejemplo, si alguien los borró a mano o si la tabla de Snipe-IT no existía al migrar).
+     */
+    public List<String> checkIndexes() throws SQLException {
+        List<String> missing = new ArrayList<>();
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
+            for (IndexSpec spec : expectedIndexes) {
+                if (!indexExists(conn, spec)) {
+                    missing.add(spec.table + "." + spec.name + " (" + String.join(", ", spec.columns) + ")");
+                }
+            }
+        }
+        return missing;
+    }
+
+    private void applyPending(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + VERSION_TABLE + " (" +
+                         "version INT PRIMARY KEY, " +
+                         "description VARCHAR(255), " +
+                         "checksum VARCHAR(16), " +
+                         "applied_at DATETIME DEFAULT NOW()" +
+                         ")");
+        }
+
+        Map<Integer, String> applied = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM " + VERSION_TABLE)) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getString("checksum"));
+            }
+        }
+
+        for (Migration migration : migrations) {
+            String checksum = migration.checksum();
+            if (applied.containsKey(migration.version)) {
+                if (!checksum.equals(applied.get(migration.version))) {
+                    System.err.println("Advertencia: la migración de esquema " + migration.version + " (" + migration.description +
+                                       ") ya aplicada tiene un checksum distinto (" + applied.get(migration.version) + " != " + checksum + ").");
+                }
+                continue;
+            }
+
+            System.out.println("Aplicando migración de esquema " + migration.version + ": " + migration.description);
+            for (SchemaStep step : migration.steps) {
+                step.apply(conn);
+            }
+
+            String sqlInsert = "INSERT INTO " + VERSION_TABLE + " (version, description, checksum) VALUES (?, ?, ?)";
+            try (PreparedStatement pstmt = conn.prepareStatement(sqlInsert)) {
+                pstmt.setInt(1, migration.version);
+                pstmt.setString(2, migration.description);
+                pstmt.setString(3, checksum);
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    private void acquireLock(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            pstmt.setString(1, LOCK_NAME);
+            pstmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("No se pudo obtener el bloqueo para migrar el esquema. Otra estación podría estar actualizando la base de datos.");
+                }
+            }
+        }
+    }
+
+    private void releaseLock(Connection conn) {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            pstmt.setString(1, LOCK_NAME);
+            pstmt.executeQuery().close();
+        } catch (SQLException e) {
+            System.err.println("No se pudo liberar el bloqueo de migración: " + e.getMessage());
+        }
+    }
+
+    // --- Pasos de migración ---
+
+    /**
+     * Un paso de una migración. La definición es un texto estable que describe lo que hace
+     * el paso y es lo que se usa para calcular el checksum de la migración.
+     */
+    interface SchemaStep {
+        String definition();
+
+        void apply(Connection conn) throws SQLException;
+    }
+
+    static SchemaStep sql(String sql) {
+        return new SchemaStep() {
+            @Override
+            public String definition() {
+                return sql;
+            }
+
+            @Override
+            public void apply(Connection conn) throws SQLException {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute(sql);
+                }
+            }
+        };
+    }
+
+    /**
+     * Repite una sentencia de actualización hasta que ya no modifique filas (rellenos por niveles).
+     */
+    static SchemaStep repeatUntilNoRows(String sql) {
+        return new SchemaStep() {
+            @Override
+            public String definition() {
+                return "REPEAT " + sql;
+            }
+
+            @Override
+            public void apply(Connection conn) throws SQLException {
+                try (Statement stmt = conn.createStatement()) {
+                    while (stmt.executeUpdate(sql) > 0) {
+                        // Cada pasada avanza un nivel
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Columna calculada en Java a partir de otra de la misma fila. El nombre de la función forma parte
+     * de la definición del paso (y del checksum); si la función cambia de comportamiento, cambiar el nombre.
+     */
+    static final class ComputedColumn {
+        final String target;
+        final String source;
+        final String functionName;
+        final Function<String, String> function;
+
+        ComputedColumn(String target, String source, String functionName, Function<String, String> function) {
+            this.target = target;
+            this.source = source;
+            this.functionName = functionName;
+            this.function = function;
+        }
+    }
+
+    static ComputedColumn computed(String target, String source, String functionName, Function<String, String> function) {
+        return new ComputedColumn(target, source, functionName, function);
+    }
+
+    /**
+     * Rellena columnas calculadas en Java recorriendo la tabla por id en bloques; cada bloque se escribe con un lote.
+     */
+    static SchemaStep fillColumns(String table, ComputedColumn... columns) {
+        return new SchemaStep() {
+            private static final int BLOCK_SIZE = 1000;
+
+            @Override
+            public String definition() {
+                StringBuilder definition = new StringBuilder("FILL " + table);
+                for (ComputedColumn column : columns) {
+                    definition.append(' ').append(column.target).append(" = ").append(column.functionName).append('(').append(column.source).append(')');
+                }
+                return definition.toString();
+            }
+
+            @Override
+            public void apply(Connection conn) throws SQLException {
+                StringBuilder select = new StringBuilder("SELECT id");
+                StringBuilder update = new StringBuilder("UPDATE " + table + " SET ");
+                for (int i = 0; i < columns.length; i++) {
+                    select.append(", ").append(columns[i].source);
+                    update.append(i > 0 ? ", " : "").append(columns[i].target).append(" = ?");
+                }
+                select.append(" FROM ").append(table).append(" WHERE id > ? ORDER BY id LIMIT ").append(BLOCK_SIZE);
+                update.append(" WHERE id = ?");
+
+                long lastId = 0;
+                try (PreparedStatement pstmtSelect = conn.prepareStatement(select.toString());
+                     PreparedStatement pstmtUpdate = conn.prepareStatement(update.toString())) {
+                    while (true) {
+                        int rows = 0;
+                        pstmtSelect.setLong(1, lastId);
+                        try (ResultSet rs = pstmtSelect.executeQuery()) {
+                            while (rs.next()) {
+                                lastId = rs.getLong("id");
+                                for (int i = 0; i < columns.length; i++) {
+                                    pstmtUpdate.setString(i + 1, columns[i].function.apply(rs.getString(columns[i].source)));
+                                }
+                                pstmtUpdate.setLong(columns.length + 1, lastId);
+                                pstmtUpdate.addBatch();
+                                rows++;
+                            }
+                        }
+                        if (rows == 0) break;
+                        pstmtUpdate.executeBatch();
+                    }
+                }
+            }
+        };
+    }
+
+    static SchemaStep addColumn(String table, String column, String columnDefinition) {
+        return new SchemaStep() {
+            @Override
+            public String definition() {
+                return "ADD COLUMN " + table + "." + column + " " + columnDefinition;
+            }
+
+            @Override
+            public void apply(Connection conn) throws SQLException {
+                String checkColumnSql = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?";
+                try (PreparedStatement pstmt = conn.prepareStatement(checkColumnSql)) {
+                    pstmt.setString(1, table);
+                    pstmt.setString(2, column);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (rs.next() && rs.getInt(1) > 0) return;
+                    }
+                }
+                try (Statement alterStmt = conn.createStatement()) {
+                    alterStmt.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + columnDefinition);
+                }
+            }
+        };
+    }
+
+    static SchemaStep addIndex(IndexSpec spec) {
+        return new SchemaStep() {
+            @Override
+            public String definition() {
+                return "CREATE " + (spec.fullText ? "FULLTEXT " : "") + "INDEX " + spec.name + " ON " + spec.table + " (" + String.join(", ", spec.columns) + ")";
+            }
+
+            @Override
+            public void apply(Connection conn) throws SQLException {
+                if (!tableExists(conn, spec.table)) {
+                    System.err.println("Advertencia: no existe la tabla '" + spec.table + "'; no se creó el índice " + spec.name + ".");
+                    return;
+                }
+                if (indexExists(conn, spec)) return;
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute(definition());
+                }
+            }
+        };
+    }
+
+    private static boolean tableExists(Connection conn, String table) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, table);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        }
+    }
+
+    /**
+     * Un índice se considera presente si existe alguno (con cualquier nombre) cuyas primeras
+     * columnas coinciden con las del índice esperado; así no se duplican los que ya trae Snipe-IT.
+     */
+    private static boolean indexExists(Connection conn, IndexSpec spec) throws SQLException {
+        String sql = "SELECT INDEX_NAME, SEQ_IN_INDEX, COLUMN_NAME FROM INFORMATION_SCHEMA.STATISTICS " +
+                     "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? ORDER BY INDEX_NAME, SEQ_IN_INDEX";
+        Map<String, List<String>> indexes = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, spec.table);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    indexes.computeIfAbsent(rs.getString("INDEX_NAME"), k -> new ArrayList<>())
+                           .add(rs.getString("COLUMN_NAME").toLowerCase());
+                }
+            }
+        }
+        List<String> wanted = spec.columnNames();
+        for (List<String> columns : indexes.values()) {
+            if (columns.size() >= wanted.size() && columns.subList(0, wanted.size()).equals(wanted)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static final class IndexSpec {
+        final String table;
+        final String name;
+        final List<String> columns; // Pueden llevar longitud de prefijo, p. ej. "nombre(191)"
+        final boolean fullText;
+
+        IndexSpec(String table, String name, String... columns) {
+            this(table, name, false, columns);
+        }
+
+        private IndexSpec(String table, String name, boolean fullText, String... columns) {
+            this.table = table;
+            this.name = name;
+            this.fullText = fullText;
+            this.columns = Arrays.asList(columns);
+        }
+
+        static IndexSpec fullText(String table, String name, String... columns) {
+            return new IndexSpec(table, name, true, columns);
+        }
+
+        List<String> columnNames() {
+            List<String> names = new ArrayList<>();
+            for (String column : columns) {
+                int paren = column.indexOf('(');
+                names.add((paren >= 0 ? column.substring(0, paren) : column).trim().toLowerCase());
+            }
+            return names;
+        }
+    }
+
+    static final class Migration {
+        final int version;
+        final String description;
+        final List<SchemaStep> steps;
+
+        Migration(int version, String description, SchemaStep... steps) {
+            this.version = version;
+            this.description = description;
+            this.steps = Arrays.asList(steps);
+        }
+
+        String checksum() {
+            CRC32 crc = new CRC32();
+            for (SchemaStep step : steps) {
+                crc.update(step.definition().getBytes(StandardCharsets.UTF_8));
+                crc.update('\n');
+            }
+            return Long.toHexString(crc.getValue());
+        }
+    }
+}
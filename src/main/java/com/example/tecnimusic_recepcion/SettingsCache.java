@@ -0,0 +1,124 @@
+package com.example.tecnimusic_recepcion;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Caché en memoria de x_tecnimusic_settings para todo el proceso.
+ * La tabla completa se carga con una sola consulta (en el arranque o en la primera lectura)
+ * y las lecturas se sirven desde memoria. Las escrituras se hacen en una transacción con un
+ * lote de sentencias e invalidan la caché, que se recarga entera en la siguiente lectura.
+ */
+public class SettingsCache {
+
+    private static SettingsCache instance;
+
+    // Se reemplaza entera en cada carga; null significa que hay que recargar
+    private volatile Map<String, String> settings = null;
+    // Sube con cada invalidación; una carga que empezó antes no publica su resultado (ya está desfasado)
+    private long version = 0;
+    private final Object publicacion = new Object();
+
+    private SettingsCache() {}
+
+    public static synchronized SettingsCache getInstance() {
+        if (instance == null) instance = new SettingsCache();
+        return instance;
+    }
+
+    /**
+     * Carga todas las configuraciones con una sola consulta.
+     */
+    public synchronized void load() throws SQLException {
+        cargar();
+    }
+
+    /**
+     * Consulta la tabla y publica el resultado, salvo que se haya invalidado la caché mientras tanto.
+     * Devuelve lo leído en cualquier caso.
+     */
+    private Map<String, String> cargar() throws SQLException {
+        long versionInicial;
+        synchronized (publicacion) {
+            versionInicial = version;
+        }
+        Map<String, String> loaded = new HashMap<>();
+        String sql = "SELECT setting_key, setting_value FROM x_tecnimusic_settings";
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                loaded.put(rs.getString("setting_key"), rs.getString("setting_value"));
+            }
+        }
+        Map<String, String> result = Collections.unmodifiableMap(loaded);
+        synchronized (publicacion) {
+            if (version == versionInicial) settings = result;
+        }
+        return result;
+    }
+
+    public String get(String key, String defaultValue) throws SQLException {
+        String value = getAll().get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Todas las configuraciones. Solo consulta la base de datos si la caché no está cargada.
+     */
+    public Map<String, String> getAll() throws SQLException {
+        Map<String, String> current = settings;
+        if (current == null) {
+            synchronized (this) {
+                current = settings;
+                if (current == null) current = cargar();
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Guarda varias configuraciones en una sola transacción (todas o ninguna) e invalida la caché.
+     */
+    public void saveAll(Map<String, String> values) throws SQLException {
+        if (values.isEmpty()) return;
+        String sql = "INSERT INTO x_tecnimusic_settings (setting_key, setting_value) VALUES (?, ?) " +
+                     "ON DUPLICATE KEY UPDATE setting_value = VALUES(setting_value)";
+        Connection conn = null;
+        try {
+            conn = DatabaseManager.getInstance().getConnection();
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (Map.Entry<String, String> entry : values.entrySet()) {
+                    pstmt.setString(1, entry.getKey());
+                    pstmt.setString(2, entry.getValue());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            if (conn != null) try { conn.rollback(); } catch (SQLException ex) { System.err.println("Error during rollback: " + ex.getMessage()); }
+            throw e;
+        } finally {
+            invalidate();
+            if (conn != null) try { conn.close(); } catch (SQLException e) { System.err.println("Error al cerrar la conexión: " + e.getMessage()); }
+        }
+    }
+
+    /**
+     * Descarta lo cargado (por ejemplo al cambiar de base de datos); la siguiente lectura recarga la tabla.
+     */
+    public void invalidate() {
+        synchronized (publicacion) {
+            version++;
+            settings = null;
+        }
+    }
+}
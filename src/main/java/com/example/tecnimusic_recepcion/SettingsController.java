@@ -1,22 +1,21 @@
 package com.example.tecnimusic_recepcion;
 
-import javafx.animation.PauseTransition;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.geometry.Point2D;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.stage.Stage;
-import javafx.util.Duration;
 import org.fxmisc.richtext.StyleClassedTextArea;
 import org.languagetool.rules.RuleMatch;
 
-import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public class SettingsController {
@@ -42,12 +41,15 @@ public class SettingsController {
     @FXML
     private TextField localTelefonoField;
 
+    private final AsyncDatabaseService.Scope dbScope = new AsyncDatabaseService.Scope();
+
     @FXML
     public void initialize() {
         // Configurar el Spinner
         SpinnerValueFactory<Integer> valueFactory = new SpinnerValueFactory.IntegerSpinnerValueFactory(4, 12, 6);
         pdfFooterSizeSpinner.setValueFactory(valueFactory);
 
+        dbScope.bindTo(hostField);
         loadSettings();
 
         Platform.runLater(() -> {
@@ -72,26 +74,33 @@ public class SettingsController {
         userField.setText(dbConfig.getUser());
         passwordField.setText(dbConfig.getPassword());
 
-        // Intentar cargar configuración de PDF y Local (de la base de datos)
-        try {
-            DatabaseService dbService = DatabaseService.getInstance();
-            pdfFooterField.replaceText(dbService.getSetting("pdf.footer", ""));
-            int footerSize = Integer.parseInt(dbService.getSetting("pdf.footer.fontsize", "6"));
-            pdfFooterSizeSpinner.getValueFactory().setValue(footerSize);
-            
-            localNombreField.setText(dbService.getSetting("local.nombre", "TecniMusic"));
-            localDireccionField.setText(dbService.getSetting("local.direccion", "Dirección no configurada"));
-            localTelefonoField.setText(dbService.getSetting("local.telefono", "Teléfono no configurado"));
-            // Habilitar campos si la carga fue exitosa
-            setLocalPdfFieldsDisabled(false);
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.WARNING, "Sin Conexión", "No se pudo conectar a la base de datos para cargar la configuración del local y PDF. Estos campos están deshabilitados.");
-            // Deshabilitar campos si la carga falló
-            setLocalPdfFieldsDisabled(true);
-        } catch (NumberFormatException e) {
-            showAlert(Alert.AlertType.WARNING, "Configuración Corrupta", "El tamaño de la fuente del pie de página no es un número válido. Se usará el valor por defecto.");
-            pdfFooterSizeSpinner.getValueFactory().setValue(6);
-        }
+        // Intentar cargar configuración de PDF y Local (de la base de datos) sin bloquear la ventana
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().submit(db -> new String[]{
+                        db.getSetting("pdf.footer", ""),
+                        db.getSetting("pdf.footer.fontsize", "6"),
+                        db.getSetting("local.nombre", "TecniMusic"),
+                        db.getSetting("local.direccion", "Dirección no configurada"),
+                        db.getSetting("local.telefono", "Teléfono no configurado")
+                }),
+                valores -> {
+                    pdfFooterField.replaceText(valores[0]);
+                    localNombreField.setText(valores[2]);
+                    localDireccionField.setText(valores[3]);
+                    localTelefonoField.setText(valores[4]);
+                    // Habilitar campos si la carga fue exitosa
+                    setLocalPdfFieldsDisabled(false);
+                    try {
+                        pdfFooterSizeSpinner.getValueFactory().setValue(Integer.parseInt(valores[1]));
+                    } catch (NumberFormatException e) {
+                        showAlert(Alert.AlertType.WARNING, "Configuración Corrupta", "El tamaño de la fuente del pie de página no es un número válido. Se usará el valor por defecto.");
+                        pdfFooterSizeSpinner.getValueFactory().setValue(6);
+                    }
+                },
+                error -> {
+                    showAlert(Alert.AlertType.WARNING, "Sin Conexión", "No se pudo conectar a la base de datos para cargar la configuración del local y PDF. Estos campos están deshabilitados.");
+                    // Deshabilitar campos si la carga falló
+                    setLocalPdfFieldsDisabled(true);
+                });
     }
 
     @FXML
@@ -107,36 +116,54 @@ public class SettingsController {
 
         boolean wereFieldsDisabled = localNombreField.isDisabled();
 
-        // 2. Resetear y probar la nueva conexión
-        DatabaseManager.resetInstance();
-        try (Connection testConnection = DatabaseManager.getInstance().getConnection()) {
-            // Si la conexión es exitosa
-            if (wereFieldsDisabled) {
-                // Los campos estaban deshabilitados, lo que significa que acabamos de arreglar la conexión.
-                // Recargamos los datos desde la DB en lugar de guardar los campos vacíos.
-                loadSettings(); // Esto recargará y habilitará los campos.
-                showAlert(Alert.AlertType.INFORMATION, "Conexión Exitosa", "Se ha conectado a la base de datos. La configuración del local y PDF ha sido cargada. Verifique los datos y guarde de nuevo si es necesario.");
-            } else {
-                // La conexión ya era buena, así que procedemos a guardar los cambios.
-                DatabaseService dbService = DatabaseService.getInstance();
-                dbService.saveSetting("pdf.footer", pdfFooterField.getText());
-                dbService.saveSetting("pdf.footer.fontsize", pdfFooterSizeSpinner.getValue().toString());
-                dbService.saveSetting("local.nombre", localNombreField.getText());
-                dbService.saveSetting("local.direccion", localDireccionField.getText());
-                dbService.saveSetting("local.telefono", localTelefonoField.getText());
-
-                showAlert(Alert.AlertType.INFORMATION, "Configuración Guardada", "Toda la configuración se ha guardado correctamente.");
-                closeWindow();
-            }
-
-        } catch (SQLException e) {
-            // Si la conexión falla con los nuevos datos
-            showAlert(Alert.AlertType.ERROR, "Error de Conexión", "No se pudo conectar a la base de datos con la nueva configuración. \n\nLos datos de conexión se guardaron, pero la configuración del local y PDF no pudo ser actualizada. Por favor, revise los datos de conexión.");
-            setLocalPdfFieldsDisabled(true); // Mantener los campos deshabilitados
-        } catch (Exception e) {
-            showAlert(Alert.AlertType.ERROR, "Error Inesperado", "Ocurrió un error al guardar la configuración: " + e.getMessage());
-            e.printStackTrace();
-        }
+        // 2. Resetear y probar la nueva conexión (y guardar, si ya había conexión) en segundo plano
+        String pdfFooter = pdfFooterField.getText();
+        String pdfFooterSize = pdfFooterSizeSpinner.getValue().toString();
+        String localNombre = localNombreField.getText();
+        String localDireccion = localDireccionField.getText();
+        String localTelefono = localTelefonoField.getText();
+
+        hostField.getScene().getRoot().setDisable(true);
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().submitWrite(db -> {
+                    DatabaseManager.resetInstance();
+                    SettingsCache.getInstance().invalidate(); // La base de datos pudo haber cambiado
+                    try (Connection testConnection = DatabaseManager.getInstance().getConnection()) {
+                        // Si los campos estaban deshabilitados no se guardan: solo se recargarán desde la BD
+                        if (!wereFieldsDisabled) {
+                            Map<String, String> settings = new LinkedHashMap<>();
+                            settings.put("pdf.footer", pdfFooter);
+                            settings.put("pdf.footer.fontsize", pdfFooterSize);
+                            settings.put("local.nombre", localNombre);
+                            settings.put("local.direccion", localDireccion);
+                            settings.put("local.telefono", localTelefono);
+                            db.saveSettings(settings);
+                        }
+                    }
+                    return null;
+                }),
+                ignored -> {
+                    hostField.getScene().getRoot().setDisable(false);
+                    if (wereFieldsDisabled) {
+                        // Los campos estaban deshabilitados, lo que significa que acabamos de arreglar la conexión.
+                        // Recargamos los datos desde la DB en lugar de guardar los campos vacíos.
+                        loadSettings(); // Esto recargará y habilitará los campos.
+                        showAlert(Alert.AlertType.INFORMATION, "Conexión Exitosa", "Se ha conectado a la base de datos. La configuración del local y PDF ha sido cargada. Verifique los datos y guarde de nuevo si es necesario.");
+                    } else {
+                        showAlert(Alert.AlertType.INFORMATION, "Configuración Guardada", "Toda la configuración se ha guardado correctamente.");
+                        closeWindow();
+                    }
+                },
+                error -> {
+                    hostField.getScene().getRoot().setDisable(false);
+                    if (error instanceof SQLException) {
+                        // Si la conexión falla con los nuevos datos
+                        showAlert(Alert.AlertType.ERROR, "Error de Conexión", "No se pudo conectar a la base de datos con la nueva configuración. \n\nLos datos de conexión se guardaron, pero la configuración del local y PDF no pudo ser actualizada. Por favor, revise los datos de conexión.");
+                        setLocalPdfFieldsDisabled(true); // Mantener los campos deshabilitados
+                    } else {
+                        showAlert(Alert.AlertType.ERROR, "Error Inesperado", "Ocurrió un error al guardar la configuración: " + error.getMessage());
+                        error.printStackTrace();
+                    }
+                });
     }
 
     private void setLocalPdfFieldsDisabled(boolean disabled) {
@@ -168,20 +195,7 @@ public class SettingsController {
     }
 
     private void setupSpellChecking(StyleClassedTextArea textArea) {
-        PauseTransition pause = new PauseTransition(Duration.seconds(0.5));
-        textArea.textProperty().addListener((observable, oldValue, newValue) -> {
-            pause.setOnFinished(event -> {
-                Platform.runLater(() -> {
-                    try {
-                        List<RuleMatch> matches = CorrectorOrtografico.verificar(newValue);
-                        applyHighlighting(textArea, matches);
-                    } catch (IOException e) {
-                        // ignore
-                    }
-                });
-            });
-            pause.playFromStart();
-        });
+        VerificadorIncremental verificador = new VerificadorIncremental(textArea, matches -> applyHighlighting(textArea, matches));
 
         final ContextMenu contextMenu = new ContextMenu();
         textArea.setContextMenu(contextMenu);
@@ -204,36 +218,31 @@ public class SettingsController {
 
             int caretPosition = textArea.getCaretPosition();
 
-            try {
-                List<RuleMatch> allMatches = CorrectorOrtografico.verificar(text);
-                Optional<RuleMatch> matchAtCaret = allMatches.stream()
-                        .filter(m -> caretPosition >= m.getFromPos() && caretPosition <= m.getToPos())
-                        .findFirst();
-
-                if (matchAtCaret.isPresent()) {
-                    RuleMatch currentMatch = matchAtCaret.get();
-                    List<String> suggestions = currentMatch.getSuggestedReplacements();
-
-                    if (!suggestions.isEmpty()) {
-                        for (String suggestion : suggestions) {
-                            MenuItem item = new MenuItem(suggestion);
-                            item.setOnAction(evt -> {
-                                textArea.replaceText(currentMatch.getFromPos(), currentMatch.getToPos(), suggestion);
-                            });
-                            contextMenu.getItems().add(item);
-                        }
-                        contextMenu.getItems().add(new SeparatorMenuItem());
+            List<RuleMatch> allMatches = verificador.getErrores(text);
+            Optional<RuleMatch> matchAtCaret = allMatches.stream()
+                    .filter(m -> caretPosition >= m.getFromPos() && caretPosition <= m.getToPos())
+                    .findFirst();
+
+            if (matchAtCaret.isPresent()) {
+                RuleMatch currentMatch = matchAtCaret.get();
+                List<String> suggestions = currentMatch.getSuggestedReplacements();
+
+                if (!suggestions.isEmpty()) {
+                    for (String suggestion : suggestions) {
+                        MenuItem item = new MenuItem(suggestion);
+                        item.setOnAction(evt -> {
+                            textArea.replaceText(currentMatch.getFromPos(), currentMatch.getToPos(), suggestion);
+                        });
+                        contextMenu.getItems().add(item);
                     }
+                    contextMenu.getItems().add(new SeparatorMenuItem());
                 }
-
-                MenuItem fullCheck = new MenuItem("Verificar Ortografía (Informe completo)");
-                fullCheck.setOnAction(evt -> verificarOrtografiaCompleta(textArea));
-                contextMenu.getItems().add(fullCheck);
-
-            } catch (IOException ex) {
-                // ignore
             }
 
+            MenuItem fullCheck = new MenuItem("Verificar Ortografía (Informe completo)");
+            fullCheck.setOnAction(evt -> verificarOrtografiaCompleta(textArea));
+            contextMenu.getItems().add(fullCheck);
+
             if (!contextMenu.getItems().isEmpty()) {
                 contextMenu.show(textArea, event.getScreenX(), event.getScreenY());
             }
@@ -263,14 +272,15 @@ public class SettingsController {
             showAlert(Alert.AlertType.INFORMATION, "Texto Vacío", "No hay texto para verificar.");
             return;
         }
-        try {
-            List<RuleMatch> matches = CorrectorOrtografico.verificar(textArea.getText());
+        // El informe usa el nivel completo (con gramática), que puede seguir cargándose: se espera fuera del hilo de JavaFX
+        String texto = textArea.getText();
+        dbScope.onFxThread(CorrectorOrtografico.verificarCompletoEnSegundoPlano(texto), matches -> {
             if (matches.isEmpty()) {
                 showAlert(Alert.AlertType.INFORMATION, "Ortografía Correcta", "No se encontraron errores de ortografía o gramática.");
             } else {
                 StringBuilder errors = new StringBuilder("Se encontraron los siguientes errores:\n\n");
                 for (RuleMatch match : matches) {
-                    errors.append("Error: '").append(textArea.getText(), match.getFromPos(), match.getToPos()).append("'\n");
+                    errors.append("Error: '").append(texto, match.getFromPos(), match.getToPos()).append("'\n");
                     errors.append("Mensaje: ").append(match.getMessage()).append("\n");
                     errors.append("Sugerencias: ").append(match.getSuggestedReplacements()).append("\n\n");
                 }
@@ -291,9 +301,9 @@ public class SettingsController {
 
                 errorAlert.showAndWait();
             }
-        } catch (IOException e) {
+        }, error -> {
             showAlert(Alert.AlertType.ERROR, "Error del Corrector", "No se pudo inicializar el corrector ortográfico.");
-            e.printStackTrace();
-        }
+            error.printStackTrace();
+        });
     }
 }
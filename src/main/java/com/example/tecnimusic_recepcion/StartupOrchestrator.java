@@ -0,0 +1,224 @@
+package com.example.tecnimusic_recepcion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Orquestador del arranque: ejecuta las etapas de inicialización como un grafo de dependencias
+ * sobre un ejecutor propio. Cada etapa empieza en cuanto terminan bien sus dependencias, así que
+ * las independientes (por ejemplo, la base de datos y el corrector) corren en paralelo.
+ * El futuro de start() se completa cuando terminan las etapas críticas; las demás siguen en
+ * segundo plano. Al terminar todas se imprime un informe de tiempos por etapa.
+ */
+public class StartupOrchestrator {
+
+    private static final int MAX_HILOS = 4;
+
+    /**
+     * Trabajo de una etapa.
+     */
+    @FunctionalInterface
+    public interface StepAction {
+        void run() throws Exception;
+    }
+
+    /**
+     * Avisos de progreso. Se llaman desde los hilos del ejecutor, no desde el de JavaFX.
+     */
+    public interface Listener {
+        void stepStarted(Step step);
+
+        void stepFinished(Step step);
+    }
+
+    public enum Status { PENDIENTE, EN_CURSO, COMPLETADA, FALLIDA, OMITIDA }
+
+    public static final class Step {
+        private final String id;
+        private final String description;
+        private final boolean critical;
+        private final List<String> dependencies;
+        private final StepAction action;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private volatile Status status = Status.PENDIENTE;
+        private volatile long startNanos;
+        private volatile long endNanos;
+        private volatile Throwable error;
+
+        private Step(String id, String description, boolean critical, List<String> dependencies, StepAction action) {
+            this.id = id;
+            this.description = description;
+            this.critical = critical;
+            this.dependencies = dependencies;
+            this.action = action;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public boolean isCritical() {
+            return critical;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        public long getDurationMs() {
+            return endNanos == 0 ? 0 : (endNanos - startNanos) / 1_000_000;
+        }
+    }
+
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+    private final AtomicInteger finishedCount = new AtomicInteger();
+    private final AtomicInteger finishedCriticalCount = new AtomicInteger();
+    private long startNanos;
+    private volatile long criticalReadyNanos;
+
+    /**
+     * Agrega una etapa. Las dependencias deben haberse agregado antes, lo que además impide ciclos.
+     */
+    public StartupOrchestrator addStep(String id, String description, boolean critical, StepAction action, String... dependencies) {
+        if (steps.containsKey(id)) {
+            throw new IllegalArgumentException("La etapa de arranque '" + id + "' ya existe.");
+        }
+        for (String dependency : dependencies) {
+            if (!steps.containsKey(dependency)) {
+                throw new IllegalArgumentException("La etapa '" + id + "' depende de '" + dependency + "', que no se ha definido antes.");
+            }
+        }
+        steps.put(id, new Step(id, description, critical, List.of(dependencies), action));
+        return this;
+    }
+
+    /**
+     * Lanza todas las etapas. El futuro devuelto se completa cuando terminan las críticas, o falla
+     * con el error de la primera etapa crítica que falle. Debe llamarse una sola vez.
+     */
+    public CompletableFuture<Void> start(Listener listener) {
+        startNanos = System.nanoTime();
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(MAX_HILOS, steps.size())), r -> {
+            Thread t = new Thread(r, "arranque-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        CompletableFuture<Void> criticalReady = new CompletableFuture<>();
+        List<CompletableFuture<Void>> criticalFutures = new ArrayList<>();
+        List<CompletableFuture<Void>> allFutures = new ArrayList<>();
+
+        // Las etapas están en orden de inserción y las dependencias siempre van antes
+        for (Step step : steps.values()) {
+            CompletableFuture<?>[] dependencyFutures = step.dependencies.stream()
+                    .map(dependency -> steps.get(dependency).future)
+                    .toArray(CompletableFuture<?>[]::new);
+
+            CompletableFuture.allOf(dependencyFutures).whenComplete((ignored, dependencyError) -> {
+                if (dependencyError != null) {
+                    // Sin sus dependencias la etapa no puede ejecutarse
+                    step.status = Status.OMITIDA;
+                    step.error = dependencyError;
+                    finish(step, listener);
+                    step.future.completeExceptionally(dependencyError);
+                    return;
+                }
+                executor.execute(() -> runStep(step, listener));
+            });
+
+            if (step.critical) {
+                criticalFutures.add(step.future);
+                step.future.whenComplete((ignored, error) -> {
+                    if (error != null) criticalReady.completeExceptionally(AsyncDatabaseService.unwrap(error));
+                });
+            }
+            allFutures.add(step.future);
+        }
+
+        CompletableFuture.allOf(criticalFutures.toArray(CompletableFuture<?>[]::new)).thenRun(() -> {
+            criticalReadyNanos = System.nanoTime();
+            criticalReady.complete(null);
+        });
+        CompletableFuture.allOf(allFutures.toArray(CompletableFuture<?>[]::new)).whenComplete((ignored, error) -> {
+            executor.shutdown();
+            System.out.println(getTimingReport());
+        });
+        return criticalReady;
+    }
+
+    private void runStep(Step step, Listener listener) {
+        step.status = Status.EN_CURSO;
+        step.startNanos = System.nanoTime();
+        listener.stepStarted(step);
+        try {
+            step.action.run();
+            step.status = Status.COMPLETADA;
+            finish(step, listener);
+            step.future.complete(null);
+        } catch (Throwable e) {
+            step.status = Status.FALLIDA;
+            step.error = e;
+            System.err.println("Etapa de arranque '" + step.description + "' fallida: " + e.getMessage());
+            finish(step, listener);
+            step.future.completeExceptionally(e);
+        }
+    }
+
+    private void finish(Step step, Listener listener) {
+        step.endNanos = System.nanoTime();
+        if (step.startNanos == 0) step.startNanos = step.endNanos;
+        finishedCount.incrementAndGet();
+        if (step.critical) finishedCriticalCount.incrementAndGet();
+        listener.stepFinished(step);
+    }
+
+    /**
+     * Fracción (0 a 1) de etapas críticas terminadas: es lo que hay que esperar para abrir el menú.
+     */
+    public double getCriticalProgress() {
+        long total = steps.values().stream().filter(Step::isCritical).count();
+        return total == 0 ? 1 : (double) finishedCriticalCount.get() / total;
+    }
+
+    public double getProgress() {
+        return steps.isEmpty() ? 1 : (double) finishedCount.get() / steps.size();
+    }
+
+    public List<Step> getSteps() {
+        return Collections.unmodifiableList(new ArrayList<>(steps.values()));
+    }
+
+    /**
+     * Informe de tiempos: cuándo empezó cada etapa respecto al arranque, cuánto duró y cómo terminó.
+     */
+    public String getTimingReport() {
+        StringBuilder report = new StringBuilder("Informe de arranque:\n");
+        for (Step step : steps.values()) {
+            long offsetMs = step.startNanos == 0 ? 0 : (step.startNanos - startNanos) / 1_000_000;
+            report.append(String.format("  %-12s %-10s %-15s +%d ms, %d ms%s%n",
+                    step.id, step.status, step.critical ? "[crítica]" : "[segundo plano]", offsetMs, step.getDurationMs(),
+                    step.error != null ? " (" + AsyncDatabaseService.unwrap(step.error).getMessage() + ")" : ""));
+        }
+        if (criticalReadyNanos != 0) {
+            report.append(String.format("  Etapas críticas listas en %d ms.%n", (criticalReadyNanos - startNanos) / 1_000_000));
+        }
+        report.append(String.format("  Arranque completo en %d ms.", (System.nanoTime() - startNanos) / 1_000_000));
+        return report.toString();
+    }
+}
@@ -0,0 +1,431 @@
+package com.example.tecnimusic_recepcion;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índices de autocompletado compartidos por todo el proceso (clientes, series, compañías, modelos y tipos).
+ * Cada vocabulario se lee una sola vez de la base de datos y se guarda como un arreglo ordenado de claves
+ * normalizadas; una consulta busca el rango del prefijo por búsqueda binaria y devuelve los primeros K
+ * resultados. Las altas hechas por DatabaseService se agregan al índice sin recargarlo.
+ * Si una tabla es demasiado grande para tenerla en memoria (los seriales de Snipe-IT), ese vocabulario
+ * se consulta directamente en la base de datos con DatabasePrefixLookup.
+ */
+public class SuggestionService {
+
+    /**
+     * Máximo de sugerencias por consulta: más que esto no cabe en la lista desplegable.
+     */
+    public static final int DEFAULT_LIMIT = 15;
+
+    /**
+     * Pausa al escribir antes de consultar la base de datos para un vocabulario que no está en memoria.
+     */
+    public static final long REMOTE_DELAY_MS = 300;
+
+    // A partir de cuántas filas (estimadas) un vocabulario se consulta en la base de datos en lugar de cargarlo
+    private static final String MAX_FILAS_SETTING = "sugerencias.memoria.max.filas";
+    private static final long DEFAULT_MAX_FILAS = 100_000;
+
+    public enum Vocabulary {
+        CLIENTES("SELECT nombre, telefono FROM x_clientes"),
+        SERIES("SELECT serial FROM assets WHERE serial IS NOT NULL AND serial != ''", "assets", "serial"),
+        COMPANIAS("SELECT name FROM companies WHERE name IS NOT NULL AND name != ''"),
+        MODELOS("SELECT name FROM models WHERE name IS NOT NULL AND name != ''"),
+        CATEGORIAS("SELECT name FROM categories WHERE name IS NOT NULL AND name != ''");
+
+        private final String query;
+        // Tabla y columna (indexada) para consultar por prefijo en la base de datos, si el vocabulario lo admite
+        private final String table;
+        private final String column;
+
+        Vocabulary(String query) {
+            this(query, null, null);
+        }
+
+        Vocabulary(String query, String table, String column) {
+            this.query = query;
+            this.table = table;
+            this.column = column;
+        }
+    }
+
+    private static SuggestionService instance;
+
+    private final Map<Vocabulary, PrefixIndex> indexes = new EnumMap<>(Vocabulary.class);
+    private final Map<Vocabulary, DatabasePrefixLookup> remote = new ConcurrentHashMap<>();
+    private volatile boolean loaded = false;
+
+    private SuggestionService() {
+        for (Vocabulary vocabulary : Vocabulary.values()) {
+            indexes.put(vocabulary, new PrefixIndex());
+        }
+    }
+
+    public static synchronized SuggestionService getInstance() {
+        if (instance == null) instance = new SuggestionService();
+        return instance;
+    }
+
+    /**
+     * Carga todos los vocabularios con una conexión. Reemplaza lo que hubiera (también sirve para recargar).
+     * Los que admiten consulta remota y cuya tabla supera el umbral no se cargan: se consultarán por prefijo.
+     */
+    public synchronized void load() throws SQLException {
+        long maxRows = getMaxInMemoryRows();
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
+            conn.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            for (Vocabulary vocabulary : Vocabulary.values()) {
+                long rows = vocabulary.table == null ? 0 : estimateRows(conn, vocabulary.table);
+                if (rows > maxRows) {
+                    indexes.get(vocabulary).replaceAll(List.of());
+                    remote.computeIfAbsent(vocabulary, v -> new DatabasePrefixLookup(v.table, v.column, DEFAULT_LIMIT)).invalidate();
+                    System.out.println("Sugerencias de " + vocabulary + ": ~" + rows + " filas, se consultarán en la base de datos.");
+                } else {
+                    remote.remove(vocabulary);
+                    indexes.get(vocabulary).replaceAll(fetch(conn, vocabulary));
+                }
+            }
+        }
+        loaded = true;
+    }
+
+    private long getMaxInMemoryRows() {
+        try {
+            return Long.parseLong(SettingsCache.getInstance().get(MAX_FILAS_SETTING, String.valueOf(DEFAULT_MAX_FILAS)).trim());
+        } catch (SQLException | NumberFormatException e) {
+            return DEFAULT_MAX_FILAS;
+        }
+    }
+
+    // Estimación de InnoDB (no cuenta filas): suficiente para decidir y no cuesta un recorrido de la tabla
+    private long estimateRows(Connection conn, String table) throws SQLException {
+        String sql = "SELECT TABLE_ROWS FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, table);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Carga los vocabularios si aún no se cargaron (por ejemplo, si el formulario se abre antes de que
+     * termine la precarga del arranque).
+     */
+    public void ensureLoaded() throws SQLException {
+        if (loaded) return;
+        synchronized (this) {
+            if (!loaded) load();
+        }
+    }
+
+    private List<String> fetch(Connection conn, Vocabulary vocabulary) throws SQLException {
+        List<String> values = new ArrayList<>();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(vocabulary.query)) {
+            int columnCount = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                values.add(columnCount > 1 ? formatCliente(rs.getString(1), rs.getString(2)) : rs.getString(1));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Texto con el que se muestra un cliente en las sugerencias; el formulario lo separa de nuevo por " | ".
+     */
+    public static String formatCliente(String nombre, String telefono) {
+        return nombre + " | " + telefono;
+    }
+
+    /**
+     * Las primeras sugerencias para lo que escribió el usuario. Primero las que empiezan con el texto
+     * y después las que tienen una palabra que empieza con él. Si los índices no se pudieron cargar
+     * devuelve una lista vacía: el autocompletado no debe interrumpir la captura.
+     */
+    public List<String> suggest(Vocabulary vocabulary, String text, int limit) {
+        if (text == null || text.isBlank()) return List.of();
+        try {
+            ensureLoaded();
+        } catch (SQLException e) {
+            System.err.println("No se pudieron cargar las sugerencias: " + e.getMessage());
+            return List.of();
+        }
+        DatabasePrefixLookup lookup = remote.get(vocabulary);
+        if (lookup != null) {
+            try {
+                return lookup.lookup(text);
+            } catch (SQLException e) {
+                System.err.println("No se pudieron consultar las sugerencias: " + e.getMessage());
+                return List.of();
+            }
+        }
+        return indexes.get(vocabulary).search(text, limit);
+    }
+
+    public List<String> suggest(Vocabulary vocabulary, String text) {
+        return suggest(vocabulary, text, DEFAULT_LIMIT);
+    }
+
+    /**
+     * Agrega un valor recién insertado en la base de datos. Si se insertó dentro de una transacción, se llama
+     * después del commit (ReferenceCache.Transaction.afterCommit) para no sugerir filas que se deshicieron.
+     */
+    public void add(Vocabulary vocabulary, String value) {
+        if (value == null || value.isBlank()) return;
+        DatabasePrefixLookup lookup = remote.get(vocabulary);
+        if (lookup != null) {
+            lookup.invalidate();
+        } else {
+            indexes.get(vocabulary).add(value);
+        }
+    }
+
+    /**
+     * Quita valores que dejaron de existir (por ejemplo, los clientes absorbidos en una fusión).
+     */
+    public void removeAll(Vocabulary vocabulary, Collection<String> values) {
+        if (values.isEmpty()) return;
+        DatabasePrefixLookup lookup = remote.get(vocabulary);
+        if (lookup != null) {
+            lookup.invalidate();
+        } else {
+            indexes.get(vocabulary).removeAll(values);
+        }
+    }
+
+    public boolean isRemote(Vocabulary vocabulary) {
+        return remote.containsKey(vocabulary);
+    }
+
+    /**
+     * Sesión de autocompletado para un campo: si el vocabulario se consulta en la base de datos,
+     * cada búsqueda nueva cancela en el servidor la que el mismo campo tenía en curso.
+     */
+    public Session openSession(Vocabulary vocabulary) {
+        return new Session(vocabulary);
+    }
+
+    public final class Session {
+        private final Vocabulary vocabulary;
+        private DatabasePrefixLookup lookup;
+        private DatabasePrefixLookup.Session lookupSession;
+
+        private Session(Vocabulary vocabulary) {
+            this.vocabulary = vocabulary;
+        }
+
+        public List<String> suggest(String text) {
+            if (text == null || text.isBlank()) return List.of();
+            try {
+                ensureLoaded();
+            } catch (SQLException e) {
+                System.err.println("No se pudieron cargar las sugerencias: " + e.getMessage());
+                return List.of();
+            }
+            DatabasePrefixLookup current = remote.get(vocabulary);
+            if (current == null) {
+                return indexes.get(vocabulary).search(text, DEFAULT_LIMIT);
+            }
+            DatabasePrefixLookup.Session session;
+            synchronized (this) {
+                if (lookup != current) {
+                    lookup = current;
+                    lookupSession = current.openSession();
+                }
+                session = lookupSession;
+            }
+            try {
+                return session.suggest(text);
+            } catch (SQLException e) {
+                // Una consulta cancelada porque el usuario siguió escribiendo no es un error
+                if (!"70100".equals(e.getSQLState())) {
+                    System.err.println("No se pudieron consultar las sugerencias: " + e.getMessage());
+                }
+                return List.of();
+            }
+        }
+    }
+
+    public int size(Vocabulary vocabulary) {
+        return indexes.get(vocabulary).size();
+    }
+
+    static String normalize(String text) {
+        return ClaveBusqueda.plegar(text);
+    }
+
+    /**
+     * Índice de prefijos sobre arreglos ordenados. Hay dos: uno con el valor completo y otro con el
+     * resto del valor a partir de cada palabra, para que "perez" encuentre a "Juan Perez".
+     * Los arreglos no se modifican nunca: una alta crea arreglos nuevos y los publica de una vez,
+     * así que las búsquedas no necesitan bloqueo.
+     */
+    static final class PrefixIndex {
+
+        private static final class Snapshot {
+            final String[] keys;
+            final String[] values;
+            final String[] wordKeys;
+            final String[] wordValues;
+
+            Snapshot(String[] keys, String[] values, String[] wordKeys, String[] wordValues) {
+                this.keys = keys;
+                this.values = values;
+                this.wordKeys = wordKeys;
+                this.wordValues = wordValues;
+            }
+        }
+
+        private static final Snapshot EMPTY = new Snapshot(new String[0], new String[0], new String[0], new String[0]);
+
+        private volatile Snapshot snapshot = EMPTY;
+
+        synchronized void replaceAll(Collection<String> values) {
+            List<String[]> entries = new ArrayList<>();
+            List<String[]> wordEntries = new ArrayList<>();
+            for (String value : new LinkedHashSet<>(values)) {
+                collectEntries(value, entries, wordEntries);
+            }
+            snapshot = build(entries, wordEntries);
+        }
+
+        synchronized void add(String value) {
+            Snapshot current = snapshot;
+            if (containsValue(current, normalize(value), value)) return;
+
+            List<String[]> entries = new ArrayList<>();
+            List<String[]> wordEntries = new ArrayList<>();
+            collectEntries(value, entries, wordEntries);
+            String[][] merged = merge(current.keys, current.values, entries);
+            String[][] mergedWords = merge(current.wordKeys, current.wordValues, wordEntries);
+            snapshot = new Snapshot(merged[0], merged[1], mergedWords[0], mergedWords[1]);
+        }
+
+        synchronized void removeAll(Collection<String> values) {
+            Set<String> removed = new HashSet<>(values);
+            Snapshot current = snapshot;
+            String[][] kept = without(current.keys, current.values, removed);
+            String[][] keptWords = without(current.wordKeys, current.wordValues, removed);
+            snapshot = new Snapshot(kept[0], kept[1], keptWords[0], keptWords[1]);
+        }
+
+        int size() {
+            return snapshot.keys.length;
+        }
+
+        List<String> search(String text, int limit) {
+            Snapshot current = snapshot;
+            String prefix = normalize(text);
+            Set<String> result = new LinkedHashSet<>();
+            collect(current.keys, current.values, prefix, limit, result);
+            if (result.size() < limit) {
+                collect(current.wordKeys, current.wordValues, prefix, limit, result);
+            }
+            return new ArrayList<>(result);
+        }
+
+        private static void collect(String[] keys, String[] values, String prefix, int limit, Set<String> result) {
+            int from = lowerBound(keys, prefix);
+            for (int i = from; i < keys.length && result.size() < limit && keys[i].startsWith(prefix); i++) {
+                result.add(values[i]);
+            }
+        }
+
+        // Primera posición cuya clave es >= prefix
+        private static int lowerBound(String[] keys, String prefix) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid].compareTo(prefix) < 0) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        private static boolean containsValue(Snapshot current, String key, String value) {
+            // Puede haber varias entradas con la misma clave normalizada (difieren en mayúsculas)
+            int i = lowerBound(current.keys, key);
+            for (; i < current.keys.length && current.keys[i].equals(key); i++) {
+                if (current.values[i].equals(value)) return true;
+            }
+            return false;
+        }
+
+        private static void collectEntries(String value, List<String[]> entries, List<String[]> wordEntries) {
+            String key = normalize(value);
+            if (key.isEmpty()) return;
+            entries.add(new String[]{key, value});
+            for (int i = 1; i < key.length(); i++) {
+                if (!Character.isLetterOrDigit(key.charAt(i - 1)) && Character.isLetterOrDigit(key.charAt(i))) {
+                    wordEntries.add(new String[]{key.substring(i), value});
+                }
+            }
+        }
+
+        private static Snapshot build(List<String[]> entries, List<String[]> wordEntries) {
+            String[][] sorted = sort(entries);
+            String[][] sortedWords = sort(wordEntries);
+            return new Snapshot(sorted[0], sorted[1], sortedWords[0], sortedWords[1]);
+        }
+
+        // Ordena por clave ({claves, valores}); con vocabularios grandes la ordenación es lo más caro de la carga
+        private static String[][] sort(List<String[]> entries) {
+            String[][] array = entries.toArray(new String[0][]);
+            Arrays.parallelSort(array, (a, b) -> a[0].compareTo(b[0]));
+            String[] keys = new String[array.length];
+            String[] values = new String[array.length];
+            for (int i = 0; i < array.length; i++) {
+                keys[i] = array[i][0];
+                values[i] = array[i][1];
+            }
+            return new String[][]{keys, values};
+        }
+
+        // Copia de los arreglos sin las entradas de los valores quitados (el orden se conserva): {claves, valores}
+        private static String[][] without(String[] keys, String[] values, Set<String> removed) {
+            List<String> keptKeys = new ArrayList<>(keys.length);
+            List<String> keptValues = new ArrayList<>(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                if (!removed.contains(values[i])) {
+                    keptKeys.add(keys[i]);
+                    keptValues.add(values[i]);
+                }
+            }
+            return new String[][]{keptKeys.toArray(new String[0]), keptValues.toArray(new String[0])};
+        }
+
+        // Mezcla las entradas nuevas (pocas) con los arreglos ya ordenados en arreglos nuevos: {claves, valores}
+        private static String[][] merge(String[] keys, String[] values, List<String[]> newEntries) {
+            newEntries.sort((a, b) -> a[0].compareTo(b[0]));
+            String[] mergedKeys = new String[keys.length + newEntries.size()];
+            String[] mergedValues = new String[mergedKeys.length];
+            int i = 0;
+            int j = 0;
+            for (int out = 0; out < mergedKeys.length; out++) {
+                if (j >= newEntries.size() || (i < keys.length && keys[i].compareTo(newEntries.get(j)[0]) <= 0)) {
+                    mergedKeys[out] = keys[i];
+                    mergedValues[out] = values[i++];
+                } else {
+                    mergedKeys[out] = newEntries.get(j)[0];
+                    mergedValues[out] = newEntries.get(j++)[1];
+                }
+            }
+            return new String[][]{mergedKeys, mergedValues};
+        }
+    }
+}
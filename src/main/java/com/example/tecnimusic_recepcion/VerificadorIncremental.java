@@ -0,0 +1,134 @@
+package com.example.tecnimusic_recepcion;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.util.Duration;
+import org.fxmisc.richtext.StyleClassedTextArea;
+import org.languagetool.rules.RuleMatch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Corrector ortográfico en vivo para un StyleClassedTextArea.
+ * Tras una pausa al escribir, verifica en un hilo de fondo solo los párrafos que cambiaron
+ * (los demás salen de una caché por texto de párrafo), combina los resultados con las
+ * posiciones absolutas del texto y los entrega en el hilo de JavaFX.
+ * Si el usuario sigue escribiendo, la verificación en curso se abandona.
+ */
+public class VerificadorIncremental {
+
+    private static final Duration PAUSA = Duration.seconds(0.5);
+    private static final int MAX_PARRAFOS_EN_CACHE = 200;
+
+    // Tantos hilos como instancias tiene el pool del corrector, compartidos por todos los campos
+    private static final AtomicInteger CONTADOR_HILOS = new AtomicInteger();
+    private static final ExecutorService EJECUTOR = Executors.newFixedThreadPool(CorrectorOrtografico.getPool().getTamano(), r -> {
+        Thread t = new Thread(r, "corrector-ortografico-" + CONTADOR_HILOS.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final StyleClassedTextArea textArea;
+    private final Consumer<List<RuleMatch>> onResultado;
+    private final PauseTransition pausa = new PauseTransition(PAUSA);
+    private final AtomicLong generacion = new AtomicLong();
+
+    // Párrafo -> errores con posiciones relativas al inicio del párrafo (se accede sincronizando sobre el mapa)
+    private final Map<String, List<RuleMatch>> cacheParrafos = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<RuleMatch>> eldest) {
+            return size() > MAX_PARRAFOS_EN_CACHE;
+        }
+    };
+
+    // Último resultado aplicado y el texto al que corresponde (solo desde el hilo de JavaFX)
+    private String textoVerificado;
+    private List<RuleMatch> erroresVerificados = Collections.emptyList();
+
+    public VerificadorIncremental(StyleClassedTextArea textArea, Consumer<List<RuleMatch>> onResultado) {
+        this.textArea = textArea;
+        this.onResultado = onResultado;
+        textArea.textProperty().addListener((observable, oldValue, newValue) -> {
+            generacion.incrementAndGet(); // Invalida cualquier verificación en curso
+            pausa.setOnFinished(event -> programarVerificacion(newValue));
+            pausa.playFromStart();
+        });
+    }
+
+    /**
+     * Errores del texto actual, sin bloquear: se llama desde el hilo de JavaFX (menú contextual).
+     * Si ya se verificó este mismo texto se devuelve el resultado guardado; si no, se devuelve
+     * una lista vacía y se programa la verificación en segundo plano, que actualizará el resaltado.
+     */
+    public List<RuleMatch> getErrores(String texto) {
+        if (texto.equals(textoVerificado)) {
+            return new ArrayList<>(erroresVerificados);
+        }
+        if (CorrectorOrtografico.isListo()) {
+            pausa.stop();
+            programarVerificacion(texto);
+        }
+        return new ArrayList<>();
+    }
+
+    private void programarVerificacion(String texto) {
+        long miGeneracion = generacion.get();
+        EJECUTOR.execute(() -> {
+            if (miGeneracion != generacion.get()) return; // Ya hay un texto más reciente
+            List<RuleMatch> errores;
+            try {
+                synchronized (cacheParrafos) {
+                    errores = verificarPorParrafos(texto, miGeneracion);
+                }
+            } catch (IOException | IllegalStateException e) {
+                return; // El corrector no está disponible; se deja el resaltado como estaba
+            }
+            if (errores == null) return; // Abandonada por un cambio posterior
+            Platform.runLater(() -> {
+                if (miGeneracion != generacion.get() || !texto.equals(textArea.getText())) return;
+                textoVerificado = texto;
+                erroresVerificados = errores;
+                onResultado.accept(new ArrayList<>(errores));
+            });
+        });
+    }
+
+    /**
+     * Verifica el texto párrafo a párrafo. Devuelve null si la generación cambió a mitad.
+     */
+    private List<RuleMatch> verificarPorParrafos(String texto, long miGeneracion) throws IOException {
+        List<RuleMatch> resultado = new ArrayList<>();
+        int inicio = 0;
+        while (inicio <= texto.length()) {
+            int fin = texto.indexOf('\n', inicio);
+            if (fin < 0) fin = texto.length();
+            String parrafo = texto.substring(inicio, fin);
+
+            if (!parrafo.trim().isEmpty()) {
+                List<RuleMatch> relativos = cacheParrafos.get(parrafo);
+                if (relativos == null) {
+                    if (miGeneracion != generacion.get()) return null;
+                    relativos = CorrectorOrtografico.verificar(parrafo);
+                    cacheParrafos.put(parrafo, relativos);
+                }
+                for (RuleMatch relativo : relativos) {
+                    RuleMatch absoluto = new RuleMatch(relativo);
+                    absoluto.setOffsetPosition(relativo.getFromPos() + inicio, relativo.getToPos() + inicio);
+                    resultado.add(absoluto);
+                }
+            }
+            inicio = fin + 1;
+        }
+        return resultado;
+    }
+}
@@ -1,6 +1,5 @@
 package com.example.tecnimusic_recepcion;
 
-import javafx.animation.PauseTransition;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
@@ -18,7 +17,7 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
-import javafx.util.Duration;
+import org.controlsfx.control.textfield.AutoCompletionBinding;
 import org.controlsfx.control.textfield.TextFields;
 import org.fxmisc.richtext.StyleClassedTextArea;
 import org.languagetool.rules.RuleMatch;
@@ -37,10 +36,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.Properties;
 import java.util.stream.Collectors;
 
@@ -78,8 +80,12 @@ public class tecniMusicController {
     private final ObservableList<Equipo> equiposObservable = FXCollections.observableArrayList();
     private final ObservableList<String> accesoriosList = FXCollections.observableArrayList();
 
-    private long predictedHojaId;
+    // Número de orden reservado para la hoja nueva del formulario: es el que se muestra y el que se guarda
+    private String numeroOrdenReservado;
+    private final AsyncDatabaseService.Scope dbScope = new AsyncDatabaseService.Scope();
     private Long idClienteSeleccionado = null;
+    // Copia del teléfono capturado para el autocompletado, que se consulta fuera del hilo de JavaFX
+    private volatile String telefonoCapturado = "";
     private String nombreClienteSeleccionado = null;
     private Long idAssetSeleccionado = null;
     private String serieEquipoSeleccionado = null;
@@ -90,15 +96,10 @@ public class tecniMusicController {
     private HojaServicioData currentHojaServicioData; // Campo para almacenar la HojaServicioData
     private static final Locale SPANISH_MEXICO_LOCALE = new Locale("es", "MX");
 
-    private final ObservableList<String> clienteSuggestions = FXCollections.observableArrayList();
-    private final ObservableList<String> serieGlobalSuggestions = FXCollections.observableArrayList();
-    private final ObservableList<String> companiaGlobalSuggestions = FXCollections.observableArrayList();
-    private final ObservableList<String> modeloGlobalSuggestions = FXCollections.observableArrayList();
-    private final ObservableList<String> tipoGlobalSuggestions = FXCollections.observableArrayList();
-
     @FXML
     public void initialize() {
         ordenNumeroField.setEditable(false);
+        dbScope.bindTo(ordenNumeroField);
         cargarDatosDelLocal();
         setupListeners();
         setupCurrencyField(equipoCostoField);
@@ -164,20 +165,7 @@ public class tecniMusicController {
     private void setupSpellChecking(StyleClassedTextArea textArea) {
         if (textArea == null) return;
         textArea.setStyle("-fx-background-color: #1E2A3A; -fx-text-fill: white;");
-        PauseTransition pause = new PauseTransition(Duration.seconds(0.5));
-        textArea.textProperty().addListener((observable, oldValue, newValue) -> {
-            pause.setOnFinished(event -> {
-                Platform.runLater(() -> {
-                    try {
-                        List<RuleMatch> matches = CorrectorOrtografico.verificar(newValue);
-                        applyHighlighting(textArea, matches);
-                    } catch (IOException e) {
-                        // ignore
-                    }
-                });
-            });
-            pause.playFromStart();
-        });
+        VerificadorIncremental verificador = new VerificadorIncremental(textArea, matches -> applyHighlighting(textArea, matches));
 
         final ContextMenu contextMenu = new ContextMenu();
         textArea.setContextMenu(contextMenu);
@@ -203,36 +191,31 @@ public class tecniMusicController {
 
             int caretPosition = textArea.getCaretPosition();
 
-            try {
-                List<RuleMatch> allMatches = CorrectorOrtografico.verificar(text);
-                Optional<RuleMatch> matchAtCaret = allMatches.stream()
-                        .filter(m -> caretPosition >= m.getFromPos() && caretPosition <= m.getToPos())
-                        .findFirst();
-
-                if (matchAtCaret.isPresent()) {
-                    RuleMatch currentMatch = matchAtCaret.get();
-                    List<String> suggestions = currentMatch.getSuggestedReplacements();
-
-                    if (!suggestions.isEmpty()) {
-                        for (String suggestion : suggestions) {
-                            MenuItem item = new MenuItem(suggestion);
-                            item.setOnAction(evt -> {
-                                textArea.replaceText(currentMatch.getFromPos(), currentMatch.getToPos(), suggestion);
-                            });
-                            contextMenu.getItems().add(item);
-                        }
-                        contextMenu.getItems().add(new SeparatorMenuItem());
+            List<RuleMatch> allMatches = verificador.getErrores(text);
+            Optional<RuleMatch> matchAtCaret = allMatches.stream()
+                    .filter(m -> caretPosition >= m.getFromPos() && caretPosition <= m.getToPos())
+                    .findFirst();
+
+            if (matchAtCaret.isPresent()) {
+                RuleMatch currentMatch = matchAtCaret.get();
+                List<String> suggestions = currentMatch.getSuggestedReplacements();
+
+                if (!suggestions.isEmpty()) {
+                    for (String suggestion : suggestions) {
+                        MenuItem item = new MenuItem(suggestion);
+                        item.setOnAction(evt -> {
+                            textArea.replaceText(currentMatch.getFromPos(), currentMatch.getToPos(), suggestion);
+                        });
+                        contextMenu.getItems().add(item);
                     }
+                    contextMenu.getItems().add(new SeparatorMenuItem());
                 }
-
-                MenuItem fullCheck = new MenuItem("Verificar Ortografía (Informe completo)");
-                fullCheck.setOnAction(evt -> verificarOrtografiaCompleta(textArea));
-                contextMenu.getItems().add(fullCheck);
-
-            } catch (IOException ex) {
-                // ignore
             }
 
+            MenuItem fullCheck = new MenuItem("Verificar Ortografía (Informe completo)");
+            fullCheck.setOnAction(evt -> verificarOrtografiaCompleta(textArea));
+            contextMenu.getItems().add(fullCheck);
+
             if (!contextMenu.getItems().isEmpty()) {
                 contextMenu.show(textArea, event.getScreenX(), event.getScreenY());
             }
@@ -267,14 +250,15 @@ public class tecniMusicController {
             showAlert(Alert.AlertType.INFORMATION, "Texto Vacío", "No hay texto para verificar.");
             return;
         }
-        try {
-            List<RuleMatch> matches = CorrectorOrtografico.verificar(textArea.getText());
+        // El informe usa el nivel completo (con gramática), que puede seguir cargándose: se espera fuera del hilo de JavaFX
+        String texto = textArea.getText();
+        dbScope.onFxThread(CorrectorOrtografico.verificarCompletoEnSegundoPlano(texto), matches -> {
             if (matches.isEmpty()) {
                 showAlert(Alert.AlertType.INFORMATION, "Ortografía Correcta", "No se encontraron errores de ortografía o gramática.");
             } else {
                 StringBuilder errors = new StringBuilder("Se encontraron los siguientes errores:\n\n");
                 for (RuleMatch match : matches) {
-                    errors.append("Error: '").append(textArea.getText(), match.getFromPos(), match.getToPos()).append("'\n");
+                    errors.append("Error: '").append(texto, match.getFromPos(), match.getToPos()).append("'\n");
                     errors.append("Mensaje: ").append(match.getMessage()).append("\n");
                     errors.append("Sugerencias: ").append(match.getSuggestedReplacements()).append("\n\n");
                 }
@@ -295,10 +279,10 @@ public class tecniMusicController {
 
                 errorAlert.showAndWait();
             }
-        } catch (IOException e) {
+        }, error -> {
             showAlert(Alert.AlertType.ERROR, "Error del Corrector", "No se pudo inicializar el corrector ortográfico.");
-            e.printStackTrace();
-        }
+            error.printStackTrace();
+        });
     }
 
     @FXML
@@ -418,6 +402,14 @@ public class tecniMusicController {
         totalFinalLabel.setText(currencyFormat.format(totalFinal));
     }
 
+    /**
+     * Prepara el formulario para capturar una hoja nueva: reserva y muestra su número de orden.
+     * Las ventanas que consultan o editan una hoja existente no lo llaman, así no gastan números.
+     */
+    public void loadForNewSheet() {
+        asignarNumeroDeOrden();
+    }
+
     public void loadForEditing(HojaServicioData data, String motivo) {
         this.isEditMode = true;
         this.currentHojaServicioData = data;
@@ -550,30 +542,36 @@ public class tecniMusicController {
             return;
         }
 
+        BigDecimal anticipo;
+        HojaServicioData data;
         try {
-            BigDecimal anticipo = parseCurrency(anticipoField.getText());
-
-            String realOrdenNumero = DatabaseService.getInstance().guardarHojaServicioCompleta(
-                    idClienteSeleccionado, clienteNombreField.getText(), clienteTelefonoField.getText(), clienteDireccionField.getText(),
-                    new ArrayList<>(equiposObservable),
-                    ordenFechaPicker.getValue(), "", BigDecimal.ZERO, anticipo,
-                    entregaFechaPicker.getValue(), "", aclaracionesArea.getText()
-            );
-
-            HojaServicioData data = createHojaServicioDataFromForm(realOrdenNumero);
-            String pdfPath = new PdfGenerator().generatePdf(data);
-
-            if (showConfirmationDialog("Imprimir Hoja", "Hoja de servicio guardada. ¿Desea imprimirla ahora?")) {
-                performPrint(pdfPath);
-            }
-
-            mostrarExitoYSalir("Hoja creada con éxito: " + realOrdenNumero);
-
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudo guardar la hoja de servicio. Error: " + e.getMessage());
-        } catch (IOException | ParseException e) {
+            anticipo = parseCurrency(anticipoField.getText());
+            data = createHojaServicioDataFromForm(null);
+        } catch (ParseException e) {
             showAlert(Alert.AlertType.ERROR, "Error de PDF", "No se pudo generar el PDF. Error: " + e.getMessage());
+            return;
         }
+
+        setFormBusy(true);
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().guardarHojaServicioCompleta(
+                        numeroOrdenReservado, idClienteSeleccionado, clienteNombreField.getText(), clienteTelefonoField.getText(), clienteDireccionField.getText(),
+                        equiposObservable,
+                        ordenFechaPicker.getValue(), "", BigDecimal.ZERO, anticipo,
+                        entregaFechaPicker.getValue(), "", aclaracionesArea.getText()),
+                realOrdenNumero -> {
+                    numeroOrdenReservado = null; // Ya se usó; la próxima hoja reserva otro
+                    data.setNumeroOrden(realOrdenNumero);
+                    generarPdfEnSegundoPlano(data, false, pdfPath -> {
+                        if (showConfirmationDialog("Imprimir Hoja", "Hoja de servicio guardada. ¿Desea imprimirla ahora?")) {
+                            performPrint(pdfPath);
+                        }
+                        mostrarExitoYSalir("Hoja creada con éxito: " + realOrdenNumero);
+                    });
+                },
+                error -> {
+                    setFormBusy(false);
+                    showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudo guardar la hoja de servicio. Error: " + error.getMessage());
+                });
     }
 
     private void handleUpdate() {
@@ -589,55 +587,61 @@ public class tecniMusicController {
             return;
         }
 
+        BigDecimal anticipo;
         try {
-            BigDecimal anticipo = parseCurrency(anticipoField.getText());
-            DatabaseService.getInstance().actualizarHojaServicioAbierta(
-                currentHojaServicioData.getId(),
-                ordenFechaPicker.getValue(),
-                anticipo,
-                entregaFechaPicker.getValue(),
-                aclaracionesArea.getText(),
-                new ArrayList<>(equiposObservable),
-                currentHojaServicioData.getClienteNombre()
-            );
-            mostrarExitoYSalir("Hoja de servicio " + currentHojaServicioData.getNumeroOrden() + " actualizada con éxito.");
-
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudo actualizar la hoja de servicio. Error: " + e.getMessage());
-            e.printStackTrace();
+            anticipo = parseCurrency(anticipoField.getText());
         } catch (ParseException e) {
             showAlert(Alert.AlertType.ERROR, "Error de Formato", "No se pudo procesar un valor monetario. Error: " + e.getMessage());
+            return;
         }
+
+        setFormBusy(true);
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().actualizarHojaServicioAbierta(
+                        currentHojaServicioData.getId(),
+                        ordenFechaPicker.getValue(),
+                        anticipo,
+                        entregaFechaPicker.getValue(),
+                        aclaracionesArea.getText(),
+                        equiposObservable,
+                        currentHojaServicioData.getClienteNombre()),
+                ignored -> mostrarExitoYSalir("Hoja de servicio " + currentHojaServicioData.getNumeroOrden() + " actualizada con éxito."),
+                error -> {
+                    setFormBusy(false);
+                    showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudo actualizar la hoja de servicio. Error: " + error.getMessage());
+                    error.printStackTrace();
+                });
     }
 
     private void handleVersioningUpdate() {
         if (!showConfirmationDialog("Confirmar Nueva Versión", "¿Está seguro de que desea crear una nueva versión de la hoja de servicio " + currentHojaServicioData.getNumeroOrden() + "? La hoja original será ANULADA.")) {
             return;
         }
+        BigDecimal anticipo;
         try {
-            BigDecimal anticipo = parseCurrency(anticipoField.getText());
-            
-            String nuevoNumeroOrden = DatabaseService.getInstance().versionarHojaServicio(
-                currentHojaServicioData.getId(),
-                currentHojaServicioData.getClienteId(),
-                clienteNombreField.getText(),
-                clienteTelefonoField.getText(),
-                clienteDireccionField.getText(),
-                new ArrayList<>(equiposObservable),
-                ordenFechaPicker.getValue(),
-                anticipo,
-                entregaFechaPicker.getValue(),
-                aclaracionesArea.getText()
-            );
-
-            mostrarExitoYSalir("Hoja de servicio " + currentHojaServicioData.getNumeroOrden() + " anulada.\nNueva hoja creada: " + nuevoNumeroOrden);
-
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudo crear la nueva versión de la hoja de servicio. Error: " + e.getMessage());
-            e.printStackTrace();
+            anticipo = parseCurrency(anticipoField.getText());
         } catch (ParseException e) {
             showAlert(Alert.AlertType.ERROR, "Error de Formato", "No se pudo procesar un valor monetario. Error: " + e.getMessage());
+            return;
         }
+
+        setFormBusy(true);
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().versionarHojaServicio(
+                        currentHojaServicioData.getId(),
+                        currentHojaServicioData.getClienteId(),
+                        clienteNombreField.getText(),
+                        clienteTelefonoField.getText(),
+                        clienteDireccionField.getText(),
+                        equiposObservable,
+                        ordenFechaPicker.getValue(),
+                        anticipo,
+                        entregaFechaPicker.getValue(),
+                        aclaracionesArea.getText()),
+                nuevoNumeroOrden -> mostrarExitoYSalir("Hoja de servicio " + currentHojaServicioData.getNumeroOrden() + " anulada.\nNueva hoja creada: " + nuevoNumeroOrden),
+                error -> {
+                    setFormBusy(false);
+                    showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudo crear la nueva versión de la hoja de servicio. Error: " + error.getMessage());
+                    error.printStackTrace();
+                });
     }
 
     @FXML
@@ -647,133 +651,158 @@ public class tecniMusicController {
             if (!showConfirmationDialog("Confirmar Revisión de Cierre", "¿Está seguro de que desea crear una nueva revisión para esta hoja de servicio cerrada? La hoja original será ANULADA y se generará una nueva con los cambios.")) {
                 return;
             }
+            BigDecimal anticipo;
+            BigDecimal totalCostos;
             try {
-                BigDecimal anticipo = parseCurrency(anticipoField.getText());
-                BigDecimal totalCostos = parseCurrency(subtotalLabel.getText()); // Get total costs from UI
-
-                String nuevoNumeroOrden = DatabaseService.getInstance().revisarHojaServicioCerrada(
-                    currentHojaServicioData.getId(),
-                    currentHojaServicioData.getClienteId(),
-                    clienteNombreField.getText(),
-                    clienteTelefonoField.getText(),
-                    clienteDireccionField.getText(),
-                    new ArrayList<>(equiposObservable),
-                    ordenFechaPicker.getValue(),
-                    anticipo,
-                    entregaFechaPicker.getValue(),
-                    aclaracionesArea.getText()
-                );
-
-                // Update currentHojaServicioData with new revision details for PDF generation
-                currentHojaServicioData.setId(null); // Indicate it's a new entry, ID will be set by DB
-                currentHojaServicioData.setNumeroOrden(nuevoNumeroOrden);
-                currentHojaServicioData.setFechaOrden(ordenFechaPicker.getValue());
-                currentHojaServicioData.setAnticipo(anticipo);
-                currentHojaServicioData.setFechaEntrega(entregaFechaPicker.getValue());
-                currentHojaServicioData.setAclaraciones(aclaracionesArea.getText());
-                currentHojaServicioData.setEquipos(new ArrayList<>(equiposObservable));
-                currentHojaServicioData.setTotalCostos(totalCostos); // Set total costs for PDF
-
-                String pdfPath = new PdfGenerator().generatePdf(currentHojaServicioData, false);
-
-                showAlert(Alert.AlertType.INFORMATION, "Revisión Creada", "Se ha creado una nueva revisión (" + nuevoNumeroOrden + ") para la hoja de servicio cerrada. La hoja original ha sido anulada.");
-                performPrint(pdfPath);
-                
-                Stage stage = (Stage) cierreButton.getScene().getWindow();
-                stage.close();
-
-            } catch (Exception e) {
+                anticipo = parseCurrency(anticipoField.getText());
+                totalCostos = parseCurrency(subtotalLabel.getText()); // Get total costs from UI
+            } catch (ParseException e) {
                 showAlert(Alert.AlertType.ERROR, "Error al Crear Revisión", "Ocurrió un error al crear la revisión de la hoja de servicio cerrada: " + e.getMessage());
-                e.printStackTrace();
+                return;
             }
 
+            setFormBusy(true);
+            dbScope.onFxThread(AsyncDatabaseService.getInstance().revisarHojaServicioCerrada(
+                            currentHojaServicioData.getId(),
+                            currentHojaServicioData.getClienteId(),
+                            clienteNombreField.getText(),
+                            clienteTelefonoField.getText(),
+                            clienteDireccionField.getText(),
+                            equiposObservable,
+                            ordenFechaPicker.getValue(),
+                            anticipo,
+                            entregaFechaPicker.getValue(),
+                            aclaracionesArea.getText()),
+                    nuevoNumeroOrden -> {
+                        // Update currentHojaServicioData with new revision details for PDF generation
+                        currentHojaServicioData.setId(null); // Indicate it's a new entry, ID will be set by DB
+                        currentHojaServicioData.setNumeroOrden(nuevoNumeroOrden);
+                        currentHojaServicioData.setFechaOrden(ordenFechaPicker.getValue());
+                        currentHojaServicioData.setAnticipo(anticipo);
+                        currentHojaServicioData.setFechaEntrega(entregaFechaPicker.getValue());
+                        currentHojaServicioData.setAclaraciones(aclaracionesArea.getText());
+                        currentHojaServicioData.setEquipos(new ArrayList<>(equiposObservable));
+                        currentHojaServicioData.setTotalCostos(totalCostos); // Set total costs for PDF
+
+                        generarPdfEnSegundoPlano(currentHojaServicioData, false, pdfPath -> {
+                            showAlert(Alert.AlertType.INFORMATION, "Revisión Creada", "Se ha creado una nueva revisión (" + nuevoNumeroOrden + ") para la hoja de servicio cerrada. La hoja original ha sido anulada.");
+                            performPrint(pdfPath);
+
+                            Stage stage = (Stage) cierreButton.getScene().getWindow();
+                            stage.close();
+                        });
+                    },
+                    error -> {
+                        setFormBusy(false);
+                        showAlert(Alert.AlertType.ERROR, "Error al Crear Revisión", "Ocurrió un error al crear la revisión de la hoja de servicio cerrada: " + error.getMessage());
+                        error.printStackTrace();
+                    });
+
         } else {
             // Original logic for closing an OPEN sheet
             if (!showConfirmationDialog("Confirmar Cierre", "¿Está seguro de que desea cerrar esta hoja de servicio? Una vez cerrada, no podrá ser modificada.")) {
                 return;
             }
 
+            long hojaId = currentHojaServicioData.getId();
+            LocalDate fechaEntrega = entregaFechaPicker.getValue();
+            BigDecimal totalCostos;
             try {
-                long hojaId = currentHojaServicioData.getId();
-                BigDecimal totalCostos = parseCurrency(subtotalLabel.getText());
-                LocalDate fechaEntrega = entregaFechaPicker.getValue();
-
-                DatabaseService.getInstance().cerrarHojaServicio(hojaId, "", new ArrayList<>(equiposObservable), totalCostos, fechaEntrega);
-
-                currentHojaServicioData.setEstado("CERRADA");
-                currentHojaServicioData.setEquipos(new ArrayList<>(equiposObservable));
-                currentHojaServicioData.setTotalCostos(totalCostos);
-                currentHojaServicioData.setFechaEntrega(fechaEntrega);
-
-                String pdfPath = new PdfGenerator().generatePdf(currentHojaServicioData, false);
-
-                showAlert(Alert.AlertType.INFORMATION, "Hoja Cerrada", "La hoja de servicio ha sido cerrada y el PDF de cierre ha sido generado.");
-
-                performPrint(pdfPath);
-                
-                Stage stage = (Stage) cierreButton.getScene().getWindow();
-                stage.close();
-
-            } catch (Exception e) {
+                totalCostos = parseCurrency(subtotalLabel.getText());
+            } catch (ParseException e) {
                 showAlert(Alert.AlertType.ERROR, "Error al Cerrar Hoja", "Ocurrió un error: " + e.getMessage());
-                e.printStackTrace();
+                return;
             }
+
+            setFormBusy(true);
+            dbScope.onFxThread(AsyncDatabaseService.getInstance().cerrarHojaServicio(hojaId, "", equiposObservable, totalCostos, fechaEntrega),
+                    ignored -> {
+                        currentHojaServicioData.setEstado("CERRADA");
+                        currentHojaServicioData.setEquipos(new ArrayList<>(equiposObservable));
+                        currentHojaServicioData.setTotalCostos(totalCostos);
+                        currentHojaServicioData.setFechaEntrega(fechaEntrega);
+
+                        generarPdfEnSegundoPlano(currentHojaServicioData, false, pdfPath -> {
+                            showAlert(Alert.AlertType.INFORMATION, "Hoja Cerrada", "La hoja de servicio ha sido cerrada y el PDF de cierre ha sido generado.");
+
+                            performPrint(pdfPath);
+
+                            Stage stage = (Stage) cierreButton.getScene().getWindow();
+                            stage.close();
+                        });
+                    },
+                    error -> {
+                        setFormBusy(false);
+                        showAlert(Alert.AlertType.ERROR, "Error al Cerrar Hoja", "Ocurrió un error: " + error.getMessage());
+                        error.printStackTrace();
+                    });
         }
     }
 
 
     @FXML
     protected void onPrintReceptionClicked() {
-        try {
-            // Usar currentHojaServicioData para la impresión de recepción
-            String pdfPath = new PdfGenerator().generatePdf(currentHojaServicioData, true); // Forzar recepción
-            performPrint(pdfPath);
-        } catch (IOException e) {
-            showAlert(Alert.AlertType.ERROR, "Error de PDF", "No se pudo generar el PDF. Error: " + e.getMessage());
-            e.printStackTrace();
-        }
+        // Usar currentHojaServicioData para la impresión de recepción
+        generarPdfEnSegundoPlano(currentHojaServicioData, true, this::performPrint); // Forzar recepción
     }
 
     @FXML
     protected void onPrintClosureClicked() {
-        try {
-            if (!"CERRADA".equals(currentHojaServicioData.getEstado())) {
-                showAlert(Alert.AlertType.WARNING, "Hoja no Cerrada", "La hoja de servicio debe estar cerrada para poder imprimir el informe de cierre.");
-                return;
-            }
-            // Usar currentHojaServicioData para la impresión de cierre
-            String pdfPath = new PdfGenerator().generatePdf(currentHojaServicioData, false); // No forzar recepción, usar estado real
-            performPrint(pdfPath);
-        } catch (IOException e) {
-            showAlert(Alert.AlertType.ERROR, "Error de PDF", "No se pudo generar el PDF. Error: " + e.getMessage());
-            e.printStackTrace();
+        if (!"CERRADA".equals(currentHojaServicioData.getEstado())) {
+            showAlert(Alert.AlertType.WARNING, "Hoja no Cerrada", "La hoja de servicio debe estar cerrada para poder imprimir el informe de cierre.");
+            return;
+        }
+        // Usar currentHojaServicioData para la impresión de cierre
+        generarPdfEnSegundoPlano(currentHojaServicioData, false, this::performPrint); // No forzar recepción, usar estado real
+    }
+
+    /**
+     * Genera el PDF fuera del hilo de JavaFX (PdfGenerator lee los ajustes del local de la base de datos)
+     * y entrega la ruta en el hilo de JavaFX. Si falla, muestra el error y reactiva el formulario.
+     */
+    private void generarPdfEnSegundoPlano(HojaServicioData data, boolean forceReception, Consumer<String> onPdfGenerado) {
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().submit(db -> new PdfGenerator().generatePdf(data, forceReception)),
+                onPdfGenerado,
+                error -> {
+                    setFormBusy(false);
+                    showAlert(Alert.AlertType.ERROR, "Error de PDF", "No se pudo generar el PDF. Error: " + error.getMessage());
+                    error.printStackTrace();
+                });
+    }
+
+    /**
+     * Bloquea el formulario mientras una operación de guardado está en curso, para evitar dobles envíos.
+     */
+    private void setFormBusy(boolean busy) {
+        if (clienteNombreField.getScene() != null) {
+            clienteNombreField.getScene().getRoot().setDisable(busy);
         }
     }
 
 
     @FXML
     protected void onTestPdfClicked() {
-        try {
-            long lastId = DatabaseService.getInstance().getLastHojaServicioId();
+        AsyncDatabaseService async = AsyncDatabaseService.getInstance();
+        dbScope.onFxThread(async.getLastHojaServicioId(), lastId -> {
             if (lastId == -1) {
                 showAlert(Alert.AlertType.INFORMATION, "Sin Hojas de Servicio", "No hay hojas de servicio guardadas para generar un PDF de prueba.");
                 return;
             }
 
-            HojaServicioData data = DatabaseService.getInstance().getHojaServicioCompleta(lastId);
-            if (data == null) {
-                showAlert(Alert.AlertType.ERROR, "Error de Datos", "No se pudieron recuperar los datos de la última hoja de servicio.");
-                return;
-            }
+            dbScope.onFxThread(async.getHojaServicioCompleta(lastId), data -> {
+                if (data == null) {
+                    showAlert(Alert.AlertType.ERROR, "Error de Datos", "No se pudieron recuperar los datos de la última hoja de servicio.");
+                    return;
+                }
 
-            String pdfPath = new PdfGenerator().generatePdf(data);
-            showAlert(Alert.AlertType.INFORMATION, "PDF de Prueba Generado", "El PDF de prueba para la hoja de servicio " + data.getNumeroOrden() + " ha sido generado en: " + pdfPath);
+                generarPdfEnSegundoPlano(data, false, pdfPath ->
+                        showAlert(Alert.AlertType.INFORMATION, "PDF de Prueba Generado", "El PDF de prueba para la hoja de servicio " + data.getNumeroOrden() + " ha sido generado en: " + pdfPath));
+            }, this::mostrarErrorPdfDePrueba);
+        }, this::mostrarErrorPdfDePrueba);
+    }
 
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudo acceder a la base de datos para generar el PDF de prueba. Error: " + e.getMessage());
-        } catch (IOException e) {
-            showAlert(Alert.AlertType.ERROR, "Error de PDF", "No se pudo generar el PDF de prueba. Error: " + e.getMessage());
-        }
+    private void mostrarErrorPdfDePrueba(Throwable error) {
+        showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudo acceder a la base de datos para generar el PDF de prueba. Error: " + error.getMessage());
     }
 
     private void performPrint(String pdfPath) {
@@ -817,6 +846,8 @@ public class tecniMusicController {
     }
     
     private void setupListeners() {
+        clienteTelefonoField.textProperty().addListener((observable, oldValue, newV) -> telefonoCapturado = newV);
+
         clienteNombreField.textProperty().addListener((observable, oldValue, newV) -> {
             if (isAutoCompleting) return;
             if (nombreClienteSeleccionado != null && !newV.equals(nombreClienteSeleccionado)) {
@@ -839,15 +870,27 @@ public class tecniMusicController {
     }
 
     private void setupAutocompleteFields() {
-        TextFields.bindAutoCompletion(clienteNombreField, clienteSuggestions)
+        // Las sugerencias salen del índice compartido (ControlsFX llama al proveedor fuera del hilo de JavaFX)
+        SuggestionService suggestions = SuggestionService.getInstance();
+        // Después de los que empiezan con lo escrito, los clientes parecidos (posibles duplicados con errores de captura)
+        TextFields.bindAutoCompletion(clienteNombreField, request -> {
+                    Set<String> result = new LinkedHashSet<>(suggestions.suggest(SuggestionService.Vocabulary.CLIENTES, request.getUserText()));
+                    if (idClienteSeleccionado == null) {
+                        result.addAll(ClientDuplicateIndex.getInstance().findSimilar(request.getUserText(), telefonoCapturado));
+                    }
+                    return result;
+                })
                 .setOnAutoCompleted(e -> cargarDatosDeClienteSeleccionado(e.getCompletion()));
 
-        TextFields.bindAutoCompletion(equipoSerieField, serieGlobalSuggestions)
-                .setOnAutoCompleted(e -> cargarDatosDeAssetSeleccionado(e.getCompletion()));
+        // Con muchos activos los seriales se consultan en la base de datos: una pausa al escribir evita una consulta por tecla
+        SuggestionService.Session serieSession = suggestions.openSession(SuggestionService.Vocabulary.SERIES);
+        AutoCompletionBinding<String> serieBinding = TextFields.bindAutoCompletion(equipoSerieField, request -> serieSession.suggest(request.getUserText()));
+        serieBinding.setDelay(SuggestionService.REMOTE_DELAY_MS);
+        serieBinding.setOnAutoCompleted(e -> cargarDatosDeAssetSeleccionado(e.getCompletion()));
 
-        TextFields.bindAutoCompletion(equipoTipoField, tipoGlobalSuggestions);
-        TextFields.bindAutoCompletion(equipoCompaniaField, companiaGlobalSuggestions);
-        TextFields.bindAutoCompletion(equipoModeloField, modeloGlobalSuggestions);
+        TextFields.bindAutoCompletion(equipoTipoField, request -> suggestions.suggest(SuggestionService.Vocabulary.CATEGORIAS, request.getUserText()));
+        TextFields.bindAutoCompletion(equipoCompaniaField, request -> suggestions.suggest(SuggestionService.Vocabulary.COMPANIAS, request.getUserText()));
+        TextFields.bindAutoCompletion(equipoModeloField, request -> suggestions.suggest(SuggestionService.Vocabulary.MODELOS, request.getUserText()));
     }
 
     private BigDecimal parseCurrency(String text) throws ParseException {
@@ -905,32 +948,18 @@ public class tecniMusicController {
         });
     }
 
+    /**
+     * Los vocabularios se cargan una sola vez por proceso (normalmente ya en el arranque);
+     * aquí solo se asegura que estén listos para avisar si la base de datos no respondió.
+     */
     private void cargarSugerenciasGlobales() {
-        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
-            conn.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
-            clienteSuggestions.setAll(fetchSuggestions(conn, "SELECT nombre, telefono FROM x_clientes ORDER BY nombre ASC", " | "));
-            serieGlobalSuggestions.setAll(fetchSuggestions(conn, "SELECT serial FROM assets WHERE serial IS NOT NULL AND serial != '' ORDER BY serial ASC", null));
-            companiaGlobalSuggestions.setAll(fetchSuggestions(conn, "SELECT name FROM companies WHERE name IS NOT NULL AND name != '' ORDER BY name ASC", null));
-            modeloGlobalSuggestions.setAll(fetchSuggestions(conn, "SELECT name FROM models WHERE name IS NOT NULL AND name != '' ORDER BY name ASC", null));
-            tipoGlobalSuggestions.setAll(fetchSuggestions(conn, "SELECT name FROM categories WHERE name IS NOT NULL AND name != '' ORDER BY name ASC", null));
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "Error de Carga", "No se pudieron cargar las listas de sugerencias desde la base de datos.");
-        }
-    }
-
-    private List<String> fetchSuggestions(Connection conn, String query, String separator) throws SQLException {
-        List<String> suggestions = new ArrayList<>();
-        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
-            int columnCount = rs.getMetaData().getColumnCount();
-            while (rs.next()) {
-                if (separator != null && columnCount > 1) {
-                    suggestions.add(rs.getString(1) + separator + rs.getString(2));
-                } else {
-                    suggestions.add(rs.getString(1));
-                }
-            }
-        }
-        return suggestions;
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().submit(db -> {
+                    SuggestionService.getInstance().ensureLoaded();
+                    ClientDuplicateIndex.getInstance().ensureLoaded();
+                    return null;
+                }),
+                ignored -> { },
+                error -> showAlert(Alert.AlertType.ERROR, "Error de Carga", "No se pudieron cargar las listas de sugerencias desde la base de datos."));
     }
 
     private void cargarDatosDeClienteSeleccionado(String suggestion) {
@@ -938,23 +967,27 @@ public class tecniMusicController {
         if (parts.length < 2) return;
 
         String sql = "SELECT id, direccion FROM x_clientes WHERE nombre = ? AND telefono = ?";
-        try (Connection conn = DatabaseManager.getInstance().getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, parts[0]);
-            pstmt.setString(2, parts[1]);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                isAutoCompleting = true;
-                this.idClienteSeleccionado = rs.getLong("id");
-                this.nombreClienteSeleccionado = suggestion;
-                clienteNombreField.setText(suggestion);
-                clienteTelefonoField.setText(parts[1]);
-                clienteDireccionField.setText(rs.getString("direccion"));
-                setNodesEditable(false, clienteDireccionField, clienteTelefonoField);
-                isAutoCompleting = false;
-            }
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudieron cargar los datos del cliente.");
-        }
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().submit(db -> {
+                    try (Connection conn = DatabaseManager.getInstance().getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                        pstmt.setString(1, parts[0]);
+                        pstmt.setString(2, parts[1]);
+                        ResultSet rs = pstmt.executeQuery();
+                        return rs.next() ? new Client(rs.getInt("id"), parts[0], parts[1], rs.getString("direccion")) : null;
+                    }
+                }),
+                client -> {
+                    // Si mientras tanto se escribió otro cliente, la respuesta ya no aplica
+                    if (client == null || !suggestion.equals(clienteNombreField.getText())) return;
+                    isAutoCompleting = true;
+                    this.idClienteSeleccionado = (long) client.getId();
+                    this.nombreClienteSeleccionado = suggestion;
+                    clienteNombreField.setText(suggestion);
+                    clienteTelefonoField.setText(client.getPhone());
+                    clienteDireccionField.setText(client.getAddress());
+                    setNodesEditable(false, clienteDireccionField, clienteTelefonoField);
+                    isAutoCompleting = false;
+                },
+                error -> showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudieron cargar los datos del cliente."));
     }
 
     private void cargarDatosDeAssetSeleccionado(String serial) {
@@ -964,23 +997,29 @@ public class tecniMusicController {
                      "LEFT JOIN categories cat ON mdl.category_id = cat.id " +
                      "LEFT JOIN companies cmp ON a.company_id = cmp.id " +
                      "WHERE a.serial = ?";
-        try (Connection conn = DatabaseManager.getInstance().getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, serial);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                isAutoCompleting = true;
-                this.idAssetSeleccionado = rs.getLong("id");
-                this.serieEquipoSeleccionado = serial;
-                equipoTipoField.setText(rs.getString("tipo"));
-                equipoCompaniaField.setText(rs.getString("compania"));
-                equipoModeloField.setText(rs.getString("modelo"));
-                equipoSerieField.setText(serial);
-                setNodesEditable(false, equipoTipoField, equipoCompaniaField, equipoModeloField);
-                isAutoCompleting = false;
-            }
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudieron cargar los datos del equipo.");
-        }
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().submit(db -> {
+                    try (Connection conn = DatabaseManager.getInstance().getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                        pstmt.setString(1, serial);
+                        ResultSet rs = pstmt.executeQuery();
+                        if (!rs.next()) return null;
+                        // Solo tipo, marca y modelo del activo; el id es el del activo
+                        return new Equipo(rs.getLong("id"), rs.getString("tipo"), rs.getString("compania"), serial, rs.getString("modelo"), null, null, null, null, null);
+                    }
+                }),
+                asset -> {
+                    // Si mientras tanto se escribió otra serie, la respuesta ya no aplica
+                    if (asset == null || !serial.equals(equipoSerieField.getText())) return;
+                    isAutoCompleting = true;
+                    this.idAssetSeleccionado = asset.getId();
+                    this.serieEquipoSeleccionado = serial;
+                    equipoTipoField.setText(asset.getTipo());
+                    equipoCompaniaField.setText(asset.getMarca());
+                    equipoModeloField.setText(asset.getModelo());
+                    equipoSerieField.setText(serial);
+                    setNodesEditable(false, equipoTipoField, equipoCompaniaField, equipoModeloField);
+                    isAutoCompleting = false;
+                },
+                error -> showAlert(Alert.AlertType.ERROR, "Error de Base de Datos", "No se pudieron cargar los datos del equipo."));
     }
 
     private void resetFormulario() {
@@ -997,7 +1036,6 @@ public class tecniMusicController {
 
         clearAllInputFields();
         isAutoCompleting = false;
-        predecirYAsignarNumeroDeOrden();
     }
 
     private boolean isFormDirty() {
@@ -1137,30 +1175,40 @@ public class tecniMusicController {
         clearEquipoInputFields();
     }
 
-    private void predecirYAsignarNumeroDeOrden() {
-        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
-            conn.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
-            try (Statement stmt = conn.createStatement()) {
-                ResultSet rs = stmt.executeQuery("SELECT MAX(id) FROM x_hojas_servicio");
-                long maxId = rs.next() ? rs.getLong(1) : 0;
-                this.predictedHojaId = maxId + 1;
-                ordenNumeroField.setText("TM-" + LocalDate.now().getYear() + "-" + this.predictedHojaId);
-            }
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.WARNING, "Error de Predicción", "No se pudo predecir el número de orden.");
+    /**
+     * Muestra el número de orden de la hoja nueva. Se reserva una sola vez por hoja: limpiar el
+     * formulario no toca el campo, así que el número se conserva mientras no se haya guardado.
+     */
+    private void asignarNumeroDeOrden() {
+        if (numeroOrdenReservado != null) {
+            ordenNumeroField.setText(numeroOrdenReservado);
+            return;
         }
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().siguienteNumeroOrden(),
+                numero -> {
+                    if (numeroOrdenReservado == null) numeroOrdenReservado = numero;
+                    // Si mientras tanto se cargó una hoja existente, no pisar su número de orden
+                    if (currentHojaServicioData != null) return;
+                    ordenNumeroField.setText(numeroOrdenReservado);
+                },
+                error -> showAlert(Alert.AlertType.WARNING, "Número de Orden", "No se pudo reservar el número de orden; se asignará al guardar."));
     }
 
     private void cargarDatosDelLocal() {
-        try {
-            DatabaseService db = DatabaseService.getInstance();
-            localNombreLabel.setText(db.getSetting("local.nombre", "TecniMusic"));
-            localDireccionLabel.setText(db.getSetting("local.direccion", "Dirección no configurada"));
-            localTelefonoLabel.setText(db.getSetting("local.telefono", "Teléfono no configurado"));
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "Error de Configuración", "No se pudieron cargar los datos del local desde la base de datos.");
-            e.printStackTrace();
-        }
+        dbScope.onFxThread(AsyncDatabaseService.getInstance().submit(db -> new String[]{
+                        db.getSetting("local.nombre", "TecniMusic"),
+                        db.getSetting("local.direccion", "Dirección no configurada"),
+                        db.getSetting("local.telefono", "Teléfono no configurado")
+                }),
+                valores -> {
+                    localNombreLabel.setText(valores[0]);
+                    localDireccionLabel.setText(valores[1]);
+                    localTelefonoLabel.setText(valores[2]);
+                },
+                error -> {
+                    showAlert(Alert.AlertType.ERROR, "Error de Configuración", "No se pudieron cargar los datos del local desde la base de datos.");
+                    error.printStackTrace();
+                });
     }
 
     private void showAlert(Alert.AlertType tipo, String titulo, String contenido) {